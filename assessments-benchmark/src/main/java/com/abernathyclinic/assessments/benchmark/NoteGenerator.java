@@ -0,0 +1,72 @@
+package com.abernathyclinic.assessments.benchmark;
+
+import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.constants.Triggers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates practitioner's notes looking like the real ones: French sentences in which triggers appear with a given
+ * density, sometimes in upper case, without accents or split by a line break.
+ * Generation is seeded, so that every benchmark run scans exactly the same notes.
+ */
+public final class NoteGenerator {
+	private static final String[] WORDS = {
+			"Le", "patient", "déclare", "qu'il", "se", "sent", "très", "bien", "depuis", "la", "dernière", "visite",
+			"tension", "artérielle", "normale", "recommandé", "aucun", "symptôme", "signalé", "examen", "résultats",
+			"stables", "suivi", "dans", "trois", "mois", "prescription", "renouvelée", "douleurs", "légères", "dos",
+			"fatigue", "passagère", "alimentation", "équilibrée", "activité", "physique", "régulière", "sommeil",
+			"perturbé", "stress", "au", "travail", "audition", "correcte", "vue", "baisse", "légère", "et", "de"
+	};
+
+	private final Random random;
+
+	public NoteGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates the history of a patient.
+	 *
+	 * @param patientId      ID of patient the notes belong to
+	 * @param noteCount      number of notes
+	 * @param noteLength     approximate number of chars per note
+	 * @param triggerDensity probability for each word to be a trigger
+	 * @return list of notes
+	 */
+	public List<NoteBean> generateHistory(Integer patientId, int noteCount, int noteLength, double triggerDensity) {
+		List<NoteBean> notes = new ArrayList<>(noteCount);
+		for (int i = 0; i < noteCount; i++) {
+			notes.add(new NoteBean(patientId, generateNote(noteLength, triggerDensity)));
+		}
+		return notes;
+	}
+
+	private String generateNote(int noteLength, double triggerDensity) {
+		StringBuilder note = new StringBuilder(noteLength + 32);
+		while (note.length() < noteLength) {
+			if (note.length() > 0) {
+				note.append(random.nextInt(20) == 0 ? "\r\n" : " ");
+			}
+			note.append(random.nextDouble() < triggerDensity ? trigger() : WORDS[random.nextInt(WORDS.length)]);
+		}
+		return note.toString();
+	}
+
+	private String trigger() {
+		String trigger = Triggers.list.get(random.nextInt(Triggers.list.size()));
+		switch (random.nextInt(4)) {
+			case 0:
+				return trigger.toUpperCase();
+			case 1:
+				return trigger.toLowerCase();
+			case 2:
+				// typed without accent
+				return trigger.replace('é', 'e');
+			default:
+				return trigger;
+		}
+	}
+}
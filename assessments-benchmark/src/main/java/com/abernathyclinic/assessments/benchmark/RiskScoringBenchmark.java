@@ -0,0 +1,138 @@
+package com.abernathyclinic.assessments.benchmark;
+
+import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.bean.PatientBean;
+import com.abernathyclinic.assessments.bean.PatientSummaryBean;
+import com.abernathyclinic.assessments.bean.RiskAssessment;
+import com.abernathyclinic.assessments.configuration.CacheConfiguration;
+import com.abernathyclinic.assessments.configuration.ClockConfiguration;
+import com.abernathyclinic.assessments.configuration.ExecutorConfiguration;
+import com.abernathyclinic.assessments.configuration.TriggerConfiguration;
+import com.abernathyclinic.assessments.constants.Risk;
+import com.abernathyclinic.assessments.constants.Triggers;
+import com.abernathyclinic.assessments.proxy.HistoryProxy;
+import com.abernathyclinic.assessments.proxy.PatientProxy;
+import com.abernathyclinic.assessments.service.PatientProfileService;
+import com.abernathyclinic.assessments.service.RiskAssessmentService;
+import com.abernathyclinic.assessments.service.RiskRulesService;
+import com.abernathyclinic.assessments.util.TriggerMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assesses patients end to end through RiskAssessmentService, with in-memory proxies replacing the other
+ * microservices: concurrent fetch, trigger counting, rules evaluation and caching are measured, network is not.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RiskScoringBenchmark {
+	private static final int    PATIENTS = 100;
+	private static final String FAMILY   = "Benchmark";
+
+	@Param({"1", "10", "50"})
+	private int    noteCount;
+	@Param({"200", "2000"})
+	private int    noteLength;
+	@Param({"0.01", "0.05"})
+	private double triggerDensity;
+	/** Where the trigger count comes from: the summary kept by history, or a scan of every note. */
+	@Param({"summary", "notes"})
+	private String historySource;
+
+	private AnnotationConfigApplicationContext context;
+	private RiskAssessmentService              riskAssessmentService;
+	private int                                nextPatientId;
+
+	@Setup
+	public void setUp() {
+		NoteGenerator                    generator      = new NoteGenerator(42);
+		TriggerMatcher                   triggerMatcher = new TriggerMatcher(Triggers.list);
+		List<PatientBean>                patients       = new ArrayList<>();
+		Map<Integer, List<NoteBean>>     histories      = new HashMap<>();
+		Map<Integer, PatientSummaryBean> summaries      = new HashMap<>();
+		for (int id = 1; id <= PATIENTS; id++) {
+			PatientBean patient = new PatientBean(id, FAMILY, "Patient" + id, LocalDate.of(1950 + id % 60, 1, 1),
+					id % 2 == 0 ? "F" : "M", null, null);
+			List<NoteBean> notes = generator.generateHistory(id, noteCount, noteLength, triggerDensity);
+			patients.add(patient);
+			histories.put(id, notes);
+			summaries.put(id, summarize(triggerMatcher, id, notes));
+		}
+
+		context = new AnnotationConfigApplicationContext();
+		// same conversions as Spring Boot, e.g. "10m" for the cache expiration
+		context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+		context.register(TriggerConfiguration.class, ExecutorConfiguration.class, CacheConfiguration.class,
+				ClockConfiguration.class, PatientProfileService.class, RiskRulesService.class,
+				RiskAssessmentService.class);
+		context.registerBean(PatientProxy.class, () -> StubProxies.patientProxy(patients));
+		context.registerBean(HistoryProxy.class, () -> StubProxies.historyProxy(histories,
+				"summary".equals(historySource) ? summaries : null));
+		context.refresh();
+		riskAssessmentService = context.getBean(RiskAssessmentService.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Risk assessUncached() {
+		int patientId = nextPatient();
+		riskAssessmentService.invalidateAssessment(patientId);
+		return riskAssessmentService.assessPatientRiskById(patientId);
+	}
+
+	@Benchmark
+	public RiskAssessment assessCached() {
+		return riskAssessmentService.assessPatientRisk(nextPatient());
+	}
+
+	@Benchmark
+	public Map<Integer, Risk> assessFamily() {
+		return riskAssessmentService.assessPatientRiskByFamilyName(FAMILY);
+	}
+
+	private int nextPatient() {
+		// cycle through patients, a Level.Invocation setup would cost more than the cached assessment itself
+		nextPatientId = nextPatientId % PATIENTS + 1;
+		return nextPatientId;
+	}
+
+	/**
+	 * Counts the notes of each trigger like the history microservice does, so that both sources give the same risks.
+	 */
+	private static PatientSummaryBean summarize(TriggerMatcher triggerMatcher, Integer patientId, List<NoteBean> notes) {
+		Map<String, Integer> triggerNoteCounts = new HashMap<>();
+		for (NoteBean note : notes) {
+			for (String trigger : triggerMatcher.findDistinct(note.getContent())) {
+				triggerNoteCounts.merge(trigger, 1, Integer::sum);
+			}
+		}
+		return new PatientSummaryBean(patientId, triggerNoteCounts, notes.size(), null);
+	}
+}
@@ -0,0 +1,113 @@
+package com.abernathyclinic.assessments.benchmark;
+
+import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.bean.PatientBatchBean;
+import com.abernathyclinic.assessments.bean.PatientBean;
+import com.abernathyclinic.assessments.bean.PatientSummaryBean;
+import com.abernathyclinic.assessments.proxy.HistoryProxy;
+import com.abernathyclinic.assessments.proxy.PatientProxy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory replacements of the Feign proxies, so that benchmarks measure the assessments code only.
+ */
+final class StubProxies {
+	private StubProxies() {
+	}
+
+	static PatientProxy patientProxy(List<PatientBean> patients) {
+		Map<Integer, PatientBean> patientsById = patients.stream()
+				.collect(Collectors.toMap(PatientBean::getId, Function.identity()));
+		return new PatientProxy() {
+			@Override
+			public PatientBean createPatient(PatientBean patient) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public PatientBean getPatientById(Integer id) {
+				return patientsById.get(id);
+			}
+
+			@Override
+			public PatientBatchBean getPatientsByIds(Collection<Integer> ids) {
+				return new PatientBatchBean(ids.stream().filter(patientsById::containsKey).map(patientsById::get).toList(),
+						ids.stream().filter(id -> !patientsById.containsKey(id)).toList());
+			}
+
+			@Override
+			public List<PatientBean> getPatientByFamilyName(String family) {
+				return patients.stream().filter(patient -> patient.getFamily().equals(family)).toList();
+			}
+
+			@Override
+			public PatientBean updatePatient(Integer id, PatientBean patient) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void deletePatient(Integer id) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * @param histories notes of every patient
+	 * @param summaries summary of every patient, or null to make the service scan the whole history
+	 */
+	static HistoryProxy historyProxy(Map<Integer, List<NoteBean>> histories,
+			Map<Integer, PatientSummaryBean> summaries) {
+		return new HistoryProxy() {
+			@Override
+			public NoteBean createNote(NoteBean patient) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public List<NoteBean> getNotes(String after, Integer size) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public NoteBean getNoteById(String id) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public List<NoteBean> getPatientHistory(Integer patientId) {
+				return histories.getOrDefault(patientId, List.of());
+			}
+
+			@Override
+			public List<String> getPatientNoteContents(Integer patientId) {
+				return getPatientHistory(patientId).stream().map(NoteBean::getContent).toList();
+			}
+
+			@Override
+			public PatientSummaryBean getPatientSummary(Integer patientId) {
+				return summaries == null ? null : summaries.get(patientId);
+			}
+
+			@Override
+			public Map<Integer, List<NoteBean>> getPatientsHistories(Collection<Integer> patientIds) {
+				return patientIds.stream().collect(Collectors.toMap(Function.identity(), this::getPatientHistory));
+			}
+
+			@Override
+			public NoteBean updateNote(String id, NoteBean patient) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void deleteNote(String id) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,53 @@
+package com.abernathyclinic.assessments.benchmark;
+
+import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.constants.Triggers;
+import com.abernathyclinic.assessments.util.TriggerMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans patient histories for triggers, the CPU bound part of an assessment done without a patient summary.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TriggerCountingBenchmark {
+	@Param({"1", "10", "50"})
+	private int    noteCount;
+	@Param({"200", "2000"})
+	private int    noteLength;
+	@Param({"0.0", "0.01", "0.05"})
+	private double triggerDensity;
+
+	private TriggerMatcher triggerMatcher;
+	private List<String>   contents;
+
+	@Setup
+	public void setUp() {
+		triggerMatcher = new TriggerMatcher(Triggers.list);
+		contents = new NoteGenerator(42).generateHistory(1, noteCount, noteLength, triggerDensity).stream()
+				.map(NoteBean::getContent)
+				.toList();
+	}
+
+	@Benchmark
+	public int countDistinct() {
+		return triggerMatcher.countDistinct(contents);
+	}
+}
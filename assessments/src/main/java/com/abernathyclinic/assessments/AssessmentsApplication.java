@@ -3,9 +3,11 @@ package com.abernathyclinic.assessments;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableFeignClients("com.abernathyclinic.assessments")
+@EnableScheduling
 public class AssessmentsApplication {
 
 	public static void main(String[] args) {
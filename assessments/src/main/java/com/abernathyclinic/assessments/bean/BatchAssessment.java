@@ -0,0 +1,21 @@
+package com.abernathyclinic.assessments.bean;
+
+import com.abernathyclinic.assessments.constants.Risk;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Result of a batch assessment: risk of every patient which could be assessed, and error message of every other one.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class BatchAssessment {
+	private Map<Integer, Risk>   risks;
+	private Map<Integer, String> errors;
+}
@@ -0,0 +1,39 @@
+package com.abernathyclinic.assessments.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Summary of a patient history maintained by the history microservice: number of notes containing each trigger.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class PatientSummaryBean {
+	private Integer              patId;
+	private Map<String, Integer> triggerNoteCounts;
+	private long                 noteCount;
+	private Instant              lastModified;
+
+	/**
+	 * Counts the distinct triggers present in at least one note, among the given triggers.
+	 *
+	 * @param triggers triggers taken into account
+	 * @return trigger count
+	 */
+	public long countTriggers(Collection<String> triggers) {
+		if (triggerNoteCounts == null) {
+			return 0;
+		}
+		return triggers.stream()
+				.filter(trigger -> triggerNoteCounts.getOrDefault(trigger, 0) > 0)
+				.count();
+	}
+}
@@ -0,0 +1,27 @@
+package com.abernathyclinic.assessments.bean;
+
+import com.abernathyclinic.assessments.constants.Risk;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Risk of a patient along with the time spent in each stage of the assessment, in milliseconds.
+ * Patient and history are fetched concurrently, so the total is close to the slowest of both calls.
+ * An assessment served from the cache has no patient nor history timing.
+ * The version of the risk rules used to compute the risk is reported too.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class RiskAssessment {
+	private Integer patientId;
+	private Risk    risk;
+	private String  ruleVersion;
+	private long    patientMillis;
+	private long    historyMillis;
+	private long    totalMillis;
+	private boolean cached;
+}
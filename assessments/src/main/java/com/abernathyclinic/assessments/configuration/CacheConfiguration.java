@@ -0,0 +1,25 @@
+package com.abernathyclinic.assessments.configuration;
+
+import com.abernathyclinic.assessments.bean.RiskAssessment;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfiguration {
+	@Bean
+	public AsyncCache<Integer, RiskAssessment> riskAssessmentCache(
+			@Value("${assessments.cache.maximum-size:10000}") long maximumSize,
+			@Value("${assessments.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+		// an assessment removed while it is being computed is dropped instead of being stored with outdated data
+		return Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite)
+				.recordStats()
+				.buildAsync();
+	}
+}
@@ -0,0 +1,18 @@
+package com.abernathyclinic.assessments.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutorConfiguration {
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService assessmentExecutor(@Value("${assessments.executor.pool-size:16}") int poolSize) {
+		// bounded pool used to call patients and history microservices in parallel
+		return Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("assessment-"));
+	}
+}
@@ -0,0 +1,16 @@
+package com.abernathyclinic.assessments.configuration;
+
+import com.abernathyclinic.assessments.proxy.ConditionalRequestClient;
+import feign.Client;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FeignConfiguration {
+	@Bean
+	public Client feignClient(@Value("${assessments.feign.conditional-cache.maximum-entries:1000}") int maximumEntries) {
+		// patients and history answer 304 to GETs whose ETag is still current
+		return new ConditionalRequestClient(new Client.Default(null, null), maximumEntries);
+	}
+}
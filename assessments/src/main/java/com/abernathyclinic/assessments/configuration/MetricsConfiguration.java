@@ -0,0 +1,28 @@
+package com.abernathyclinic.assessments.configuration;
+
+import com.abernathyclinic.assessments.bean.RiskAssessment;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class MetricsConfiguration {
+	@Bean
+	public MeterBinder assessmentExecutorMetrics(ExecutorService assessmentExecutor) {
+		// pool size, active threads and queued tasks of the pool calling patients and history microservices
+		return registry -> new ExecutorServiceMetrics(assessmentExecutor, "assessmentExecutor", Tags.empty())
+				.bindTo(registry);
+	}
+
+	@Bean
+	public MeterBinder riskAssessmentCacheMetrics(AsyncCache<Integer, RiskAssessment> riskAssessmentCache) {
+		// hit ratio, size and evictions of the risk cache
+		return registry -> CaffeineCacheMetrics.monitor(registry, riskAssessmentCache, "riskAssessments");
+	}
+}
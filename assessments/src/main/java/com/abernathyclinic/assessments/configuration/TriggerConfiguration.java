@@ -0,0 +1,15 @@
+package com.abernathyclinic.assessments.configuration;
+
+import com.abernathyclinic.assessments.constants.Triggers;
+import com.abernathyclinic.assessments.util.TriggerMatcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TriggerConfiguration {
+	@Bean
+	public TriggerMatcher triggerMatcher() {
+		// compile the trigger list once, the matcher is shared by every assessment
+		return new TriggerMatcher(Triggers.list);
+	}
+}
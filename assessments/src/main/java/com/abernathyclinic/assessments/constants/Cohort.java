@@ -0,0 +1,27 @@
+package com.abernathyclinic.assessments.constants;
+
+/**
+ * Groups of patients sharing the same risk thresholds.
+ */
+public enum Cohort {
+	OVER_AGE_LIMIT("over-age-limit"),
+	FEMALE("female"),
+	MALE("male"),
+	/** Patients under the age limit whose sex is neither female nor male, never at risk. */
+	OTHER("other");
+
+	private final String key;
+
+	/**
+	 * Returns the prefix of the thresholds of this cohort in the rules file.
+	 *
+	 * @return key of the cohort
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	Cohort(String key) {
+		this.key = key;
+	}
+}
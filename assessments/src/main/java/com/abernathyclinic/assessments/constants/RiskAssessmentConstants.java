@@ -2,12 +2,4 @@ package com.abernathyclinic.assessments.constants;
 
 public class RiskAssessmentConstants {
 	public static final int AGE_LIMIT = 30;
-
-	public static final int BORDERLINE_OVER_AGE_LIMIT        = 2;
-	public static final int IN_DANGER_FEMALE_TRIGGER_COUNT   = 4;
-	public static final int IN_DANGER_MALE_TRIGGER_COUNT     = 3;
-	public static final int IN_DANGER_OVER_AGE_LIMIT         = 6;
-	public static final int EARLY_ONSET_FEMALE_TRIGGER_COUNT = 7;
-	public static final int EARLY_ONSET_MALE_TRIGGER_COUNT   = 5;
-	public static final int EARLY_ONSET_OVER_AGE_LIMIT       = 8;
 }
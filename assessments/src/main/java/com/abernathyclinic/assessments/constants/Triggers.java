@@ -3,21 +3,9 @@ package com.abernathyclinic.assessments.constants;
 import java.util.List;
 
 /**
- * Constant class for trigger and threshold management.
- * The risk assessment follows the following table:
- * +---+-------------+-------------+-------------+
- * |   | MALE < 30   | FEMALE < 30 |    >= 30    |
- * +---+-------------+-------------+-------------+
- * | 0 | NONE        | NONE        | NONE        |
- * | 1 |             |             |             |
- * | 2 |             |             | BORDERLINE  |
- * | 3 | IN DANGER   |             |             |
- * | 4 |             | IN DANGER   |             |
- * | 5 | EARLY ONSET |             |             |
- * | 6 |             |             | IN DANGER   |
- * | 7 |             | EARLY ONSET |             |
- * | 8 |             |             | EARLY ONSET |
- * +---+-------------+-------------+-------------+
+ * Constant class for trigger management.
+ * The number of distinct triggers found in the history of a patient is turned into a risk level by the rules of
+ * risk-rules.properties.
  */
 public class Triggers {
 	public static final List<String> list = List.of(
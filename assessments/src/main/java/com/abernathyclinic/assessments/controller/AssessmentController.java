@@ -1,9 +1,11 @@
 package com.abernathyclinic.assessments.controller;
 
+import com.abernathyclinic.assessments.bean.BatchAssessment;
+import com.abernathyclinic.assessments.bean.RiskAssessment;
 import com.abernathyclinic.assessments.constants.Risk;
 import com.abernathyclinic.assessments.exception.PatientNotFoundException;
-import com.abernathyclinic.assessments.proxy.PatientProxy;
 import com.abernathyclinic.assessments.service.RiskAssessmentService;
+import com.abernathyclinic.assessments.service.RiskRulesService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import lombok.extern.slf4j.Slf4j;
@@ -13,30 +15,38 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.List;
 import java.util.Map;
 
 @Controller
 @RequestMapping("/assess")
 @Slf4j
 public class AssessmentController {
-	@Autowired PatientProxy patientProxy;
+	private static final String SERVER_TIMING_HEADER = "Server-Timing";
+	private static final String RULES_VERSION_HEADER = "X-Risk-Rules-Version";
 
 	@Autowired
 	RiskAssessmentService riskAssessmentService;
+	@Autowired
+	RiskRulesService      riskRulesService;
 
 	@Operation(summary = "Get patient diabetes risk assessment by their id")
 	@GetMapping("/{patientId}")
 	public ResponseEntity<String> getAssessmentByPatientId(
 			@Parameter(description = "id of patient to be assessed") @PathVariable Integer patientId)
 			throws PatientNotFoundException {
-		if (patientProxy.getPatientById(patientId) == null) {
-			log.error("Patient with the provided ID " + patientId + " was not found");
-			throw new PatientNotFoundException("Patient with the provided ID " + patientId + " was not found");
-		}
-		return new ResponseEntity<>(riskAssessmentService.assessPatientRiskById(patientId).getValue(), HttpStatus.OK);
+		// the patient existence check is done by the service with the same response used for the assessment
+		RiskAssessment assessment = riskAssessmentService.assessPatientRisk(patientId);
+		return ResponseEntity.ok()
+				.header(SERVER_TIMING_HEADER, serverTiming(assessment))
+				.header(RULES_VERSION_HEADER, assessment.getRuleVersion())
+				.body(assessment.getRisk().getValue());
 	}
 
 	@Operation(summary = "Get patient diabetes risk assessment by family name")
@@ -44,11 +54,48 @@ public class AssessmentController {
 	public ResponseEntity<Map<Integer, Risk>> getAssessmentByPatientFamilyName(
 			@Parameter(description = "Last name of patient to be assessed") @RequestParam String familyName)
 			throws PatientNotFoundException {
-		if (patientProxy.getPatientByFamilyName(familyName).isEmpty()) {
-			log.error("There is no patient with the following name: " + familyName + ".");
-			throw new PatientNotFoundException("There is no patient with the following name: " + familyName + ".");
-		}
-		return new ResponseEntity<>(riskAssessmentService.assessPatientRiskByFamilyName(familyName), HttpStatus.OK);
+		// the service raises PatientNotFoundException itself, no need to look the name up twice
+		return ResponseEntity.ok()
+				.header(RULES_VERSION_HEADER, riskRulesService.getRules().getVersion())
+				.body(riskAssessmentService.assessPatientRiskByFamilyName(familyName));
 	}
 
+	@Operation(summary = "Invalidates the cached risk assessment of a patient whose data or history changed")
+	@PostMapping("/invalidate/{patientId}")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void invalidateAssessment(
+			@Parameter(description = "id of patient whose assessment is outdated") @PathVariable Integer patientId) {
+		riskAssessmentService.invalidateAssessment(patientId);
+	}
+
+	@Operation(summary = "Reloads the risk rules and returns the version now in use")
+	@PostMapping("/rules/reload")
+	public ResponseEntity<String> reloadRules() {
+		return new ResponseEntity<>(riskRulesService.reload().getVersion(), HttpStatus.OK);
+	}
+
+	@Operation(summary = "Get diabetes risk assessment of several patients by their ids")
+	@PostMapping("/batch")
+	public ResponseEntity<BatchAssessment> getAssessmentsByPatientIds(
+			@Parameter(description = "ids of patients to be assessed") @RequestBody List<Integer> patientIds) {
+		return ResponseEntity.ok()
+				.header(RULES_VERSION_HEADER, riskRulesService.getRules().getVersion())
+				.body(riskAssessmentService.assessPatientRiskByIds(patientIds));
+	}
+
+	/**
+	 * Formats stage timings as a Server-Timing header value, e.g. "patient;dur=12, history;dur=15, total;dur=16".
+	 * A cached assessment is reported as "cache;desc=hit, total;dur=0".
+	 *
+	 * @param assessment assessment with timings
+	 * @return header value
+	 */
+	private String serverTiming(RiskAssessment assessment) {
+		if (assessment.isCached()) {
+			return "cache;desc=hit, total;dur=" + assessment.getTotalMillis();
+		}
+		return "patient;dur=" + assessment.getPatientMillis()
+			   + ", history;dur=" + assessment.getHistoryMillis()
+			   + ", total;dur=" + assessment.getTotalMillis();
+	}
 }
@@ -1,6 +1,7 @@
 package com.abernathyclinic.assessments.proxy;
 
 import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.bean.PatientSummaryBean;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,17 +9,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.validation.Valid;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "history", url = "${history.url}")
 public interface HistoryProxy {
     @PostMapping("/patHistory")
     NoteBean createNote(@Valid @RequestBody NoteBean patient);
 
+    // one page of notes ordered by id, the next page starts after the id of the last note
     @GetMapping("/patHistory")
-    List<NoteBean> getNotes();
+    List<NoteBean> getNotes(@RequestParam(value = "after", required = false) String after,
+                            @RequestParam(value = "size", required = false) Integer size);
 
     @GetMapping("/patHistory/{id}")
     NoteBean getNoteById(@PathVariable("id") String id);
@@ -26,6 +32,16 @@ public interface HistoryProxy {
     @GetMapping("/patHistory/patient/{patientId}")
     List<NoteBean> getPatientHistory(@PathVariable("patientId") Integer patientId);
 
+    // content of the notes only, all the risk assessment needs from a history
+    @GetMapping("/patHistory/patient/{patientId}/contents")
+    List<String> getPatientNoteContents(@PathVariable("patientId") Integer patientId);
+
+    @GetMapping("/patHistory/patient/{patientId}/summary")
+    PatientSummaryBean getPatientSummary(@PathVariable("patientId") Integer patientId);
+
+    @PostMapping("/patHistory/patient/batch")
+    Map<Integer, List<NoteBean>> getPatientsHistories(@RequestBody Collection<Integer> patientIds);
+
     @PutMapping("/patHistory/{id}")
     NoteBean updateNote(@PathVariable("id") String id, @Valid @RequestBody NoteBean patient);
 
@@ -1,10 +1,12 @@
 package com.abernathyclinic.assessments.proxy;
 
+import com.abernathyclinic.assessments.bean.PatientBatchBean;
 import com.abernathyclinic.assessments.bean.PatientBean;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.Collection;
 import java.util.List;
 
 @FeignClient(name = "patients", url = "${patients.url}")
@@ -12,12 +14,12 @@ public interface PatientProxy {
 	@PostMapping("/patient")
 	PatientBean createPatient(@Valid @RequestBody PatientBean patient);
 
-	@GetMapping("/patient")
-	List<PatientBean> getPatients();
-
 	@GetMapping("/patient/{id}")
 	PatientBean getPatientById(@PathVariable("id") Integer id);
 
+	@PostMapping("/patient/batch")
+	PatientBatchBean getPatientsByIds(@RequestBody Collection<Integer> ids);
+
 	@GetMapping(value = "/patient/familyName")
 	List<PatientBean> getPatientByFamilyName(@RequestParam("family") String family);
 
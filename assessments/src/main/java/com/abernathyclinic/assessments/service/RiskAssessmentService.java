@@ -1,33 +1,59 @@
 package com.abernathyclinic.assessments.service;
 
+import com.abernathyclinic.assessments.bean.BatchAssessment;
 import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.bean.PatientBatchBean;
 import com.abernathyclinic.assessments.bean.PatientBean;
+import com.abernathyclinic.assessments.bean.PatientSummaryBean;
+import com.abernathyclinic.assessments.bean.RiskAssessment;
+import com.abernathyclinic.assessments.constants.Cohort;
 import com.abernathyclinic.assessments.constants.Risk;
-import com.abernathyclinic.assessments.constants.Triggers;
 import com.abernathyclinic.assessments.exception.PatientNotFoundException;
 import com.abernathyclinic.assessments.proxy.HistoryProxy;
 import com.abernathyclinic.assessments.proxy.PatientProxy;
+import com.abernathyclinic.assessments.util.RiskRules;
+import com.abernathyclinic.assessments.util.TriggerMatcher;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static com.abernathyclinic.assessments.constants.Risk.*;
-import static com.abernathyclinic.assessments.constants.RiskAssessmentConstants.*;
-
 @Service
 @Slf4j
 public class RiskAssessmentService {
 	@Autowired
-	private PatientProxy          patientProxy;
+	private PatientProxy                        patientProxy;
+	@Autowired
+	private HistoryProxy                        historyProxy;
+	@Autowired
+	private PatientProfileService               patientProfileService;
 	@Autowired
-	private HistoryProxy          historyProxy;
+	private RiskRulesService                    riskRulesService;
 	@Autowired
-	private PatientProfileService patientProfileService;
+	private TriggerMatcher                      triggerMatcher;
+	@Autowired
+	private ExecutorService                     assessmentExecutor;
+	@Autowired
+	private AsyncCache<Integer, RiskAssessment> riskAssessmentCache;
+	@Value("${assessments.batch.patients-per-request:500}")
+	private int                                 patientsPerRequest;
 
 	/**
 	 * Calculates risk given an ID.
@@ -36,12 +62,82 @@ public class RiskAssessmentService {
 	 * @return risk level to develop diabetes
 	 */
 	public Risk assessPatientRiskById(Integer patientId) {
-		PatientBean patient = patientProxy.getPatientById(patientId);
-		return getRisk(patient);
+		return assessPatientRisk(patientId).getRisk();
+	}
+
+	/**
+	 * Calculates risk given an ID and reports how long each stage took.
+	 *
+	 * @param patientId ID of patient for which the risk assessment is done
+	 * @return risk level to develop diabetes with stage timings
+	 */
+	public RiskAssessment assessPatientRisk(Integer patientId) {
+		try {
+			return assessPatientRiskAsync(patientId).join();
+		} catch (CompletionException exception) {
+			// rethrow the original exception so that it is handled as if the calls were made by this thread
+			if (exception.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw exception;
+		}
+	}
+
+	/**
+	 * Calculates risk given an ID without blocking the calling thread.
+	 * A cached assessment is reused until the patient or their history changes. Otherwise patient and history are
+	 * requested at the same time on the assessment executor, and the patient response is also used to check that the
+	 * patient exists.
+	 *
+	 * @param patientId ID of patient for which the risk assessment is done
+	 * @return future risk level to develop diabetes with stage timings
+	 */
+	public CompletableFuture<RiskAssessment> assessPatientRiskAsync(Integer patientId) {
+		long          start    = System.nanoTime();
+		AtomicBoolean computed = new AtomicBoolean();
+		// the patient is read by the computation itself, so that an invalidation while it runs discards its result
+		CompletableFuture<RiskAssessment> assessment = riskAssessmentCache.get(patientId, (id, executor) -> {
+			computed.set(true);
+			return computeAssessment(id, Map.of(), start);
+		});
+		return computed.get() ? assessment : cached(patientId, assessment, start);
+	}
+
+	/**
+	 * Reports a cached assessment as such, with its risk and rule version but no stage timing.
+	 */
+	private static CompletableFuture<RiskAssessment> cached(Integer patientId,
+			CompletableFuture<RiskAssessment> assessment, long start) {
+		return assessment.thenApply(cached -> new RiskAssessment(patientId, cached.getRisk(),
+				cached.getRuleVersion(), 0, 0, elapsedMillis(start), true));
+	}
+
+	/**
+	 * Removes the cached assessment of a patient, to be called whenever the patient or their history changes.
+	 *
+	 * @param patientId ID of patient whose assessment is outdated
+	 */
+	public void invalidateAssessment(Integer patientId) {
+		log.debug("Invalidating risk assessment of patient " + patientId);
+		riskAssessmentCache.synchronous().invalidate(patientId);
+	}
+
+	private CompletableFuture<RiskAssessment> computeAssessment(Integer patientId, Map<Integer, PatientBean> patients,
+			long start) {
+		CompletableFuture<Timed<PatientBean>> patient = CompletableFuture.supplyAsync(
+				() -> timed(() -> getPatient(patientId, patients)), assessmentExecutor);
+		CompletableFuture<Timed<Long>> history = CompletableFuture.supplyAsync(
+				() -> timed(() -> getTriggerCount(patientId)), assessmentExecutor);
+		return patient.thenCombine(history, (timedPatient, timedHistory) -> {
+			RiskRules rules = riskRulesService.getRules();
+			return new RiskAssessment(patientId, getRisk(rules, timedPatient.value(), timedHistory.value()),
+					rules.getVersion(), timedPatient.millis(), timedHistory.millis(), elapsedMillis(start), false);
+		});
 	}
 
 	/**
 	 * Calculates risk given a family name.
+	 * Histories of all the patients sharing this name are fetched with a single call to the history microservice.
 	 *
 	 * @param familyName Last name of patient for which the risk assessment is done
 	 * @return risk level to develop diabetes
@@ -49,50 +145,204 @@ public class RiskAssessmentService {
 	public Map<Integer, Risk> assessPatientRiskByFamilyName(String familyName) {
 		List<PatientBean> patients = patientProxy.getPatientByFamilyName(familyName);
 		if (patients.isEmpty()) {
+			log.error("There is no patient with the following name: " + familyName + ".");
 			throw new PatientNotFoundException("There is no patient with the following name: " + familyName + ".");
 		}
+		Map<Integer, List<NoteBean>> histories = historyProxy.getPatientsHistories(
+				patients.stream().map(PatientBean::getId).collect(Collectors.toSet()));
+		RiskRules              rules  = riskRulesService.getRules();
 		HashMap<Integer, Risk> result = new HashMap<>(patients.size());
-		patients.forEach(patient -> result.put(patient.getId(), getRisk(patient)));
+		patients.forEach(patient -> result.put(patient.getId(),
+				getRisk(rules, patient, countTriggers(histories.getOrDefault(patient.getId(), List.of())))));
 		return result;
 	}
 
+	/**
+	 * Calculates risk of several patients given their IDs.
+	 * Each patient is assessed once even if their ID is repeated, and assessments run in parallel on the bounded
+	 * assessment executor. The patients whose assessment is not cached are read beforehand with one call per
+	 * assessments.batch.patients-per-request patients, and their assessments are not cached, as the patients could
+	 * change between that read and the assessment. A patient who can not be assessed does not fail the whole batch.
+	 *
+	 * @param patientIds IDs of patients for which the risk assessment is done
+	 * @return risk level of every assessed patient and error message of every other one
+	 */
+	public BatchAssessment assessPatientRiskByIds(Collection<Integer> patientIds) {
+		LinkedHashSet<Integer> uniqueIds = patientIds.stream()
+				.filter(Objects::nonNull)
+				.collect(LinkedHashSet<Integer>::new, LinkedHashSet::add, LinkedHashSet::addAll);
+		long start = System.nanoTime();
+		Map<Integer, CompletableFuture<RiskAssessment>> cachedAssessments = new HashMap<>();
+		uniqueIds.forEach(patientId -> {
+			CompletableFuture<RiskAssessment> cachedAssessment = riskAssessmentCache.getIfPresent(patientId);
+			if (cachedAssessment != null) {
+				cachedAssessments.put(patientId, cached(patientId, cachedAssessment, start));
+			}
+		});
+		Map<Integer, PatientBean> patients = getPatients(uniqueIds.stream()
+				.filter(patientId -> !cachedAssessments.containsKey(patientId))
+				.toList());
+		// pool threads never wait for each other, only this thread joins the futures
+		Map<Integer, CompletableFuture<RiskAssessment>> assessments = new LinkedHashMap<>();
+		uniqueIds.forEach(patientId -> {
+			if (cachedAssessments.containsKey(patientId)) {
+				assessments.put(patientId, cachedAssessments.get(patientId));
+			} else if (patients.containsKey(patientId)) {
+				// not cached: the patient was read before the computation, an invalidation since then would be missed
+				assessments.put(patientId, computeAssessment(patientId, patients, start));
+			} else {
+				assessments.put(patientId, assessPatientRiskAsync(patientId));
+			}
+		});
+
+		Map<Integer, Risk>   risks  = new LinkedHashMap<>(assessments.size());
+		Map<Integer, String> errors = new LinkedHashMap<>();
+		assessments.forEach((patientId, assessment) -> {
+			try {
+				risks.put(patientId, assessment.join().getRisk());
+			} catch (CompletionException exception) {
+				Throwable cause = exception.getCause();
+				log.error("Risk assessment failed for patient " + patientId, cause);
+				// some exceptions have no message, their class still tells what went wrong
+				errors.put(patientId, cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+			}
+		});
+		return new BatchAssessment(risks, errors);
+	}
+
 	/**
 	 * Evaluates risk to develop diabetes according to gender, age and number of triggers found.
 	 *
-	 * @param patient Patient for which the risk assessment is done
+	 * @param rules      Risk rules to apply
+	 * @param patient    Patient for which the risk assessment is done
+	 * @param nbTriggers Number of distinct triggers found in patient history
 	 * @return risk level to develop diabetes
 	 */
-	private Risk getRisk(PatientBean patient) {
-		if (patient == null) {
-			log.error("Patient was not found");
-			throw new PatientNotFoundException("Patient was not found");
-		} else {
-			// get patient traits
-			int     age        = patientProfileService.getAge(patient.getDob());
-			long    nbTriggers = countTriggers(historyProxy.getPatientHistory(patient.getId()));
-			String  sex        = patient.getSex();
-			boolean isFemale   = patientProfileService.isFemale(sex);
-			boolean isMale     = patientProfileService.isMale(sex);
-
-			if (nbTriggers == 0) {
-				return NONE;
+	private Risk getRisk(RiskRules rules, PatientBean patient, long nbTriggers) {
+		return rules.evaluate(getCohort(patient), nbTriggers);
+	}
+
+	/**
+	 * Finds the group of patients sharing the same risk thresholds as the given one.
+	 *
+	 * @param patient Patient for which the risk assessment is done
+	 * @return cohort of the patient
+	 */
+	private Cohort getCohort(PatientBean patient) {
+		int    age = patientProfileService.getAge(patient.getDob());
+		String sex = patient.getSex();
+		if (patientProfileService.isOverAgeLimit(age)) {
+			return Cohort.OVER_AGE_LIMIT;
+		}
+		if (patientProfileService.isFemale(sex)) {
+			return Cohort.FEMALE;
+		}
+		if (patientProfileService.isMale(sex)) {
+			return Cohort.MALE;
+		}
+		return Cohort.OTHER;
+	}
+
+	/**
+	 * Gets several patients from the patients microservice, with one call per chunk of IDs. The patients of a chunk
+	 * which could not be read are left out, to be read one by one with their assessment.
+	 *
+	 * @param patientIds IDs of patients
+	 * @return patient by ID, null for the IDs the patients microservice does not know
+	 */
+	private Map<Integer, PatientBean> getPatients(List<Integer> patientIds) {
+		Map<Integer, PatientBean> patients = new HashMap<>(patientIds.size());
+		for (int from = 0; from < patientIds.size(); from += patientsPerRequest) {
+			List<Integer>    chunk = patientIds.subList(from, Math.min(from + patientsPerRequest, patientIds.size()));
+			PatientBatchBean batch;
+			try {
+				batch = patientProxy.getPatientsByIds(chunk);
+			} catch (FeignException exception) {
+				log.warn("Could not read " + chunk.size() + " patients at once: " + exception.getMessage());
+				continue;
 			}
+			batch.getPatients().forEach(patient -> patients.put(patient.getId(), patient));
+			batch.getMissingIds().forEach(patientId -> patients.put(patientId, null));
+		}
+		return patients;
+	}
 
-			if (patientProfileService.isOverAgeLimit(age)) {
-				if (nbTriggers >= EARLY_ONSET_OVER_AGE_LIMIT) return EARLY_ONSET;
-				if (nbTriggers >= IN_DANGER_OVER_AGE_LIMIT) return IN_DANGER;
-				if (nbTriggers >= BORDERLINE_OVER_AGE_LIMIT) return BORDERLINE;
-			} else {
-				if (isFemale) {
-					if (nbTriggers >= EARLY_ONSET_FEMALE_TRIGGER_COUNT) return EARLY_ONSET;
-					if (nbTriggers >= IN_DANGER_FEMALE_TRIGGER_COUNT) return IN_DANGER;
-				} else if (isMale) {
-					if (nbTriggers >= EARLY_ONSET_MALE_TRIGGER_COUNT) return EARLY_ONSET;
-					if (nbTriggers >= IN_DANGER_MALE_TRIGGER_COUNT) return IN_DANGER;
-				}
+	/**
+	 * Gets a patient, from the patients already read or else from the patients microservice.
+	 *
+	 * @param patientId ID of patient
+	 * @param patients  patients already read, null for the IDs the patients microservice does not know
+	 * @return patient
+	 * @throws PatientNotFoundException if the patients microservice does not know this ID
+	 */
+	private PatientBean getPatient(Integer patientId, Map<Integer, PatientBean> patients) {
+		PatientBean patient;
+		if (patients.containsKey(patientId)) {
+			patient = patients.get(patientId);
+		} else {
+			try {
+				patient = patientProxy.getPatientById(patientId);
+			} catch (FeignException.NotFound notFound) {
+				patient = null;
 			}
-			return NONE;
 		}
+		if (patient == null) {
+			log.error("Patient with the provided ID " + patientId + " was not found");
+			throw new PatientNotFoundException("Patient with the provided ID " + patientId + " was not found");
+		}
+		return patient;
+	}
+
+	/**
+	 * Gets the content of a patient's notes from the history microservice, without the rest of the notes.
+	 *
+	 * @param patientId ID of patient
+	 * @return content of each note
+	 * @throws PatientNotFoundException if the history microservice does not know this patient
+	 */
+	private List<String> getPatientNoteContents(Integer patientId) {
+		try {
+			return historyProxy.getPatientNoteContents(patientId);
+		} catch (FeignException.NotFound notFound) {
+			throw new PatientNotFoundException("Patient with the provided ID " + patientId + " was not found");
+		}
+	}
+
+	/**
+	 * Counts the triggers in a patient history, from the summary maintained by the history microservice when
+	 * available, or else by scanning the content of every note.
+	 *
+	 * @param patientId ID of patient
+	 * @return trigger count
+	 */
+	private long getTriggerCount(Integer patientId) {
+		PatientSummaryBean summary;
+		try {
+			summary = historyProxy.getPatientSummary(patientId);
+		} catch (FeignException.NotFound notFound) {
+			// history microservice not serving summaries yet
+			summary = null;
+		}
+		if (summary != null) {
+			return summary.countTriggers(triggerMatcher.getTriggers());
+		}
+		return triggerMatcher.countDistinct(getPatientNoteContents(patientId));
+	}
+
+	private static <T> Timed<T> timed(Supplier<T> call) {
+		long start = System.nanoTime();
+		T    value = call.get();
+		return new Timed<>(value, elapsedMillis(start));
+	}
+
+	private static long elapsedMillis(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * Result of a remote call and how long it took, in milliseconds.
+	 */
+	private record Timed<T>(T value, long millis) {
 	}
 
 	/**
@@ -102,18 +352,8 @@ public class RiskAssessmentService {
 	 * @return trigger count
 	 */
 	public long countTriggers(List<NoteBean> notes) {
-		// concatenate all notes to one single String
-		String concatenatedNotes = notes.stream()
-				.map(NoteBean::getContent)
-				.map(String::trim)
-				.map(String::toLowerCase)
-				.collect(Collectors.joining());
-
-		// check how many times any trigger appears in the concatenated String
-		return Triggers.list.stream()
-				.map(String::toLowerCase)
-				.filter(concatenatedNotes::contains)
-				.count();
+		// scan each note once with the compiled automaton, whatever the number of triggers
+		return triggerMatcher.countDistinct(() -> notes.stream().map(NoteBean::getContent).iterator());
 	}
 
 }
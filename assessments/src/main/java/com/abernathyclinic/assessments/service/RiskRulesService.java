@@ -0,0 +1,107 @@
+package com.abernathyclinic.assessments.service;
+
+import com.abernathyclinic.assessments.bean.RiskAssessment;
+import com.abernathyclinic.assessments.util.RiskRules;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the compiled risk rules, loaded from assessments.rules.location.
+ * The rules file is checked periodically and can be reloaded on demand: new rules are swapped atomically, so an
+ * assessment always uses one consistent table, and invalid rules are rejected while the current ones stay active.
+ */
+@Service
+@Slf4j
+public class RiskRulesService {
+	private final Resource                            rulesResource;
+	private final AsyncCache<Integer, RiskAssessment> riskAssessmentCache;
+	private final AtomicReference<RiskRules>          rules = new AtomicReference<>();
+	private volatile long                             lastModified;
+
+	public RiskRulesService(@Value("${assessments.rules.location:classpath:risk-rules.properties}") String location,
+			ResourceLoader resourceLoader, AsyncCache<Integer, RiskAssessment> riskAssessmentCache) {
+		this.rulesResource       = resourceLoader.getResource(location);
+		this.riskAssessmentCache = riskAssessmentCache;
+		// fail fast at startup, there is no previous version to fall back to
+		reload();
+	}
+
+	/**
+	 * Returns the rules currently in use.
+	 *
+	 * @return compiled rules
+	 */
+	public RiskRules getRules() {
+		return rules.get();
+	}
+
+	/**
+	 * Loads and compiles the rules file, then makes it the active rules.
+	 * Cached assessments are dropped when the version changes, as they were computed with the previous rules.
+	 *
+	 * @return rules now in use
+	 * @throws IllegalArgumentException if the rules file is invalid
+	 * @throws UncheckedIOException     if the rules file can not be read
+	 */
+	public synchronized RiskRules reload() {
+		long      modified = lastModified();
+		RiskRules loaded   = RiskRules.compile(readProperties());
+		RiskRules previous = rules.getAndSet(loaded);
+		lastModified = modified;
+		if (previous != null && !previous.getVersion().equals(loaded.getVersion())) {
+			riskAssessmentCache.synchronous().invalidateAll();
+		}
+		log.info("Risk rules version " + loaded.getVersion() + " loaded from " + rulesResource.getDescription());
+		return loaded;
+	}
+
+	/**
+	 * Reloads the rules when the rules file was modified since last load.
+	 */
+	@Scheduled(fixedDelayString = "${assessments.rules.refresh-interval:60000}",
+			initialDelayString = "${assessments.rules.refresh-interval:60000}")
+	public void reloadIfModified() {
+		if (lastModified() == lastModified) {
+			return;
+		}
+		try {
+			reload();
+		} catch (RuntimeException exception) {
+			log.error("Risk rules were not reloaded, version " + getRules().getVersion() + " remains active", exception);
+		}
+	}
+
+	private Properties readProperties() {
+		Properties properties = new Properties();
+		try (InputStream input = rulesResource.getInputStream();
+			 Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (IOException exception) {
+			throw new UncheckedIOException("Risk rules can not be read from " + rulesResource.getDescription(),
+					exception);
+		}
+		return properties;
+	}
+
+	private long lastModified() {
+		try {
+			return rulesResource.lastModified();
+		} catch (IOException exception) {
+			return lastModified;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.abernathyclinic.assessments.util;
+
+import com.abernathyclinic.assessments.constants.Cohort;
+import com.abernathyclinic.assessments.constants.Risk;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Risk thresholds compiled into a flat lookup table: risk = table[cohort * width + min(trigger count, width - 1)].
+ * Evaluating a patient is then a single array access, without branching nor allocating.
+ * Instances are immutable and thread-safe, a new instance is compiled whenever the rules change.
+ */
+public final class RiskRules {
+	private final String version;
+	/** One row per cohort, one column per trigger count, the last column holding every count above. */
+	private final Risk[] table;
+	private final int    width;
+
+	private RiskRules(String version, Risk[] table, int width) {
+		this.version = version;
+		this.table   = table;
+		this.width   = width;
+	}
+
+	/**
+	 * Compiles rules read from a properties file such as risk-rules.properties.
+	 * Each threshold is the minimum trigger count from which a cohort reaches a risk level, e.g. "male.in-danger = 3".
+	 *
+	 * @param properties version and thresholds
+	 * @return compiled rules
+	 * @throws IllegalArgumentException if the version is missing or if thresholds are invalid
+	 */
+	public static RiskRules compile(Properties properties) {
+		String version = properties.getProperty("version", "").trim();
+		if (version.isEmpty()) {
+			throw new IllegalArgumentException("Risk rules must have a version");
+		}
+		Risk[] levels = Arrays.stream(Risk.values()).filter(risk -> risk != Risk.NONE).toArray(Risk[]::new);
+
+		// read thresholds, checking that higher risk levels need more triggers
+		int[][] thresholds   = new int[Cohort.values().length][levels.length];
+		int     maxThreshold = 0;
+		for (Cohort cohort : Cohort.values()) {
+			int previous = 0;
+			for (int level = 0; level < levels.length; level++) {
+				String key   = cohort.getKey() + "." + levels[level].name().toLowerCase().replace('_', '-');
+				String value = properties.getProperty(key);
+				if (value == null) {
+					thresholds[cohort.ordinal()][level] = Integer.MAX_VALUE;
+					continue;
+				}
+				int threshold;
+				try {
+					threshold = Integer.parseInt(value.trim());
+				} catch (NumberFormatException exception) {
+					throw new IllegalArgumentException("Threshold " + key + " is not a number: " + value);
+				}
+				if (threshold <= previous) {
+					throw new IllegalArgumentException("Threshold " + key + " must be greater than " + previous);
+				}
+				thresholds[cohort.ordinal()][level] = threshold;
+				previous                            = threshold;
+				maxThreshold                        = Math.max(maxThreshold, threshold);
+			}
+		}
+
+		// fill every cell with the highest level reached by the cohort for the trigger count
+		int    width = maxThreshold + 1;
+		Risk[] table = new Risk[Cohort.values().length * width];
+		for (Cohort cohort : Cohort.values()) {
+			for (int count = 0; count < width; count++) {
+				Risk risk = Risk.NONE;
+				for (int level = 0; level < levels.length; level++) {
+					if (count >= thresholds[cohort.ordinal()][level]) {
+						risk = levels[level];
+					}
+				}
+				table[cohort.ordinal() * width + count] = risk;
+			}
+		}
+		return new RiskRules(version, table, width);
+	}
+
+	/**
+	 * Evaluates the risk of a patient.
+	 *
+	 * @param cohort     cohort of the patient
+	 * @param nbTriggers number of distinct triggers found in patient history
+	 * @return risk level to develop diabetes
+	 */
+	public Risk evaluate(Cohort cohort, long nbTriggers) {
+		int count = (int) Math.min(Math.max(nbTriggers, 0), width - 1);
+		return table[cohort.ordinal() * width + count];
+	}
+
+	/**
+	 * Returns the version of the rules, as written in the rules file.
+	 *
+	 * @return version of the rules
+	 */
+	public String getVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,91 @@
+package com.abernathyclinic.assessments.util;
+
+import java.text.Normalizer;
+
+/**
+ * Folds case, diacritics and whitespace so that "Hémoglobine A1C", "HEMOGLOBINE  a1c" and "hémoglobine\r\na1c" are
+ * all read the same way.
+ * Folding relies on a table computed once for Latin characters and combining marks, so normalizing a text char by
+ * char does not allocate anything.
+ */
+public final class TextNormalizer {
+	/** Folded value of every whitespace char. */
+	public static final char SPACE = ' ';
+	/** Folded value of chars which must be skipped, such as combining diacritical marks. */
+	public static final char IGNORED = '\0';
+
+	/** Covers Basic Latin, Latin-1, Latin Extended-A and B, IPA, spacing modifiers and combining diacritical marks. */
+	private static final char[] FOLDING_TABLE = buildFoldingTable(0x0370);
+
+	private TextNormalizer() {
+	}
+
+	/**
+	 * Folds one char.
+	 *
+	 * @param c char to fold
+	 * @return lower case char without diacritics, {@link #SPACE} for any whitespace or {@link #IGNORED}
+	 */
+	public static char fold(char c) {
+		if (c < FOLDING_TABLE.length) {
+			return FOLDING_TABLE[c];
+		}
+		if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+			return SPACE;
+		}
+		if (c == '‘' || c == '’') {
+			return '\'';
+		}
+		return Character.toLowerCase(c);
+	}
+
+	/**
+	 * Normalizes a whole text: chars are folded, whitespace runs are collapsed to one space and the text is trimmed.
+	 * It is meant to prepare patterns, notes are folded on the fly with {@link #fold(char)}.
+	 *
+	 * @param text text to normalize
+	 * @return normalized text
+	 */
+	public static String normalize(String text) {
+		StringBuilder normalized    = new StringBuilder(text.length());
+		boolean       previousSpace = true;
+		for (int i = 0; i < text.length(); i++) {
+			char folded = fold(text.charAt(i));
+			if (folded == IGNORED || (folded == SPACE && previousSpace)) {
+				continue;
+			}
+			previousSpace = folded == SPACE;
+			normalized.append(folded);
+		}
+		int length = normalized.length();
+		if (length > 0 && normalized.charAt(length - 1) == SPACE) {
+			normalized.setLength(length - 1);
+		}
+		return normalized.toString();
+	}
+
+	private static char[] buildFoldingTable(int size) {
+		char[] table = new char[size];
+		for (char c = 0; c < size; c++) {
+			if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+				table[c] = SPACE;
+			} else if (Character.getType(c) == Character.NON_SPACING_MARK) {
+				table[c] = IGNORED;
+			} else {
+				// keep the base letter of the canonical decomposition, 'É' -> 'e' + U+0301 -> 'e'
+				String decomposed = Normalizer.normalize(String.valueOf(Character.toLowerCase(c)), Normalizer.Form.NFD);
+				table[c] = decomposed.length() == 1 || Character.getType(decomposed.charAt(1)) == Character.NON_SPACING_MARK
+						   ? decomposed.charAt(0)
+						   : Character.toLowerCase(c);
+			}
+		}
+		// letters with a stroke have no canonical decomposition
+		table['ø'] = 'o';
+		table['Ø'] = 'o';
+		table['đ'] = 'd';
+		table['Đ'] = 'd';
+		table['ł'] = 'l';
+		table['Ł'] = 'l';
+		return table;
+	}
+}
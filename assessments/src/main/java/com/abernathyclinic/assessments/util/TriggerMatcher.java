@@ -0,0 +1,204 @@
+package com.abernathyclinic.assessments.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Multi-pattern matcher (Aho-Corasick automaton) compiled once from a list of triggers.
+ * The automaton is stored as a dense transition table, so every note is scanned in a single pass
+ * whatever the number of triggers, without building any intermediate String.
+ * Triggers and notes go through {@link TextNormalizer}, so matching ignores case, accents and whitespace variations.
+ * Instances are immutable and thread-safe.
+ */
+public final class TriggerMatcher {
+	private static final int ROOT = 0;
+
+	private final List<String> triggers;
+	/** Maps a char to its column in the transition table, column 0 being "any other char". */
+	private final int[]        charClasses;
+	private final int          alphabetSize;
+	/** Transition table of the complete automaton: next state = transitions[state * alphabetSize + charClass]. */
+	private final int[]        transitions;
+	/** Indexes of the triggers ending at each state, failure links already followed. */
+	private final int[][]      outputs;
+
+	/**
+	 * Compiles the automaton.
+	 *
+	 * @param triggers triggers to look for
+	 */
+	public TriggerMatcher(List<String> triggers) {
+		this.triggers = List.copyOf(triggers);
+
+		// normalize every trigger once and for all
+		String[] patterns = this.triggers.stream()
+				.map(TextNormalizer::normalize)
+				.toArray(String[]::new);
+
+		// build the alphabet from chars used in triggers only
+		char maxChar = 0;
+		for (String pattern : patterns) {
+			for (int i = 0; i < pattern.length(); i++) {
+				maxChar = (char) Math.max(maxChar, pattern.charAt(i));
+			}
+		}
+		charClasses = new int[maxChar + 1];
+		int classCount = 1;
+		for (String pattern : patterns) {
+			for (int i = 0; i < pattern.length(); i++) {
+				char c = pattern.charAt(i);
+				if (charClasses[c] == 0) {
+					charClasses[c] = classCount++;
+				}
+			}
+		}
+		alphabetSize = classCount;
+
+		// build the trie
+		List<int[]>        gotos        = new ArrayList<>();
+		List<List<Integer>> stateOutputs = new ArrayList<>();
+		gotos.add(newRow());
+		stateOutputs.add(new ArrayList<>());
+		for (int index = 0; index < patterns.length; index++) {
+			int state = ROOT;
+			for (int i = 0; i < patterns[index].length(); i++) {
+				int charClass = charClasses[patterns[index].charAt(i)];
+				if (gotos.get(state)[charClass] < 0) {
+					gotos.get(state)[charClass] = gotos.size();
+					gotos.add(newRow());
+					stateOutputs.add(new ArrayList<>());
+				}
+				state = gotos.get(state)[charClass];
+			}
+			stateOutputs.get(state).add(index);
+		}
+
+		// resolve failure links breadth first to turn the trie into a complete automaton
+		int   stateCount = gotos.size();
+		int[] failures   = new int[stateCount];
+		transitions = new int[stateCount * alphabetSize];
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int charClass = 0; charClass < alphabetSize; charClass++) {
+			int next = gotos.get(ROOT)[charClass];
+			if (next < 0) {
+				transitions[charClass] = ROOT;
+			} else {
+				transitions[charClass] = next;
+				failures[next]         = ROOT;
+				queue.add(next);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			stateOutputs.get(state).addAll(stateOutputs.get(failures[state]));
+			for (int charClass = 0; charClass < alphabetSize; charClass++) {
+				int next     = gotos.get(state)[charClass];
+				int fallback = transitions[failures[state] * alphabetSize + charClass];
+				if (next < 0) {
+					transitions[state * alphabetSize + charClass] = fallback;
+				} else {
+					transitions[state * alphabetSize + charClass] = next;
+					failures[next]                                = fallback;
+					queue.add(next);
+				}
+			}
+		}
+
+		outputs = new int[stateCount][];
+		for (int state = 0; state < stateCount; state++) {
+			outputs[state] = stateOutputs.get(state).stream().distinct().mapToInt(Integer::intValue).toArray();
+		}
+	}
+
+	/**
+	 * Counts how many distinct triggers appear in at least one of the texts.
+	 *
+	 * @param texts texts to scan, such as the contents of the notes of a patient
+	 * @return number of distinct triggers found
+	 */
+	public int countDistinct(Iterable<String> texts) {
+		boolean[] found = new boolean[triggers.size()];
+		int       count = 0;
+		for (String text : texts) {
+			if (text != null) {
+				count += scan(text, found);
+				if (count == found.length) {
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Lists the distinct triggers appearing in a text, as the history microservice does to count the notes of each
+	 * trigger in patient summaries.
+	 *
+	 * @param text text to scan, such as the content of a note
+	 * @return triggers found, in the order of the trigger list
+	 */
+	public Set<String> findDistinct(String text) {
+		Set<String> result = new LinkedHashSet<>();
+		if (text == null) {
+			return result;
+		}
+		boolean[] found = new boolean[triggers.size()];
+		scan(text, found);
+		for (int index = 0; index < found.length; index++) {
+			if (found[index]) {
+				result.add(triggers.get(index));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the triggers the automaton was compiled from.
+	 *
+	 * @return list of triggers
+	 */
+	public List<String> getTriggers() {
+		return triggers;
+	}
+
+	/**
+	 * Runs the automaton over one text and flags the triggers found.
+	 * Chars are folded on the fly and whitespace runs are read as one space, like in normalized triggers.
+	 *
+	 * @param text  text to scan
+	 * @param found triggers already found, updated in place
+	 * @return number of triggers found for the first time
+	 */
+	private int scan(CharSequence text, boolean[] found) {
+		int     newlyFound    = 0;
+		int     state         = ROOT;
+		boolean previousSpace = true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = TextNormalizer.fold(text.charAt(i));
+			if (c == TextNormalizer.IGNORED || (c == TextNormalizer.SPACE && previousSpace)) {
+				continue;
+			}
+			previousSpace = c == TextNormalizer.SPACE;
+			int charClass = c < charClasses.length ? charClasses[c] : 0;
+			state = transitions[state * alphabetSize + charClass];
+			for (int index : outputs[state]) {
+				if (!found[index]) {
+					found[index] = true;
+					newlyFound++;
+				}
+			}
+		}
+		return newlyFound;
+	}
+
+	private int[] newRow() {
+		int[] row = new int[alphabetSize];
+		Arrays.fill(row, -1);
+		return row;
+	}
+}
@@ -0,0 +1,42 @@
+package com.abernathyclinic.assessments.configuration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+class MetricsConfigurationTest {
+
+	@Autowired MockMvc mockMvc;
+
+	@Test
+	@DisplayName("Prometheus endpoint publishes JVM, executor and cache metrics")
+	void prometheusEndpointPublishesMetrics() throws Exception {
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("jvm_memory_used_bytes")))
+				.andExpect(content().string(containsString("executor_pool_size_threads{application=\"assessments\",name=\"assessmentExecutor\"")))
+				.andExpect(content().string(containsString("cache_gets_total{application=\"assessments\",cache=\"riskAssessments\"")));
+	}
+
+	@Test
+	@DisplayName("Request timers have percentile histograms")
+	void requestTimersHavePercentileHistograms() throws Exception {
+		mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("http_server_requests_seconds_bucket")));
+	}
+}
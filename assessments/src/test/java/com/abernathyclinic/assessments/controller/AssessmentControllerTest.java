@@ -1,32 +1,45 @@
 package com.abernathyclinic.assessments.controller;
 
+import com.abernathyclinic.assessments.bean.BatchAssessment;
 import com.abernathyclinic.assessments.bean.PatientBean;
+import com.abernathyclinic.assessments.bean.RiskAssessment;
 import com.abernathyclinic.assessments.constants.Risk;
+import com.abernathyclinic.assessments.exception.PatientNotFoundException;
 import com.abernathyclinic.assessments.proxy.HistoryProxy;
 import com.abernathyclinic.assessments.proxy.PatientProxy;
 import com.abernathyclinic.assessments.service.PatientProfileService;
 import com.abernathyclinic.assessments.service.RiskAssessmentService;
+import com.abernathyclinic.assessments.service.RiskRulesService;
+import com.abernathyclinic.assessments.util.RiskRules;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -40,6 +53,7 @@ class AssessmentControllerTest {
 	@MockBean PatientProfileService patientProfileService;
 	@MockBean PatientProxy          patientProxy;
 	@MockBean HistoryProxy          historyProxy;
+	@MockBean RiskRulesService      riskRulesService;
 
 	private PatientBean testNone;
 	private PatientBean testBorderline;
@@ -58,10 +72,17 @@ class AssessmentControllerTest {
 				"400-555-6666");
 	}
 
+	@BeforeEach
+	void stubRules() {
+		Properties rules = new Properties();
+		rules.setProperty("version", "1");
+		when(riskRulesService.getRules()).thenReturn(RiskRules.compile(rules));
+	}
+
 	@Test
 	@DisplayName("getAssessmentByPatientId with patient that does not exist")
 	void getAssessmentByPatientId_throwsPatientNotFoundException() throws Exception {
-		when(patientProxy.getPatientById(anyInt())).thenReturn(null);
+		when(riskAssessmentService.assessPatientRisk(anyInt())).thenThrow(PatientNotFoundException.class);
 
 		mockMvc.perform(get("/assess/1"))
 				.andDo(print())
@@ -71,20 +92,22 @@ class AssessmentControllerTest {
 	@Test
 	@DisplayName("getAssessmentByPatientId returns NONE")
 	void getAssessmentByPatientId_returnsNONE() throws Exception {
-		when(patientProxy.getPatientById(anyInt())).thenReturn(testNone);
-		when(riskAssessmentService.assessPatientRiskById(anyInt())).thenReturn(Risk.NONE);
+		when(riskAssessmentService.assessPatientRisk(anyInt()))
+				.thenReturn(new RiskAssessment(testNone.getId(), Risk.NONE, "1", 12, 15, 16, false));
 
 		mockMvc.perform(get("/assess/1"))
 				.andDo(print())
 				.andExpect(status().isOk())
-				.andExpect(jsonPath("$", is(Risk.NONE.getValue())));
+				.andExpect(jsonPath("$", is(Risk.NONE.getValue())))
+				.andExpect(header().string("Server-Timing", "patient;dur=12, history;dur=15, total;dur=16"))
+				.andExpect(header().string("X-Risk-Rules-Version", "1"));
 	}
 
 	@Test
 	@DisplayName("getAssessmentByPatientId returns BORDERLINE")
 	void getAssessmentByPatientId_returnsBORDERLINE() throws Exception {
-		when(patientProxy.getPatientById(anyInt())).thenReturn(testBorderline);
-		when(riskAssessmentService.assessPatientRiskById(anyInt())).thenReturn(Risk.BORDERLINE);
+		when(riskAssessmentService.assessPatientRisk(anyInt()))
+				.thenReturn(new RiskAssessment(testBorderline.getId(), Risk.BORDERLINE, "1", 12, 15, 16, false));
 
 		mockMvc.perform(get("/assess/2"))
 				.andDo(print())
@@ -95,8 +118,8 @@ class AssessmentControllerTest {
 	@Test
 	@DisplayName("getAssessmentByPatientId returns IN_DANGER")
 	void getAssessmentByPatientId_returnsIN_DANGER() throws Exception {
-		when(patientProxy.getPatientById(anyInt())).thenReturn(testInDanger);
-		when(riskAssessmentService.assessPatientRiskById(anyInt())).thenReturn(Risk.IN_DANGER);
+		when(riskAssessmentService.assessPatientRisk(anyInt()))
+				.thenReturn(new RiskAssessment(testInDanger.getId(), Risk.IN_DANGER, "1", 12, 15, 16, false));
 
 		mockMvc.perform(get("/assess/3"))
 				.andDo(print())
@@ -107,8 +130,8 @@ class AssessmentControllerTest {
 	@Test
 	@DisplayName("getAssessmentByPatientId returns EARLY_ONSET")
 	void getAssessmentByPatientId_returnsEARLY_ONSET() throws Exception {
-		when(patientProxy.getPatientById(anyInt())).thenReturn(testEarlyOnset);
-		when(riskAssessmentService.assessPatientRiskById(anyInt())).thenReturn(Risk.EARLY_ONSET);
+		when(riskAssessmentService.assessPatientRisk(anyInt()))
+				.thenReturn(new RiskAssessment(testEarlyOnset.getId(), Risk.EARLY_ONSET, "1", 12, 15, 16, false));
 
 		mockMvc.perform(get("/assess/4"))
 				.andDo(print())
@@ -178,4 +201,55 @@ class AssessmentControllerTest {
 				.andExpect(jsonPath("$",
 						hasEntry(String.valueOf(testEarlyOnset.getId()), String.valueOf(Risk.EARLY_ONSET))));
 	}
-}
\ No newline at end of file
+
+	@Test
+	@DisplayName("getAssessmentByPatientId reports a cache hit")
+	void getAssessmentByPatientId_reportsCacheHit() throws Exception {
+		when(riskAssessmentService.assessPatientRisk(anyInt()))
+				.thenReturn(new RiskAssessment(testNone.getId(), Risk.NONE, "1", 0, 0, 1, true));
+
+		mockMvc.perform(get("/assess/1"))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(header().string("Server-Timing", "cache;desc=hit, total;dur=1"));
+	}
+
+	@Test
+	@DisplayName("reloadRules returns version of reloaded rules")
+	void reloadRules_returnsVersion() throws Exception {
+		Properties rules = new Properties();
+		rules.setProperty("version", "2");
+		when(riskRulesService.reload()).thenReturn(RiskRules.compile(rules));
+
+		mockMvc.perform(post("/assess/rules/reload"))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(content().string("2"));
+	}
+
+	@Test
+	@DisplayName("invalidateAssessment removes cached assessment")
+	void invalidateAssessment_returnsNoContent() throws Exception {
+		mockMvc.perform(post("/assess/invalidate/1"))
+				.andDo(print())
+				.andExpect(status().isNoContent());
+
+		verify(riskAssessmentService).invalidateAssessment(1);
+	}
+
+	@Test
+	@DisplayName("getAssessmentsByPatientIds returns risks and errors")
+	void getAssessmentsByPatientIds_returnsRisksAndErrors() throws Exception {
+		BatchAssessment expected = new BatchAssessment(Map.of(testNone.getId(), Risk.NONE),
+				Map.of(404, "Patient was not found"));
+		when(riskAssessmentService.assessPatientRiskByIds(anyList())).thenReturn(expected);
+
+		mockMvc.perform(post("/assess/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[1, 404]"))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.risks", hasEntry(String.valueOf(testNone.getId()), String.valueOf(Risk.NONE))))
+				.andExpect(jsonPath("$.errors", hasEntry("404", "Patient was not found")));
+	}
+}
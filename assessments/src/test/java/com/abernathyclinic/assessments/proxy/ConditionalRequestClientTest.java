@@ -0,0 +1,107 @@
+package com.abernathyclinic.assessments.proxy;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConditionalRequestClientTest {
+	private static final String BODY = "{\"id\":1,\"family\":\"TestNone\"}";
+
+	private Client delegate;
+	private ConditionalRequestClient client;
+	private final Request.Options options = new Request.Options();
+
+	@BeforeEach
+	void setUp() {
+		delegate = mock(Client.class);
+		client = new ConditionalRequestClient(delegate, 2);
+	}
+
+	@Test
+	@DisplayName("A GET answered with an ETag is sent again with If-None-Match and a 304 is served from the stored body")
+	void execute_withStoredETag_shouldSendConditionalRequest() throws IOException {
+		Request request = get("http://localhost:8081/patient/1");
+		when(delegate.execute(any(Request.class), any(Request.Options.class)))
+				.thenReturn(response(request, 200, "\"1-0\"", BODY))
+				.thenReturn(response(request, 304, "\"1-0\"", null));
+
+		assertEquals(BODY, body(client.execute(request, options)));
+		Response notModified = client.execute(request, options);
+
+		assertEquals(200, notModified.status());
+		assertEquals(BODY, body(notModified));
+		ArgumentCaptor<Request> sent = ArgumentCaptor.forClass(Request.class);
+		verify(delegate, times(2)).execute(sent.capture(), any(Request.Options.class));
+		assertNull(sent.getAllValues().get(0).headers().get("If-None-Match"));
+		assertEquals(List.of("\"1-0\""), sent.getAllValues().get(1).headers().get("If-None-Match"));
+	}
+
+	@Test
+	@DisplayName("A changed resource replaces the stored response")
+	void execute_withChangedResource_shouldStoreNewResponse() throws IOException {
+		Request request = get("http://localhost:8081/patient/1");
+		String updated = "{\"id\":1,\"family\":\"TestUpdated\"}";
+		when(delegate.execute(any(Request.class), any(Request.Options.class)))
+				.thenReturn(response(request, 200, "\"1-0\"", BODY))
+				.thenReturn(response(request, 200, "\"1-1\"", updated))
+				.thenReturn(response(request, 304, "\"1-1\"", null));
+
+		client.execute(request, options);
+		assertEquals(updated, body(client.execute(request, options)));
+		assertEquals(updated, body(client.execute(request, options)));
+	}
+
+	@Test
+	@DisplayName("Responses without ETag and other methods are not stored, the least recently used url is dropped first")
+	void execute_shouldOnlyStoreGetWithETag() throws IOException {
+		when(delegate.execute(any(Request.class), any(Request.Options.class)))
+				.thenAnswer(invocation -> response(invocation.getArgument(0), 200, null, BODY))
+				.thenAnswer(invocation -> response(invocation.getArgument(0), 200, "\"1-0\"", BODY))
+				.thenAnswer(invocation -> response(invocation.getArgument(0), 200, "\"1-0\"", BODY))
+				.thenAnswer(invocation -> response(invocation.getArgument(0), 200, "\"2-0\"", BODY))
+				.thenAnswer(invocation -> response(invocation.getArgument(0), 200, "\"3-0\"", BODY));
+
+		client.execute(get("http://localhost:8081/patient"), options);
+		client.execute(Request.create(Request.HttpMethod.PUT, "http://localhost:8081/patient/1", Map.of(),
+				BODY.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, null), options);
+		assertEquals(0, client.size());
+
+		client.execute(get("http://localhost:8081/patient/1"), options);
+		client.execute(get("http://localhost:8081/patient/2"), options);
+		client.execute(get("http://localhost:8081/patient/3"), options);
+		assertEquals(2, client.size());
+	}
+
+	private static Request get(String url) {
+		return Request.create(Request.HttpMethod.GET, url, Map.of(), null, StandardCharsets.UTF_8, null);
+	}
+
+	private static Response response(Request request, int status, String eTag, String body) {
+		Map<String, Collection<String>> headers = eTag == null ? Map.of() : Map.of("ETag", List.of(eTag));
+		Response.Builder builder = Response.builder().status(status).headers(headers).request(request);
+		return body == null ? builder.build() : builder.body(body, StandardCharsets.UTF_8).build();
+	}
+
+	private static String body(Response response) throws IOException {
+		return Util.toString(response.body().asReader(StandardCharsets.UTF_8));
+	}
+}
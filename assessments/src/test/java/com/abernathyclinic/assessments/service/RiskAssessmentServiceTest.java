@@ -1,12 +1,20 @@
 package com.abernathyclinic.assessments.service;
 
+import com.abernathyclinic.assessments.bean.BatchAssessment;
 import com.abernathyclinic.assessments.bean.NoteBean;
+import com.abernathyclinic.assessments.bean.PatientBatchBean;
 import com.abernathyclinic.assessments.bean.PatientBean;
+import com.abernathyclinic.assessments.bean.PatientSummaryBean;
+import com.abernathyclinic.assessments.bean.RiskAssessment;
 import com.abernathyclinic.assessments.constants.Risk;
 import com.abernathyclinic.assessments.exception.PatientNotFoundException;
 import com.abernathyclinic.assessments.proxy.HistoryProxy;
 import com.abernathyclinic.assessments.proxy.PatientProxy;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import feign.FeignException;
+import feign.Request;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -15,14 +23,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -32,6 +53,8 @@ class RiskAssessmentServiceTest {
 	RiskAssessmentService riskAssessmentService;
 	// set now() to the 1st August 2023
 	public final static LocalDate             LOCAL_DATE_NOW = LocalDate.of(2023, 8, 1);
+	@Autowired
+	private AsyncCache<Integer, RiskAssessment> riskAssessmentCache;
 	@MockBean
 	private             Clock                 clock;
 	@MockBean
@@ -94,6 +117,11 @@ class RiskAssessmentServiceTest {
 
 	}
 
+	@BeforeEach
+	void clearCache() {
+		riskAssessmentCache.synchronous().invalidateAll();
+	}
+
 	@Test
 	void assessPatientRisk_throwsPatientNotFoundException() {
 		when(patientProxy.getPatientById(testNone.getId())).thenReturn(null);
@@ -102,6 +130,89 @@ class RiskAssessmentServiceTest {
 				() -> riskAssessmentService.assessPatientRiskById(testNone.getId()));
 	}
 
+	@Test
+	void assessPatientRisk_mapsFeignNotFound_toPatientNotFoundException() {
+		Request request = Request.create(Request.HttpMethod.GET, "/patient/404", Map.of(), null,
+				StandardCharsets.UTF_8, null);
+		when(patientProxy.getPatientById(404)).thenThrow(
+				new FeignException.NotFound("Patient with the provided ID does not exist.", request, null, null));
+		when(historyProxy.getPatientNoteContents(404)).thenThrow(
+				new FeignException.NotFound("Patient with the provided ID 404 was not found", request, null, null));
+
+		assertThrows(PatientNotFoundException.class, () -> riskAssessmentService.assessPatientRisk(404));
+	}
+
+	@Test
+	void assessPatientRisk_fetchesPatientAndHistoryConcurrently() {
+		// each call waits for the other one to start, which can only happen if both run at the same time
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		when(patientProxy.getPatientById(testBorderline.getId())).thenAnswer(invocation -> {
+			awaitOtherCall(bothStarted);
+			return testBorderline;
+		});
+		when(historyProxy.getPatientNoteContents(testBorderline.getId())).thenAnswer(invocation -> {
+			awaitOtherCall(bothStarted);
+			return contents(testBorderlinesNotes);
+		});
+		when(patientProfileService.getAge(testBorderline.getDob())).thenReturn(78);
+		when(patientProfileService.isOverAgeLimit(78)).thenReturn(true);
+
+		RiskAssessment result = riskAssessmentService.assessPatientRisk(testBorderline.getId());
+
+		assertEquals(Risk.BORDERLINE, result.getRisk());
+		assertTrue(result.getTotalMillis() >= Math.max(result.getPatientMillis(), result.getHistoryMillis()));
+		verify(patientProxy, times(1)).getPatientById(testBorderline.getId());
+	}
+
+	@Test
+	void assessPatientRisk_usesHistorySummary_whenAvailable() {
+		when(patientProxy.getPatientById(testEarlyOnset.getId())).thenReturn(testEarlyOnset);
+		when(historyProxy.getPatientSummary(testEarlyOnset.getId())).thenReturn(new PatientSummaryBean(
+				testEarlyOnset.getId(), Map.of("Fumeuse", 1, "Poids", 2, "Taille", 1, "Anormal", 1, "Rechute", 1,
+				"Vertige", 1, "Anticorps", 1, "Microalbumine", 0, "Unknown trigger", 3), 3, Instant.now()));
+		when(patientProfileService.getAge(testEarlyOnset.getDob())).thenReturn(21);
+		when(patientProfileService.isFemale(testEarlyOnset.getSex())).thenReturn(true);
+		when(patientProfileService.isOverAgeLimit(21)).thenReturn(false);
+
+		assertEquals(Risk.EARLY_ONSET, riskAssessmentService.assessPatientRiskById(testEarlyOnset.getId()));
+		verify(historyProxy, never()).getPatientNoteContents(anyInt());
+	}
+
+	@Test
+	void assessPatientRisk_isCachedUntilInvalidated() {
+		when(patientProxy.getPatientById(testBorderline.getId())).thenReturn(testBorderline);
+		when(historyProxy.getPatientNoteContents(testBorderline.getId())).thenReturn(contents(testBorderlinesNotes));
+		when(patientProfileService.getAge(testBorderline.getDob())).thenReturn(78);
+		when(patientProfileService.isOverAgeLimit(78)).thenReturn(true);
+
+		RiskAssessment first  = riskAssessmentService.assessPatientRisk(testBorderline.getId());
+		RiskAssessment second = riskAssessmentService.assessPatientRisk(testBorderline.getId());
+
+		assertFalse(first.isCached());
+		assertTrue(second.isCached());
+		assertEquals(Risk.BORDERLINE, second.getRisk());
+		verify(historyProxy, times(1)).getPatientNoteContents(testBorderline.getId());
+
+		when(historyProxy.getPatientNoteContents(testBorderline.getId())).thenReturn(contents(testNonesNotes));
+		riskAssessmentService.invalidateAssessment(testBorderline.getId());
+		RiskAssessment afterInvalidation = riskAssessmentService.assessPatientRisk(testBorderline.getId());
+
+		assertFalse(afterInvalidation.isCached());
+		assertEquals(Risk.NONE, afterInvalidation.getRisk());
+		verify(historyProxy, times(2)).getPatientNoteContents(testBorderline.getId());
+	}
+
+	private static List<String> contents(List<NoteBean> notes) {
+		return notes.stream().map(NoteBean::getContent).toList();
+	}
+
+	private static void awaitOtherCall(CountDownLatch bothStarted) throws InterruptedException {
+		bothStarted.countDown();
+		if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Patient and history were not requested concurrently");
+		}
+	}
+
 	@ParameterizedTest
 	@CsvFileSource(resources = "/test-data.csv", numLinesToSkip = 1, delimiter = ';')
 	void assessPatientRiskById_returnsRightRiskFromCSVFile(int id, String family, String given, LocalDate birthday,
@@ -112,7 +223,7 @@ class RiskAssessmentServiceTest {
 		when(patientProfileService.getAge(birthday)).thenReturn(age);
 		List<NoteBean> listOfNotes = new ArrayList<>();
 		listOfNotes.add(new NoteBean(id, notes));
-		when(historyProxy.getPatientHistory(id)).thenReturn(listOfNotes);
+		when(historyProxy.getPatientNoteContents(id)).thenReturn(contents(listOfNotes));
 		when(patientProfileService.isFemale(anyString())).thenReturn(isFemale);
 		when(patientProfileService.isMale(anyString())).thenReturn(isMale);
 		when(patientProfileService.isOverAgeLimit(age)).thenReturn(isOverAgeLimit);
@@ -127,11 +238,11 @@ class RiskAssessmentServiceTest {
 		when(patientProxy.getPatientById(testInDangerFemale.getId())).thenReturn(testInDangerFemale);
 		when(patientProxy.getPatientById(testEarlyOnset.getId())).thenReturn(testEarlyOnset);
 
-		when(historyProxy.getPatientHistory(testNone.getId())).thenReturn(testNonesNotes);
-		when(historyProxy.getPatientHistory(testBorderline.getId())).thenReturn(testBorderlinesNotes);
-		when(historyProxy.getPatientHistory(testInDangerMale.getId())).thenReturn(testInDangersNotes);
-		when(historyProxy.getPatientHistory(testInDangerFemale.getId())).thenReturn(testInDangerFNotes);
-		when(historyProxy.getPatientHistory(testEarlyOnset.getId())).thenReturn(testEarlyOnsetsNotes);
+		when(historyProxy.getPatientNoteContents(testNone.getId())).thenReturn(contents(testNonesNotes));
+		when(historyProxy.getPatientNoteContents(testBorderline.getId())).thenReturn(contents(testBorderlinesNotes));
+		when(historyProxy.getPatientNoteContents(testInDangerMale.getId())).thenReturn(contents(testInDangersNotes));
+		when(historyProxy.getPatientNoteContents(testInDangerFemale.getId())).thenReturn(contents(testInDangerFNotes));
+		when(historyProxy.getPatientNoteContents(testEarlyOnset.getId())).thenReturn(contents(testEarlyOnsetsNotes));
 
 		when(patientProfileService.getAge(testNone.getDob())).thenReturn(57);
 		when(patientProfileService.getAge(testBorderline.getDob())).thenReturn(78);
@@ -163,6 +274,118 @@ class RiskAssessmentServiceTest {
 		assertEquals(Risk.EARLY_ONSET, riskAssessmentService.assessPatientRiskById(testEarlyOnset.getId()));
 	}
 
+	@Test
+	void assessPatientRiskByIds_readsPatientsInOneCall_andReportsFailures() {
+		when(patientProxy.getPatientsByIds(List.of(testBorderline.getId(), testEarlyOnset.getId(), 404)))
+				.thenReturn(new PatientBatchBean(List.of(testBorderline, testEarlyOnset), List.of(404)));
+		givenBorderlineAndEarlyOnset();
+
+		BatchAssessment result = riskAssessmentService.assessPatientRiskByIds(
+				List.of(testBorderline.getId(), testEarlyOnset.getId(), testBorderline.getId(), 404));
+
+		assertEquals(2, result.getRisks().size());
+		assertEquals(Risk.BORDERLINE, result.getRisks().get(testBorderline.getId()));
+		assertEquals(Risk.EARLY_ONSET, result.getRisks().get(testEarlyOnset.getId()));
+		assertTrue(result.getErrors().containsKey(404));
+		verify(patientProxy, times(1)).getPatientsByIds(anyCollection());
+		verify(patientProxy, never()).getPatientById(anyInt());
+	}
+
+	@Test
+	void assessPatientRiskByIds_whenBatchReadFails_readsPatientsOneByOne() {
+		when(patientProxy.getPatientsByIds(anyCollection())).thenThrow(new FeignException.NotFound("Not found",
+				Request.create(Request.HttpMethod.POST, "/patient/batch", Map.of(), null, StandardCharsets.UTF_8, null),
+				null, null));
+		when(patientProxy.getPatientById(testBorderline.getId())).thenReturn(testBorderline);
+		when(patientProxy.getPatientById(testEarlyOnset.getId())).thenReturn(testEarlyOnset);
+		when(patientProxy.getPatientById(404)).thenReturn(null);
+		givenBorderlineAndEarlyOnset();
+
+		BatchAssessment result = riskAssessmentService.assessPatientRiskByIds(
+				List.of(testBorderline.getId(), testEarlyOnset.getId(), testBorderline.getId(), 404));
+
+		assertEquals(Risk.BORDERLINE, result.getRisks().get(testBorderline.getId()));
+		assertEquals(Risk.EARLY_ONSET, result.getRisks().get(testEarlyOnset.getId()));
+		assertTrue(result.getErrors().containsKey(404));
+		verify(patientProxy, times(1)).getPatientById(testBorderline.getId());
+	}
+
+	@Test
+	void assessPatientRiskByIds_whenFailureHasNoMessage_reportsExceptionClass() {
+		when(patientProxy.getPatientsByIds(List.of(testBorderline.getId(), testEarlyOnset.getId())))
+				.thenReturn(new PatientBatchBean(List.of(testBorderline, testEarlyOnset), List.of()));
+		givenBorderlineAndEarlyOnset();
+		when(historyProxy.getPatientNoteContents(testEarlyOnset.getId())).thenThrow(new IllegalStateException());
+
+		BatchAssessment result = riskAssessmentService.assessPatientRiskByIds(
+				List.of(testBorderline.getId(), testEarlyOnset.getId()));
+
+		assertEquals(Risk.BORDERLINE, result.getRisks().get(testBorderline.getId()));
+		assertEquals("IllegalStateException", result.getErrors().get(testEarlyOnset.getId()));
+	}
+
+	@Test
+	void assessPatientRiskByIds_whenInvalidatedAfterPatientRead_doesNotKeepOutdatedRisk() {
+		PatientBean youngerBorderline = new PatientBean(testBorderline.getId(), testBorderline.getFamily(),
+				testBorderline.getGiven(), LocalDate.of(2002, 6, 24), "M", "", "");
+		// the birthday is corrected and the assessment invalidated right after the batch read the patient
+		when(patientProxy.getPatientsByIds(List.of(testBorderline.getId()))).thenAnswer(invocation -> {
+			riskAssessmentService.invalidateAssessment(testBorderline.getId());
+			return new PatientBatchBean(List.of(testBorderline), List.of());
+		});
+		when(patientProxy.getPatientById(testBorderline.getId())).thenReturn(youngerBorderline);
+		givenBorderlineAndEarlyOnset();
+		when(patientProfileService.getAge(youngerBorderline.getDob())).thenReturn(21);
+		when(patientProfileService.isMale("M")).thenReturn(true);
+
+		BatchAssessment result = riskAssessmentService.assessPatientRiskByIds(List.of(testBorderline.getId()));
+		RiskAssessment  next   = riskAssessmentService.assessPatientRisk(testBorderline.getId());
+
+		assertEquals(Risk.BORDERLINE, result.getRisks().get(testBorderline.getId()));
+		assertFalse(next.isCached());
+		assertEquals(Risk.NONE, next.getRisk());
+	}
+
+	private void givenBorderlineAndEarlyOnset() {
+		when(historyProxy.getPatientNoteContents(testBorderline.getId())).thenReturn(contents(testBorderlinesNotes));
+		when(historyProxy.getPatientNoteContents(testEarlyOnset.getId())).thenReturn(contents(testEarlyOnsetsNotes));
+		when(patientProfileService.getAge(testBorderline.getDob())).thenReturn(78);
+		when(patientProfileService.getAge(testEarlyOnset.getDob())).thenReturn(21);
+		when(patientProfileService.isFemale(testBorderline.getSex())).thenReturn(false);
+		when(patientProfileService.isFemale(testEarlyOnset.getSex())).thenReturn(true);
+		when(patientProfileService.isOverAgeLimit(78)).thenReturn(true);
+		when(patientProfileService.isOverAgeLimit(21)).thenReturn(false);
+	}
+
+	@Test
+	void assessPatientRiskByFamilyName_fetchesHistoriesInOneCall() {
+		PatientBean sameFamily = new PatientBean(6, testBorderline.getFamily(), "Other", testEarlyOnset.getDob(),
+				testEarlyOnset.getSex(), "", "");
+		when(patientProxy.getPatientByFamilyName(testBorderline.getFamily()))
+				.thenReturn(List.of(testBorderline, sameFamily));
+		when(historyProxy.getPatientsHistories(Set.of(testBorderline.getId(), sameFamily.getId())))
+				.thenReturn(Map.of(testBorderline.getId(), testBorderlinesNotes));
+		when(patientProfileService.getAge(testBorderline.getDob())).thenReturn(78);
+		when(patientProfileService.getAge(sameFamily.getDob())).thenReturn(21);
+		when(patientProfileService.isOverAgeLimit(78)).thenReturn(true);
+		when(patientProfileService.isOverAgeLimit(21)).thenReturn(false);
+
+		Map<Integer, Risk> result = riskAssessmentService.assessPatientRiskByFamilyName(testBorderline.getFamily());
+
+		assertEquals(Risk.BORDERLINE, result.get(testBorderline.getId()));
+		assertEquals(Risk.NONE, result.get(sameFamily.getId()));
+		verify(historyProxy, times(1)).getPatientsHistories(anyCollection());
+		verify(historyProxy, never()).getPatientNoteContents(anyInt());
+	}
+
+	@Test
+	void assessPatientRiskByFamilyName_throwsPatientNotFoundException() {
+		when(patientProxy.getPatientByFamilyName("Unknown")).thenReturn(List.of());
+
+		assertThrows(PatientNotFoundException.class,
+				() -> riskAssessmentService.assessPatientRiskByFamilyName("Unknown"));
+	}
+
 	@Test
 	void countTriggersTest() {
 		assertEquals(1, riskAssessmentService.countTriggers(testNonesNotes));
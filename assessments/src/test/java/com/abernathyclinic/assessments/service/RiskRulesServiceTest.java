@@ -0,0 +1,71 @@
+package com.abernathyclinic.assessments.service;
+
+import com.abernathyclinic.assessments.bean.RiskAssessment;
+import com.abernathyclinic.assessments.constants.Cohort;
+import com.abernathyclinic.assessments.constants.Risk;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RiskRulesServiceTest {
+	@TempDir
+	Path directory;
+
+	private Path                                rulesFile;
+	private AsyncCache<Integer, RiskAssessment> riskAssessmentCache;
+	private RiskRulesService                    riskRulesService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		rulesFile = directory.resolve("risk-rules.properties");
+		Files.writeString(rulesFile, "version = 1\nmale.in-danger = 3\n");
+		riskAssessmentCache = Caffeine.newBuilder().buildAsync();
+		riskRulesService    = new RiskRulesService("file:" + rulesFile, new DefaultResourceLoader(),
+				riskAssessmentCache);
+	}
+
+	@Test
+	@DisplayName("reloadIfModified swaps rules and drops cached assessments when the file changed")
+	void reloadIfModified_whenFileChanged_swapsRules() throws IOException {
+		riskAssessmentCache.put(1, CompletableFuture.completedFuture(new RiskAssessment()));
+		rewrite("version = 2\nmale.in-danger = 2\n");
+
+		riskRulesService.reloadIfModified();
+
+		assertEquals("2", riskRulesService.getRules().getVersion());
+		assertEquals(Risk.IN_DANGER, riskRulesService.getRules().evaluate(Cohort.MALE, 2));
+		assertNull(riskAssessmentCache.getIfPresent(1));
+	}
+
+	@Test
+	@DisplayName("invalid rules are rejected and current rules stay active")
+	void reload_withInvalidRules_keepsCurrentRules() throws IOException {
+		rewrite("male.in-danger = 2\n");
+
+		assertThrows(IllegalArgumentException.class, () -> riskRulesService.reload());
+		riskRulesService.reloadIfModified();
+
+		assertEquals("1", riskRulesService.getRules().getVersion());
+	}
+
+	private void rewrite(String content) throws IOException {
+		Files.writeString(rulesFile, content);
+		// make sure the change is seen even on file systems with a coarse timestamp resolution
+		Files.setLastModifiedTime(rulesFile, FileTime.from(Instant.now().plusSeconds(10)));
+	}
+}
@@ -0,0 +1,82 @@
+package com.abernathyclinic.assessments.util;
+
+import com.abernathyclinic.assessments.constants.Cohort;
+import com.abernathyclinic.assessments.constants.Risk;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RiskRulesTest {
+	private RiskRules riskRules;
+
+	@BeforeAll
+	void init() throws IOException {
+		Properties properties = new Properties();
+		try (InputStream input = getClass().getResourceAsStream("/risk-rules.properties")) {
+			properties.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+		}
+		riskRules = RiskRules.compile(properties);
+	}
+
+	@ParameterizedTest(name = "{0} with {1} triggers is {2}")
+	@CsvSource({
+			"OVER_AGE_LIMIT, 0, NONE", "OVER_AGE_LIMIT, 1, NONE", "OVER_AGE_LIMIT, 2, BORDERLINE",
+			"OVER_AGE_LIMIT, 5, BORDERLINE", "OVER_AGE_LIMIT, 6, IN_DANGER", "OVER_AGE_LIMIT, 7, IN_DANGER",
+			"OVER_AGE_LIMIT, 8, EARLY_ONSET", "OVER_AGE_LIMIT, 12, EARLY_ONSET",
+			"FEMALE, 0, NONE", "FEMALE, 3, NONE", "FEMALE, 4, IN_DANGER", "FEMALE, 6, IN_DANGER",
+			"FEMALE, 7, EARLY_ONSET", "FEMALE, 12, EARLY_ONSET",
+			"MALE, 0, NONE", "MALE, 2, NONE", "MALE, 3, IN_DANGER", "MALE, 4, IN_DANGER", "MALE, 5, EARLY_ONSET",
+			"MALE, 12, EARLY_ONSET",
+			"OTHER, 0, NONE", "OTHER, 12, NONE"
+	})
+	@DisplayName("default rules follow the documented risk table")
+	void evaluate_followsDocumentedTable(Cohort cohort, long nbTriggers, Risk expected) {
+		assertEquals(expected, riskRules.evaluate(cohort, nbTriggers));
+	}
+
+	@Test
+	@DisplayName("version is read from rules file")
+	void getVersion_returnsVersionOfFile() {
+		assertEquals("1", riskRules.getVersion());
+	}
+
+	@Test
+	@DisplayName("rules without version are rejected")
+	void compile_withoutVersion_throwsException() {
+		Properties properties = new Properties();
+		properties.setProperty("male.in-danger", "3");
+		assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(properties));
+	}
+
+	@Test
+	@DisplayName("rules where a higher risk needs fewer triggers are rejected")
+	void compile_withDecreasingThresholds_throwsException() {
+		Properties properties = new Properties();
+		properties.setProperty("version", "2");
+		properties.setProperty("male.in-danger", "5");
+		properties.setProperty("male.early-onset", "3");
+		assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(properties));
+	}
+
+	@Test
+	@DisplayName("rules with a threshold which is not a number are rejected")
+	void compile_withInvalidThreshold_throwsException() {
+		Properties properties = new Properties();
+		properties.setProperty("version", "2");
+		properties.setProperty("female.in-danger", "four");
+		assertThrows(IllegalArgumentException.class, () -> RiskRules.compile(properties));
+	}
+}
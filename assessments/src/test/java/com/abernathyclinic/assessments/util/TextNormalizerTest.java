@@ -0,0 +1,33 @@
+package com.abernathyclinic.assessments.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextNormalizerTest {
+
+	@Test
+	@DisplayName("fold removes case and diacritics")
+	void fold_removesCaseAndDiacritics() {
+		assertEquals('e', TextNormalizer.fold('É'));
+		assertEquals('c', TextNormalizer.fold('ç'));
+		assertEquals('o', TextNormalizer.fold('Ø'));
+		assertEquals('a', TextNormalizer.fold('a'));
+	}
+
+	@Test
+	@DisplayName("fold maps whitespace to space and skips combining marks")
+	void fold_mapsWhitespace_andSkipsCombiningMarks() {
+		assertEquals(TextNormalizer.SPACE, TextNormalizer.fold('\n'));
+		assertEquals(TextNormalizer.SPACE, TextNormalizer.fold('\u00A0'));
+		assertEquals(TextNormalizer.IGNORED, TextNormalizer.fold('\u0301'));
+	}
+
+	@Test
+	@DisplayName("normalize collapses whitespace and trims text")
+	void normalize_collapsesWhitespace() {
+		assertEquals("hemoglobine a1c", TextNormalizer.normalize("  Hémoglobine\r\n A1C "));
+		assertEquals("l'annee", TextNormalizer.normalize("L’année"));
+	}
+}
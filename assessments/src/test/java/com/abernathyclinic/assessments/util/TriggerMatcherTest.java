@@ -0,0 +1,69 @@
+package com.abernathyclinic.assessments.util;
+
+import com.abernathyclinic.assessments.constants.Triggers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TriggerMatcherTest {
+	private final TriggerMatcher triggerMatcher = new TriggerMatcher(Triggers.list);
+
+	@Test
+	@DisplayName("countDistinct returns 0 when there is no note")
+	void countDistinct_withoutNotes_returnsZero() {
+		assertEquals(0, triggerMatcher.countDistinct(Collections.emptyList()));
+	}
+
+	@Test
+	@DisplayName("countDistinct ignores case")
+	void countDistinct_ignoresCase() {
+		assertEquals(3, triggerMatcher.countDistinct(List.of("TAILLE, poids et Hémoglobine a1c")));
+	}
+
+	@Test
+	@DisplayName("countDistinct ignores accents")
+	void countDistinct_ignoresAccents() {
+		assertEquals(3, triggerMatcher.countDistinct(List.of("Hemoglobine A1C, cholesterol et reaction")));
+		assertEquals(1, triggerMatcher.countDistinct(List.of("Re\u0301action aux me\u0301dicaments")));
+	}
+
+	@Test
+	@DisplayName("countDistinct ignores whitespace variations")
+	void countDistinct_ignoresWhitespaceVariations() {
+		assertEquals(1, triggerMatcher.countDistinct(List.of("Hémoglobine\r\nA1C supérieure au niveau recommandé")));
+		assertEquals(1, triggerMatcher.countDistinct(List.of("Hémoglobine \u00A0 A1C")));
+	}
+
+	@Test
+	@DisplayName("countDistinct counts a trigger only once across notes")
+	void countDistinct_countsTriggerOnce() {
+		assertEquals(2, triggerMatcher.countDistinct(List.of("Fumeur", "fumeur depuis peu", "Fumeuse")));
+	}
+
+	@Test
+	@DisplayName("countDistinct finds overlapping triggers")
+	void countDistinct_findsOverlappingTriggers() {
+		TriggerMatcher overlapping = new TriggerMatcher(List.of("he", "she", "his", "hers"));
+		assertEquals(3, overlapping.countDistinct(List.of("ushers")));
+	}
+
+	@Test
+	@DisplayName("countDistinct does not match a trigger split across two notes")
+	void countDistinct_doesNotMatchAcrossNotes() {
+		assertEquals(0, triggerMatcher.countDistinct(List.of("Le patient est fum", "eur")));
+	}
+
+	@Test
+	@DisplayName("findDistinct lists triggers of a note in the order of the trigger list")
+	void findDistinct_listsTriggersOfNote() {
+		assertEquals(Set.of("Taille", "Poids", "Fumeuse"),
+				triggerMatcher.findDistinct("Fumeuse, POIDS et taille, poids stable"));
+		assertTrue(triggerMatcher.findDistinct(null).isEmpty());
+	}
+}
@@ -18,12 +18,15 @@ public class NoteBean {
 	Integer patId;
 	@NotBlank(message = "Notes/recommendations can not be blank")
 	String content;
+	// sent back on update and delete so that the history microservice refuses to write a note changed in the meantime
+	Long version;
 
 	@Override
 	public String toString() {
 		return "{\n" +
 				"id = " + id + ",\n "+
 				"patId = \"" + patId + "\",\n "+
-				"content =\"" + content + "\",\n "+"}";
+				"content =\"" + content + "\",\n "+
+				"version = " + version + ",\n "+"}";
 	}
 }
@@ -0,0 +1,21 @@
+package com.abernathyclinic.clientui.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Page of the patient list. nextCursor is null on the last page.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class PatientPageBean {
+	private List<PatientBean> patients;
+	private String            nextCursor;
+	private long              estimatedTotal;
+}
@@ -0,0 +1,16 @@
+package com.abernathyclinic.clientui.configuration;
+
+import com.abernathyclinic.clientui.proxy.ConditionalRequestClient;
+import feign.Client;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FeignConfiguration {
+	@Bean
+	public Client feignClient(@Value("${clientui.feign.conditional-cache.maximum-entries:1000}") int maximumEntries) {
+		// pages read the same patient and history again on each visit, unchanged ones come back as an empty 304
+		return new ConditionalRequestClient(new Client.Default(null, null), maximumEntries);
+	}
+}
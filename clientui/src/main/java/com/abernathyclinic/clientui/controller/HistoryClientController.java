@@ -6,6 +6,7 @@ import com.abernathyclinic.clientui.exception.PatientNotFoundException;
 import com.abernathyclinic.clientui.proxy.AssessmentProxy;
 import com.abernathyclinic.clientui.proxy.HistoryProxy;
 import com.abernathyclinic.clientui.proxy.PatientProxy;
+import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -14,6 +15,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
@@ -21,6 +23,9 @@ import javax.validation.Valid;
 @Controller
 @Slf4j
 public class HistoryClientController {
+	private static final String CHANGED_MEANWHILE =
+			"The note was changed by someone else since it was displayed, nothing was written. Please check it again.";
+
 	@Autowired
 	private PatientProxy    patientProxy;
 	@Autowired
@@ -105,6 +110,8 @@ public class HistoryClientController {
 		try {
 			historyProxy.updateNote(noteId, note);
 			redirectAttributes.addFlashAttribute("success", "Note '"+ note.getContent()+ "' was successfully updated.");
+		} catch (FeignException.Conflict conflict) {
+			redirectAttributes.addFlashAttribute("error", CHANGED_MEANWHILE);
 		} catch (Exception exception) {
 			redirectAttributes.addFlashAttribute("error",
 					"Error while trying to update note :\n" + exception.getMessage());
@@ -155,7 +162,6 @@ public class HistoryClientController {
 				historyProxy.createNote(note);
 				redirectAttributes.addFlashAttribute("success",
 						"Note '" + note.getContent() + "' was successfully created.");
-				model.addAttribute("notes", patientProxy.getPatients());
 			} catch (Exception exception) {
 				redirectAttributes.addFlashAttribute("error",
 						"Error while trying to add note " + note.getContent() + ":\n" + exception.getMessage());
@@ -173,13 +179,15 @@ public class HistoryClientController {
 	 * Deletes a note.
 	 *
 	 * @param patientId          ID of note to be deleted
+	 * @param version            version of the note displayed to the user
 	 * @param model              holder for context data to be passed from controller to the view, contains list of notes
 	 * @param redirectAttributes redirection attributes, contains success or failure popup
 	 * @return list of notes page
 	 */
 	@GetMapping("/patient/{patientId}/patHistory/delete/{noteId}")
 	public String deleteNoteForPatient(@PathVariable("patientId") Integer patientId, @PathVariable("noteId") String noteId,
-			Model model, RedirectAttributes redirectAttributes) {
+			@RequestParam(value = "version", required = false) Long version, Model model,
+			RedirectAttributes redirectAttributes) {
 		PatientBean patient = getPatientIfExists(patientId, redirectAttributes);
 		if (patient == null) {
 			return "patient/list";
@@ -188,8 +196,14 @@ public class HistoryClientController {
 		NoteBean note = historyProxy.getNoteById(noteId);
 		// and delete the note
 		if (note != null) {
-			historyProxy.deleteNote(noteId);
-			redirectAttributes.addFlashAttribute("success", "Note '" + note.getContent() + "' was successfully deleted.");
+			try {
+				// the version displayed in the list, not the one just read, so that a note edited meanwhile is kept
+				historyProxy.deleteNote(noteId, version);
+				redirectAttributes.addFlashAttribute("success",
+						"Note '" + note.getContent() + "' was successfully deleted.");
+			} catch (FeignException.Conflict conflict) {
+				redirectAttributes.addFlashAttribute("error", CHANGED_MEANWHILE);
+			}
 			model.addAttribute("patient", patient);
 		} else {
 			redirectAttributes.addFlashAttribute("error", "Note with ID " + noteId + " does not exist.");
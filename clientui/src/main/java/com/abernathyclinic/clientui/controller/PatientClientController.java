@@ -1,27 +1,36 @@
 package com.abernathyclinic.clientui.controller;
 
 import com.abernathyclinic.clientui.bean.PatientBean;
+import com.abernathyclinic.clientui.bean.PatientPageBean;
 import com.abernathyclinic.clientui.exception.AlreadyExistsException;
 import com.abernathyclinic.clientui.exception.PatientNotFoundException;
 import com.abernathyclinic.clientui.proxy.HistoryProxy;
 import com.abernathyclinic.clientui.proxy.PatientProxy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.Map;
 
 @Controller
+@Slf4j
 public class PatientClientController {
 	@Autowired
 	private final PatientProxy patientProxy;
 	@Autowired
 	private final HistoryProxy historyProxy;
+	@Value("${clientui.patients.page-size:20}")
+	private int pageSize;
 
 	public PatientClientController(PatientProxy patientProxy, HistoryProxy historyProxy) {
 		this.patientProxy = patientProxy;
@@ -29,14 +38,28 @@ public class PatientClientController {
 	}
 
 	/**
-	 * Home page for patients. It shows the list of patients from database.
+	 * Home page for patients. It shows one page of the list of patients, so that it loads as fast with a million
+	 * patients as with ten.
 	 *
-	 * @param model holder for context data to be passed from controller to the view, contains list of patients
+	 * @param sort      family, given, dob or id
+	 * @param direction asc or desc
+	 * @param cursor    cursor of the page to show, none for the first page
+	 * @param model     holder for context data to be passed from controller to the view, contains the page of patients,
+	 *                  their number of notes and the cursor of the next page
 	 * @return patients list page
 	 */
 	@GetMapping({ "/", "/patient/list" })
-	public String home(Model model) {
-		model.addAttribute("patients", patientProxy.getPatients());
+	public String home(@RequestParam(defaultValue = "family") String sort,
+			@RequestParam(defaultValue = "asc") String direction, @RequestParam(required = false) String cursor,
+			Model model) {
+		PatientPageBean page = patientProxy.getPatients(sort, direction, cursor, pageSize);
+		model.addAttribute("patients", page.getPatients());
+		model.addAttribute("noteCounts", getNoteCounts(page.getPatients()));
+		model.addAttribute("nextCursor", page.getNextCursor());
+		model.addAttribute("estimatedTotal", page.getEstimatedTotal());
+		model.addAttribute("sort", sort);
+		model.addAttribute("direction", direction);
+		model.addAttribute("firstPage", cursor == null);
 		model.addAttribute("currentPage", "profile");
 		model.addAttribute("disableHistoryTab", true);
 		return "patient/list";
@@ -69,7 +92,7 @@ public class PatientClientController {
 	 * @param id                 ID of patient to be updated
 	 * @param patient            updated patient
 	 * @param result             result of validation form
-	 * @param model              holder for context data to be passed from controller to the view, contains patient to update and list of patients
+	 * @param model              holder for context data to be passed from controller to the view, contains patient to update
 	 * @param redirectAttributes redirection attributes, contains success popup
 	 * @return list of patients if update is successful, update patient page otherwise
 	 */
@@ -94,7 +117,6 @@ public class PatientClientController {
 			redirectAttributes.addFlashAttribute("error",
 					"Error while trying to update patient " + patient.getFamily() + " " + patient.getGiven() + ":\n" + notFoundException.getMessage());
 		}
-		model.addAttribute("patients", patientProxy.getPatients());
 		model.addAttribute("patHistory", historyProxy.getPatientHistory(id));
         return "redirect:/patient/list";
 	}
@@ -117,7 +139,7 @@ public class PatientClientController {
 	 *
 	 * @param patient            patient to be added
 	 * @param result             result of form validation
-	 * @param model              holder for context data to be passed from controller to the view, contains list of patients
+	 * @param model              holder for context data to be passed from controller to the view
 	 * @param redirectAttributes redirection attributes, contains success popup
 	 * @return add patient page if an error occurred, list of patients otherwise
 	 */
@@ -130,7 +152,6 @@ public class PatientClientController {
 				patientProxy.createPatient(patient);
 				redirectAttributes.addFlashAttribute("success",
 						"Patient " + patient.getFamily() + " " + patient.getGiven() + " was successfully created.");
-				model.addAttribute("patients", patientProxy.getPatients());
 			} catch (AlreadyExistsException alreadyExistsException) {
 				redirectAttributes.addFlashAttribute("error",
 						"Error while trying to add patient " + patient.getFamily() + " " + patient.getGiven() + ":\n" + alreadyExistsException.getMessage());
@@ -146,7 +167,7 @@ public class PatientClientController {
 	 * Deletes a patient.
 	 *
 	 * @param id                 ID of patient to be deleted
-	 * @param model              holder for context data to be passed from controller to the view, contains list of patients
+	 * @param model              holder for context data to be passed from controller to the view
 	 * @param redirectAttributes redirection attributes, contains success or failure popup
 	 * @return list of patients page
 	 */
@@ -163,10 +184,27 @@ public class PatientClientController {
 			redirectAttributes.addFlashAttribute("error", "Patient with ID " + id + " does not exist.");
 		}
 		// return to PatientBean list
-		model.addAttribute("patients", patientProxy.getPatients());
 		model.addAttribute("currentPage", "profile");
 		model.addAttribute("disableHistoryTab", false);
         return "redirect:/patient/list";
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Counts the notes of every listed patient with a single call to the history microservice.
+	 *
+	 * @param patients listed patients
+	 * @return number of notes by patient ID, empty if the history microservice can not be reached
+	 */
+	private Map<Integer, Long> getNoteCounts(List<PatientBean> patients) {
+		if (patients.isEmpty()) {
+			return Map.of();
+		}
+		// badges are a hint, the list is still shown without them
+		try {
+			return historyProxy.countPatientsNotes(patients.stream().map(PatientBean::getId).toList());
+		} catch (RuntimeException exception) {
+			log.warn("Could not count notes of patients: " + exception.getMessage());
+			return Map.of();
+		}
+	}
+}
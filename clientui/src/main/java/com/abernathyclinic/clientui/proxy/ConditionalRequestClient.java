@@ -0,0 +1,100 @@
+package com.abernathyclinic.clientui.proxy;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import lombok.AllArgsConstructor;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Feign client keeping the last response of each GET url along with its ETag.
+ * The next GET on the same url is sent with If-None-Match, and a 304 answer is replaced by the stored response,
+ * so that an unchanged resource is neither sent again nor read again by the microservice that owns it.
+ */
+public class ConditionalRequestClient implements Client {
+	private final Client delegate;
+	private final Map<String, CachedResponse> cache;
+
+	public ConditionalRequestClient(Client delegate, int maximumEntries) {
+		this.delegate = delegate;
+		// least recently used responses are dropped first
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				return size() > maximumEntries;
+			}
+		};
+	}
+
+	@Override
+	public Response execute(Request request, Request.Options options) throws IOException {
+		if (request.httpMethod() != Request.HttpMethod.GET) {
+			return delegate.execute(request, options);
+		}
+		CachedResponse cached = get(request.url());
+		Response response = delegate.execute(cached == null ? request : conditional(request, cached.eTag), options);
+		if (cached != null && response.status() == 304) {
+			response.close();
+			return Response.builder()
+					.status(200)
+					.reason("OK")
+					.headers(cached.headers)
+					.body(cached.body)
+					.request(request)
+					.build();
+		}
+		String eTag = firstHeader(response, "ETag");
+		if (response.status() != 200 || eTag == null || response.body() == null) {
+			return response;
+		}
+		byte[] body = Util.toByteArray(response.body().asInputStream());
+		response.close();
+		put(request.url(), new CachedResponse(eTag, response.headers(), body));
+		return response.toBuilder().body(body).build();
+	}
+
+	int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	private CachedResponse get(String url) {
+		synchronized (cache) {
+			return cache.get(url);
+		}
+	}
+
+	private void put(String url, CachedResponse response) {
+		synchronized (cache) {
+			cache.put(url, response);
+		}
+	}
+
+	private static Request conditional(Request request, String eTag) {
+		Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.putAll(request.headers());
+		headers.put("If-None-Match", List.of(eTag));
+		return Request.create(request.httpMethod(), request.url(), headers, request.body(), request.charset(),
+				request.requestTemplate());
+	}
+
+	private static String firstHeader(Response response, String name) {
+		Collection<String> values = response.headers().get(name);
+		return values == null || values.isEmpty() ? null : values.iterator().next();
+	}
+
+	@AllArgsConstructor
+	private static class CachedResponse {
+		private final String eTag;
+		private final Map<String, Collection<String>> headers;
+		private final byte[] body;
+	}
+}
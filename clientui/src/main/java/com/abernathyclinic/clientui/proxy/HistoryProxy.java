@@ -8,17 +8,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.validation.Valid;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "history", url = "${history.url}")
 public interface HistoryProxy {
     @PostMapping("/patHistory")
     NoteBean createNote(@Valid @RequestBody NoteBean patient);
 
+    // one page of notes ordered by id, the next page starts after the id of the last note
     @GetMapping("/patHistory")
-    List<NoteBean> getNotes();
+    List<NoteBean> getNotes(@RequestParam(value = "after", required = false) String after,
+                            @RequestParam(value = "size", required = false) Integer size);
 
     @GetMapping("/patHistory/{id}")
     NoteBean getNoteById(@PathVariable("id") String id);
@@ -26,9 +31,14 @@ public interface HistoryProxy {
     @GetMapping("/patHistory/patient/{patientId}")
     List<NoteBean> getPatientHistory(@PathVariable("patientId") Integer patientId);
 
+    // number of notes of each patient, for the patient list badges
+    @PostMapping("/patHistory/patient/counts")
+    Map<Integer, Long> countPatientsNotes(@RequestBody Collection<Integer> patientIds);
+
     @PutMapping("/patHistory/{id}")
     NoteBean updateNote(@PathVariable("id") String id, @Valid @RequestBody NoteBean patient);
 
+    // only deleted if the note is still at the version displayed, 409 otherwise
     @DeleteMapping("/patHistory/{id}")
-    void deleteNote(@PathVariable("id") String id);
+    void deleteNote(@PathVariable("id") String id, @RequestParam(value = "version", required = false) Long version);
 }
@@ -1,6 +1,7 @@
 package com.abernathyclinic.clientui.proxy;
 
 import com.abernathyclinic.clientui.bean.PatientBean;
+import com.abernathyclinic.clientui.bean.PatientPageBean;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,9 +9,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.validation.Valid;
-import java.util.List;
 
 @FeignClient(name = "patients", url = "${patients.url}")
 public interface PatientProxy {
@@ -18,7 +19,8 @@ public interface PatientProxy {
 	PatientBean createPatient(@Valid @RequestBody PatientBean patient);
 
 	@GetMapping("/patient")
-	List<PatientBean> getPatients();
+	PatientPageBean getPatients(@RequestParam("sort") String sort, @RequestParam("direction") String direction,
+			@RequestParam(value = "cursor", required = false) String cursor, @RequestParam("size") int size);
 
 	@GetMapping("/patient/{id}")
 	PatientBean getPatientById(@PathVariable("id") Integer id);
@@ -0,0 +1,94 @@
+package com.abernathyclinic.clientui.controller;
+
+import com.abernathyclinic.clientui.bean.NoteBean;
+import com.abernathyclinic.clientui.bean.PatientBean;
+import com.abernathyclinic.clientui.proxy.AssessmentProxy;
+import com.abernathyclinic.clientui.proxy.HistoryProxy;
+import com.abernathyclinic.clientui.proxy.PatientProxy;
+import feign.FeignException;
+import feign.Request;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+@WebMvcTest(controllers = HistoryClientController.class)
+class HistoryClientControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PatientProxy patientProxy;
+    @MockBean
+    private HistoryProxy historyProxy;
+    @MockBean
+    private AssessmentProxy assessmentProxy;
+
+    private NoteBean note;
+
+    @BeforeEach
+    void setUp() {
+        PatientBean testNone = new PatientBean(1, "TestNone", "Test", LocalDate.of(1966, 12, 31), "F", "1 Brookside St", "100-222-3333");
+        note = new NoteBean("NOTE001", 1, "Poids égal ou inférieur au poids recommandé", 3L);
+        when(patientProxy.getPatientById(1)).thenReturn(testNone);
+        when(historyProxy.getNoteById("NOTE001")).thenReturn(note);
+        when(historyProxy.getPatientHistory(1)).thenReturn(List.of(note));
+    }
+
+    @Test
+    @DisplayName("Deleting a note sends the version displayed in the list")
+    void deleteNote_shouldSendDisplayedVersion() throws Exception {
+        mockMvc.perform(get("/patient/1/patHistory/delete/NOTE001").param("version", "3"))
+                .andExpect(redirectedUrl("/patient/1/patHistory"))
+                .andExpect(flash().attribute("success", startsWith("Note 'Poids")));
+
+        verify(historyProxy).deleteNote("NOTE001", 3L);
+    }
+
+    @Test
+    @DisplayName("Deleting a note changed since it was displayed keeps it and tells the user")
+    void deleteNote_whenChangedMeanwhile_shouldShowConflict() throws Exception {
+        doThrow(conflict()).when(historyProxy).deleteNote("NOTE001", 2L);
+
+        mockMvc.perform(get("/patient/1/patHistory/delete/NOTE001").param("version", "2"))
+                .andExpect(redirectedUrl("/patient/1/patHistory"))
+                .andExpect(flash().attribute("error", startsWith("The note was changed by someone else")));
+    }
+
+    @Test
+    @DisplayName("Updating a note changed since it was displayed tells the user")
+    void updateNote_whenChangedMeanwhile_shouldShowConflict() throws Exception {
+        when(historyProxy.updateNote(eq("NOTE001"), any(NoteBean.class))).thenThrow(conflict());
+
+        mockMvc.perform(post("/patient/1/patHistory/update/NOTE001")
+                        .param("patId", "1")
+                        .param("content", "Poids supérieur au poids recommandé")
+                        .param("version", "2"))
+                .andExpect(redirectedUrl("/patient/1/patHistory"))
+                .andExpect(flash().attribute("error", startsWith("The note was changed by someone else")));
+    }
+
+    private static FeignException conflict() {
+        return new FeignException.Conflict("Conflict", Request.create(Request.HttpMethod.DELETE,
+                "/patHistory/NOTE001", Map.of(), null, StandardCharsets.UTF_8, null), null, null);
+    }
+}
@@ -1,6 +1,7 @@
 package com.abernathyclinic.clientui.controller;
 
 import com.abernathyclinic.clientui.bean.PatientBean;
+import com.abernathyclinic.clientui.bean.PatientPageBean;
 import com.abernathyclinic.clientui.exception.AlreadyExistsException;
 import com.abernathyclinic.clientui.exception.PatientNotFoundException;
 import com.abernathyclinic.clientui.proxy.HistoryProxy;
@@ -17,8 +18,13 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -51,7 +57,7 @@ class PatientClientControllerTest {
     @Test
     @DisplayName("Return list of patients")
     public void homeTest() throws Exception {
-        when(patientProxy.getPatients()).thenReturn(patients);
+        when(patientProxy.getPatients("family", "asc", null, 20)).thenReturn(new PatientPageBean(patients, null, 2));
 
         mockMvc.perform(get("/patient/list"))
                 .andDo(print())
@@ -59,6 +65,43 @@ class PatientClientControllerTest {
                 .andExpect(model().attributeExists("patients"));
     }
 
+    @Test
+    @DisplayName("Return list of patients with their number of notes")
+    public void homeTest_shouldShowNoteCounts() throws Exception {
+        when(patientProxy.getPatients("family", "asc", null, 20)).thenReturn(new PatientPageBean(patients, null, 2));
+        when(historyProxy.countPatientsNotes(List.of(1, 2))).thenReturn(Map.of(1, 3L, 2, 0L));
+
+        mockMvc.perform(get("/patient/list"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(model().attribute("noteCounts", Map.of(1, 3L, 2, 0L)));
+    }
+
+    @Test
+    @DisplayName("Return list of patients without note counts when history can not be reached")
+    public void homeTest_whenHistoryUnreachable_shouldShowPatients() throws Exception {
+        when(patientProxy.getPatients("family", "asc", null, 20)).thenReturn(new PatientPageBean(patients, null, 2));
+        when(historyProxy.countPatientsNotes(anyList())).thenThrow(new RuntimeException("Connection refused"));
+
+        mockMvc.perform(get("/patient/list"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(model().attribute("patients", patients))
+                .andExpect(model().attribute("noteCounts", Map.of()));
+    }
+
+    @Test
+    @DisplayName("Return the requested page of patients with the cursor of the next one")
+    public void homeTest_withCursor_shouldShowRequestedPage() throws Exception {
+        when(patientProxy.getPatients("dob", "desc", "cursor", 20))
+                .thenReturn(new PatientPageBean(patients, "next", 40));
+
+        mockMvc.perform(get("/patient/list?sort=dob&direction=desc&cursor=cursor"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(model().attribute("patients", patients))
+                .andExpect(model().attribute("nextCursor", "next"))
+                .andExpect(model().attribute("estimatedTotal", 40L))
+                .andExpect(model().attribute("firstPage", false));
+    }
+
     @Test
     @DisplayName("Show add patient form")
     public void addPatientFormTest() throws Exception {
@@ -104,7 +147,6 @@ class PatientClientControllerTest {
     @DisplayName("Show update form successful")
     public void showUpdateFormIsSuccessful() throws Exception {
         when(patientProxy.getPatientById(1)).thenReturn(testNone);
-        when(patientProxy.getPatients()).thenReturn(patients);
 
         mockMvc.perform(get("/patient/update/{id}", "1"))
                 .andDo(print())
@@ -117,7 +159,6 @@ class PatientClientControllerTest {
     @DisplayName("Show update form failed")
     public void showUpdateFormFails() throws Exception {
         when(patientProxy.getPatientById(3)).thenReturn(null);
-        when(patientProxy.getPatients()).thenReturn(patients);
 
         mockMvc.perform(get("/patient/update/{id}", "3"))
                 .andDo(print())
@@ -162,20 +203,20 @@ class PatientClientControllerTest {
     @DisplayName("Delete patient successful")
     public void deletePatientIsSuccessful() throws Exception {
         when(patientProxy.getPatientById(any(Integer.class))).thenReturn(testNone);
-        when(patientProxy.getPatients()).thenReturn(patients);
 
         mockMvc.perform(get("/patient/delete/{id}", "1"))
                 .andDo(print())
                 .andExpect(status().is3xxRedirection())
                 .andExpect(flash().attributeExists("success"))
                 .andExpect(view().name("redirect:/patient/list"));
+        // the list page reads its own page after the redirection
+        verify(patientProxy, never()).getPatients(any(), any(), any(), anyInt());
     }
 
     @Test
     @DisplayName("Delete patient failed")
     public void deletePatientFailed() throws Exception {
         when(patientProxy.getPatientById(any(Integer.class))).thenReturn(null);
-        when(patientProxy.getPatients()).thenReturn(patients);
 
         mockMvc.perform(get("/patient/delete/{id}", "1"))
                 .andDo(print())
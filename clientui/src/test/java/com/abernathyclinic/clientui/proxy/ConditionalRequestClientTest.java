@@ -0,0 +1,82 @@
+package com.abernathyclinic.clientui.proxy;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConditionalRequestClientTest {
+    private static final String HISTORY_URL = "http://localhost:8082/patHistory/patient/1";
+    private static final String HISTORY = "[{\"id\":\"a1\",\"patId\":1,\"e\":\"Note\"}]";
+
+    private Client delegate;
+    private ConditionalRequestClient client;
+    private final Request.Options options = new Request.Options();
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(Client.class);
+        client = new ConditionalRequestClient(delegate, 1);
+    }
+
+    @Test
+    @DisplayName("Displaying a history again asks for it with its ETag and shows the stored history on 304")
+    void execute_sameHistoryTwice_shouldUseStoredHistory() throws IOException {
+        Request request = request(Request.HttpMethod.GET, HISTORY_URL);
+        when(delegate.execute(any(Request.class), any(Request.Options.class)))
+                .thenReturn(response(request, 200, "\"1-3\"", HISTORY))
+                .thenReturn(response(request, 304, "\"1-3\"", null));
+
+        client.execute(request, options);
+        Response second = client.execute(request, options);
+
+        assertEquals(200, second.status());
+        assertEquals(HISTORY, Util.toString(second.body().asReader(StandardCharsets.UTF_8)));
+        ArgumentCaptor<Request> sent = ArgumentCaptor.forClass(Request.class);
+        verify(delegate, times(2)).execute(sent.capture(), any(Request.Options.class));
+        assertNull(sent.getAllValues().get(0).headers().get("If-None-Match"));
+        assertEquals(List.of("\"1-3\""), sent.getAllValues().get(1).headers().get("If-None-Match"));
+    }
+
+    @Test
+    @DisplayName("Adding a note is sent as is and keeps no response, only the last history displayed is kept")
+    void execute_shouldOnlyKeepGetResponses() throws IOException {
+        when(delegate.execute(any(Request.class), any(Request.Options.class)))
+                .thenAnswer(invocation -> response(invocation.getArgument(0), 201, "\"1-4\"", HISTORY))
+                .thenAnswer(invocation -> response(invocation.getArgument(0), 200, "\"1-4\"", HISTORY))
+                .thenAnswer(invocation -> response(invocation.getArgument(0), 200, "\"2-0\"", "[]"));
+
+        client.execute(request(Request.HttpMethod.POST, "http://localhost:8082/patHistory"), options);
+        assertEquals(0, client.size());
+
+        client.execute(request(Request.HttpMethod.GET, HISTORY_URL), options);
+        client.execute(request(Request.HttpMethod.GET, "http://localhost:8082/patHistory/patient/2"), options);
+        assertEquals(1, client.size());
+    }
+
+    private static Request request(Request.HttpMethod method, String url) {
+        return Request.create(method, url, Map.of(), null, StandardCharsets.UTF_8, null);
+    }
+
+    private static Response response(Request request, int status, String eTag, String body) {
+        Response.Builder builder = Response.builder().status(status).headers(Map.of("ETag", List.of(eTag))).request(request);
+        return body == null ? builder.build() : builder.body(body, StandardCharsets.UTF_8).build();
+    }
+}
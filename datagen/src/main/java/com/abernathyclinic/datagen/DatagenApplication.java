@@ -0,0 +1,13 @@
+package com.abernathyclinic.datagen;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class DatagenApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(DatagenApplication.class, args);
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.abernathyclinic.datagen;
+
+import com.abernathyclinic.datagen.bean.NoteBean;
+import com.abernathyclinic.datagen.bean.PatientBean;
+import com.abernathyclinic.datagen.generator.NoteGenerator;
+import com.abernathyclinic.datagen.generator.PatientGenerator;
+import com.abernathyclinic.datagen.loader.NoteLoader;
+import com.abernathyclinic.datagen.loader.PatientLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the dataset and loads it by batches, so that millions of patients and tens of millions of notes never
+ * have to be held in memory at once.
+ */
+@Component
+@Slf4j
+public class DatasetGenerator implements ApplicationRunner {
+	@Autowired
+	private PatientLoader patientLoader;
+	@Autowired
+	private NoteLoader noteLoader;
+
+	@Value("${datagen.seed:42}")
+	private long seed;
+	@Value("${datagen.batch-size:5000}")
+	private int batchSize;
+	@Value("${datagen.patients.count:10000}")
+	private int patientCount;
+	@Value("${datagen.patients.first-id:0}")
+	private int firstPatientId;
+	@Value("${datagen.patients.load:true}")
+	private boolean loadPatients;
+	@Value("${datagen.notes.mean-per-patient:10}")
+	private double meanNotesPerPatient;
+	@Value("${datagen.notes.trigger-density:0.05}")
+	private double triggerDensity;
+	@Value("${datagen.notes.load:true}")
+	private boolean loadNotes;
+	@Value("${datagen.mongo.embedded:false}")
+	private boolean embeddedMongo;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		// notes need the IDs of their patients, which follow the stored ones unless patients are not written
+		int firstId = firstPatientId > 0 ? firstPatientId : loadPatients ? patientLoader.nextId() : 1;
+		Instant now = Instant.now();
+		LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+		// a run adding patients after those of a former one with the same seed draws other birthdays for their homonyms
+		long runSeed = seed * 31 + firstId;
+		PatientGenerator patientGenerator = new PatientGenerator(runSeed);
+		NoteGenerator noteGenerator = new NoteGenerator(runSeed, meanNotesPerPatient, triggerDensity);
+		log.info("Generating " + patientCount + " patients from ID " + firstId + ", " + meanNotesPerPatient
+				+ " notes per patient on average");
+
+		long start = System.nanoTime();
+		long noteCount = 0;
+		List<PatientBean> patients = new ArrayList<>(batchSize);
+		List<NoteBean> notes = new ArrayList<>(batchSize);
+		for (int i = 0; i < patientCount; i++) {
+			PatientBean patient = patientGenerator.generatePatient(firstId + i, today);
+			patients.add(patient);
+			// generated even when not written, so that every seeded run draws the same values
+			List<NoteBean> history = noteGenerator.generateHistory(patient, now);
+			if (patients.size() == batchSize || i == patientCount - 1) {
+				if (loadPatients) {
+					patientLoader.insert(patients);
+				}
+				patients.clear();
+			}
+			notes.addAll(history);
+			noteCount += history.size();
+			if (notes.size() >= batchSize || i == patientCount - 1) {
+				if (loadNotes && !notes.isEmpty()) {
+					noteLoader.insert(notes);
+				}
+				notes.clear();
+			}
+			if ((i + 1) % (100 * batchSize) == 0) {
+				log.info((i + 1) + " patients and " + noteCount + " notes generated");
+			}
+		}
+		double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+		log.info(String.format("Generated %d patients and %d notes in %.1f s (%.0f notes/s)", patientCount, noteCount,
+				seconds, noteCount / seconds));
+		if (embeddedMongo) {
+			awaitShutdown();
+		}
+	}
+
+	private static void awaitShutdown() {
+		// the embedded MongoDB, and the notes with it, are gone once the generator stops
+		log.info("Embedded MongoDB keeps serving the dataset until the generator is stopped");
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException stopped) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.abernathyclinic.datagen.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Document of the notes collection, as written by the history microservice.
+ */
+@Getter
+@AllArgsConstructor
+public class NoteBean {
+	private Integer patId;
+	private String content;
+	private Instant createdAt;
+}
@@ -0,0 +1,21 @@
+package com.abernathyclinic.datagen.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Row of the patients table, within the constraints of the Patient entity of the patients microservice.
+ */
+@Getter
+@AllArgsConstructor
+public class PatientBean {
+	private Integer id;
+	private String family;
+	private String given;
+	private LocalDate dob;
+	private String sex;
+	private String address;
+	private String phone;
+}
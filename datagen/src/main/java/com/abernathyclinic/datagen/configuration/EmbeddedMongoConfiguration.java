@@ -0,0 +1,25 @@
+package com.abernathyclinic.datagen.configuration;
+
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "datagen.mongo.embedded", havingValue = "true")
+public class EmbeddedMongoConfiguration {
+	@Bean(destroyMethod = "close")
+	public TransitionWalker.ReachedState<RunningMongodProcess> embeddedMongod(
+			@Value("${spring.data.mongodb.port:27017}") int port) {
+		// listens where the Mongo client connects, the binaries are downloaded on first start
+		return Mongod.instance()
+				.withNet(Start.to(Net.class).initializedWith(Net.of("localhost", port, false)))
+				.start(Version.Main.V6_0);
+	}
+}
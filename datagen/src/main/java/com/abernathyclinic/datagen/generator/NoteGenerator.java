@@ -0,0 +1,159 @@
+package com.abernathyclinic.datagen.generator;
+
+import com.abernathyclinic.datagen.bean.NoteBean;
+import com.abernathyclinic.datagen.bean.PatientBean;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.util.Map.entry;
+
+/**
+ * Generates practitioner's notes looking like the seed ones: a few French sentences, some of them mentioning a
+ * trigger, sometimes in lower case or typed without accents, separated by spaces or line breaks.
+ * The number of notes per patient and the trigger density of each patient are drawn from exponential distributions,
+ * so that most patients have few notes and no risk while some have long histories with many triggers.
+ * Generation is seeded, so that two runs with the same seed generate the same notes.
+ */
+public class NoteGenerator {
+	private static final String[] SENTENCES = {
+			"Le patient déclare qu'il se sent très bien",
+			"Le patient déclare qu'il ressent beaucoup de stress au travail",
+			"Le patient déclare qu'il dort mal depuis quelques semaines",
+			"Le patient déclare qu'il a repris une activité physique régulière",
+			"Il se plaint de douleurs légères au dos",
+			"Il se plaint d'une fatigue passagère",
+			"Tension artérielle normale",
+			"Aucun symptôme signalé depuis la dernière visite",
+			"Résultats du dernier bilan sanguin stables",
+			"Alimentation équilibrée, à poursuivre",
+			"Prescription renouvelée pour trois mois",
+			"Suivi recommandé dans six mois",
+			"Vaccinations à jour",
+			"Examen clinique sans particularité",
+			"Vue en légère baisse, consultation d'un ophtalmologue conseillée",
+			"Audition correcte"
+	};
+	private static final Map<String, String[]> TRIGGER_SENTENCES = Map.ofEntries(
+			entry("Hémoglobine A1C", new String[]{"Hémoglobine A1C supérieure au niveau recommandé",
+					"Le taux d'Hémoglobine A1C reste élevé"}),
+			entry("Microalbumine", new String[]{"Microalbumine élevée lors du dernier bilan",
+					"Tests de laboratoire indiquant un taux de Microalbumine élevé"}),
+			entry("Taille", new String[]{"Taille mesurée en légère baisse", "Taille à mesurer lors de la prochaine visite"}),
+			entry("Poids", new String[]{"Poids égal ou inférieur au poids recommandé",
+					"Poids supérieur au poids recommandé"}),
+			entry("Fumeur", new String[]{"Le patient déclare qu'il est fumeur", "Fumeur depuis plus de vingt ans"}),
+			entry("Fumeuse", new String[]{"La patiente déclare qu'elle est fumeuse",
+					"Fumeuse, a tenté d'arrêter l'année dernière"}),
+			entry("Anormal", new String[]{"Rythme cardiaque anormal au repos",
+					"Résultat anormal du dernier bilan sanguin"}),
+			entry("Cholestérol", new String[]{"Tests de laboratoire indiquant un taux de cholestérol LDL élevé",
+					"Cholestérol à surveiller"}),
+			entry("Vertige", new String[]{"Le patient signale un vertige en se levant",
+					"Vertige passager depuis la dernière visite"}),
+			entry("Rechute", new String[]{"Rechute après l'arrêt du traitement", "Le patient craint une rechute"}),
+			entry("Réaction", new String[]{"Réaction aux médicaments au cours des trois derniers mois",
+					"Le patient déclare avoir fait une réaction allergique"}),
+			entry("Anticorps", new String[]{"Tests de laboratoire indiquant que les anticorps sont élevés",
+					"Anticorps en hausse depuis le dernier bilan"})
+	);
+	// terms counted by the assessments microservice
+	static final String[] TRIGGERS = TRIGGER_SENTENCES.keySet().stream().sorted().toArray(String[]::new);
+	private static final int MAX_SENTENCES = 4;
+	private static final Duration MAX_HISTORY = Duration.ofDays(10 * 365);
+
+	private final Random random;
+	private final double meanNotesPerPatient;
+	private final double triggerDensity;
+
+	/**
+	 * @param seed                seed of the generation
+	 * @param meanNotesPerPatient average number of notes per patient
+	 * @param triggerDensity      average probability for each sentence to mention a trigger
+	 */
+	public NoteGenerator(long seed, double meanNotesPerPatient, double triggerDensity) {
+		this.random = new Random(seed);
+		this.meanNotesPerPatient = meanNotesPerPatient;
+		this.triggerDensity = triggerDensity;
+	}
+
+	/**
+	 * Generates the history of a patient, notes being written between the birth of the patient, at most ten years
+	 * ago, and now.
+	 *
+	 * @param patient patient the notes belong to
+	 * @param now     date of the most recent note possible
+	 * @return notes, in creation order
+	 */
+	public List<NoteBean> generateHistory(PatientBean patient, Instant now) {
+		int noteCount = (int) Math.min(Math.round(exponential(meanNotesPerPatient)), 20 * Math.round(meanNotesPerPatient));
+		double patientDensity = Math.min(1, exponential(triggerDensity));
+		Instant first = patient.getDob().atStartOfDay().toInstant(ZoneOffset.UTC);
+		if (first.isBefore(now.minus(MAX_HISTORY))) {
+			first = now.minus(MAX_HISTORY);
+		}
+		long span = Math.max(1, Duration.between(first, now).getSeconds());
+		long[] offsets = new long[noteCount];
+		for (int i = 0; i < noteCount; i++) {
+			offsets[i] = (long) (random.nextDouble() * span);
+		}
+		Arrays.sort(offsets);
+		List<NoteBean> notes = new ArrayList<>(noteCount);
+		for (long offset : offsets) {
+			notes.add(new NoteBean(patient.getId(), generateNote(patient.getSex(), patientDensity),
+					first.plusSeconds(offset)));
+		}
+		return notes;
+	}
+
+	private String generateNote(String sex, double density) {
+		StringBuilder note = new StringBuilder();
+		int sentences = 1 + random.nextInt(MAX_SENTENCES);
+		for (int i = 0; i < sentences; i++) {
+			if (i > 0) {
+				note.append(random.nextInt(3) == 0 ? "\r\n" : " ");
+			}
+			note.append(random.nextDouble() < density ? triggerSentence(sex) : pick(SENTENCES));
+		}
+		return sex.equals("F") ? feminine(note.toString()) : note.toString();
+	}
+
+	private String triggerSentence(String sex) {
+		String trigger = TRIGGERS[random.nextInt(TRIGGERS.length)];
+		if (trigger.startsWith("Fumeu")) {
+			trigger = sex.equals("F") ? "Fumeuse" : "Fumeur";
+		}
+		String sentence = pick(TRIGGER_SENTENCES.get(trigger));
+		switch (random.nextInt(8)) {
+			case 0:
+				return sentence.toLowerCase();
+			case 1:
+				// typed without accent
+				return Normalizer.normalize(sentence, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+			default:
+				return sentence;
+		}
+	}
+
+	private static String feminine(String note) {
+		return note.replace("Le patient", "La patiente")
+				.replace("le patient", "la patiente")
+				.replace("qu'il", "qu'elle")
+				.replace("Il se", "Elle se");
+	}
+
+	private double exponential(double mean) {
+		return -mean * Math.log(1 - random.nextDouble());
+	}
+
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+}
@@ -0,0 +1,152 @@
+package com.abernathyclinic.datagen.generator;
+
+import com.abernathyclinic.datagen.bean.PatientBean;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generates patients with French names and addresses, within the constraints of the Patient entity: names and address
+ * of at most 50 chars, sex M or F, phone number in 123-456-7890 format.
+ * Family names are sometimes compound so that millions of patients do not share a few hundred names, and some
+ * patients have no address or phone number, as in the seed data.
+ * The patients table refuses two patients with the same family, given name and birthday, so homonyms are given
+ * distinct ages: the n-th patient with given names is the n-th step of a walk over every possible age, whose start and
+ * step are drawn from the seed and the names.
+ * Generation is seeded, so that two runs with the same seed generate the same patients.
+ */
+public class PatientGenerator {
+	private static final String[] FAMILY_NAMES = {
+			"Martin", "Bernard", "Thomas", "Petit", "Robert", "Richard", "Durand", "Dubois", "Moreau", "Laurent",
+			"Simon", "Michel", "Lefebvre", "Leroy", "Roux", "David", "Bertrand", "Morel", "Fournier", "Girard",
+			"Bonnet", "Dupont", "Lambert", "Fontaine", "Rousseau", "Vincent", "Muller", "Lefèvre", "Faure", "André",
+			"Mercier", "Blanc", "Guérin", "Boyer", "Garnier", "Chevalier", "François", "Legrand", "Gauthier", "Garcia",
+			"Perrin", "Robin", "Clément", "Morin", "Nicolas", "Henry", "Roussel", "Mathieu", "Gautier", "Masson",
+			"Marchand", "Duval", "Denis", "Dumont", "Marie", "Lemaire", "Noël", "Meyer", "Dufour", "Meunier",
+			"Brun", "Blanchard", "Giraud", "Joly", "Rivière", "Lucas", "Brunet", "Gaillard", "Barbier", "Arnaud",
+			"Martinez", "Gérard", "Roche", "Renard", "Schmitt", "Roy", "Leroux", "Colin", "Vidal", "Caron",
+			"Picard", "Roger", "Fabre", "Aubert", "Lemoine", "Renaud", "Dumas", "Lacroix", "Olivier", "Philippe",
+			"Bourgeois", "Pierre", "Benoît", "Rey", "Leclerc", "Payet", "Rolland", "Leclercq", "Guillaume", "Lecomte"
+	};
+	private static final String[] MALE_GIVEN_NAMES = {
+			"Jean", "Pierre", "Michel", "André", "Philippe", "Louis", "Alain", "Jacques", "Bernard", "Marcel",
+			"Daniel", "Roger", "Paul", "Claude", "Christian", "Henri", "Georges", "Nicolas", "François", "Patrick",
+			"Gérard", "Christophe", "Joseph", "Julien", "René", "Éric", "Thomas", "Frédéric", "Laurent", "Antoine",
+			"Hugo", "Lucas", "Léo", "Gabriel", "Arthur", "Raphaël", "Jules", "Adam", "Nathan", "Théo"
+	};
+	private static final String[] FEMALE_GIVEN_NAMES = {
+			"Marie", "Jeanne", "Françoise", "Monique", "Catherine", "Nathalie", "Isabelle", "Jacqueline", "Anne",
+			"Sylvie", "Martine", "Madeleine", "Nicole", "Suzanne", "Hélène", "Christine", "Marguerite", "Denise",
+			"Louise", "Christiane", "Valérie", "Sophie", "Sandrine", "Stéphanie", "Céline", "Julie", "Aurélie",
+			"Camille", "Léa", "Manon", "Chloé", "Emma", "Jade", "Alice", "Inès", "Zoé", "Lina", "Rose", "Anna", "Lou"
+	};
+	private static final String[] STREET_TYPES = {"rue", "avenue", "boulevard", "place", "chemin", "allée", "impasse"};
+	private static final String[] STREET_NAMES = {
+			"de la République", "Victor Hugo", "Jean Jaurès", "de la Gare", "du Moulin", "des Écoles", "Pasteur",
+			"de l'Église", "du Général de Gaulle", "de la Paix", "des Lilas", "Gambetta", "de Verdun", "du Stade",
+			"des Tilleuls", "Voltaire", "de la Liberté", "du Château", "Émile Zola", "des Acacias"
+	};
+	private static final String[] CITIES = {
+			"Paris", "Lyon", "Marseille", "Toulouse", "Nice", "Nantes", "Strasbourg", "Montpellier", "Bordeaux",
+			"Lille", "Rennes", "Reims", "Dijon", "Angers", "Nîmes", "Grenoble", "Brest", "Tours", "Limoges", "Metz"
+	};
+	private static final int MAX_LENGTH = 50;
+	private static final int MAX_AGE = 100;
+	private static final int AGES = MAX_AGE * 365;
+
+	private final long seed;
+	private final Random random;
+	// patients generated so far by names, numbered by names(): a few MB whatever the number of patients
+	private final int[] homonyms = new int[FAMILY_NAMES.length * (FAMILY_NAMES.length + 1)
+			* (MALE_GIVEN_NAMES.length + FEMALE_GIVEN_NAMES.length)];
+
+	public PatientGenerator(long seed) {
+		this.seed = seed;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates a patient.
+	 *
+	 * @param id    ID of patient
+	 * @param today date the age of patients is counted from
+	 * @return patient
+	 */
+	public PatientBean generatePatient(Integer id, LocalDate today) {
+		boolean male = random.nextBoolean();
+		int given = random.nextInt(male ? MALE_GIVEN_NAMES.length : FEMALE_GIVEN_NAMES.length);
+		int family = random.nextInt(FAMILY_NAMES.length);
+		// one in five family names is compound
+		int secondFamily = random.nextInt(5) == 0 ? random.nextInt(FAMILY_NAMES.length) : -1;
+		int age = age(names(family, secondFamily, male ? given : MALE_GIVEN_NAMES.length + given));
+		// one in ten patients has no address, one in twenty no phone number
+		String address = random.nextInt(10) == 0 ? "" : address();
+		String phone = random.nextInt(20) == 0 ? "" : phone();
+		return new PatientBean(id,
+				secondFamily < 0 ? FAMILY_NAMES[family] : FAMILY_NAMES[family] + "-" + FAMILY_NAMES[secondFamily],
+				male ? MALE_GIVEN_NAMES[given] : FEMALE_GIVEN_NAMES[given], today.minusDays(age), male ? "M" : "F",
+				address, phone);
+	}
+
+	/**
+	 * Numbers the names of a patient, from 0 to the number of possible names excluded.
+	 *
+	 * @param family       index of the family name
+	 * @param secondFamily index of the second part of a compound family name, -1 if the name is not compound
+	 * @param given        index of the given name, female ones following the male ones
+	 * @return number of the names
+	 */
+	private static int names(int family, int secondFamily, int given) {
+		return (family * (FAMILY_NAMES.length + 1) + secondFamily + 1)
+				* (MALE_GIVEN_NAMES.length + FEMALE_GIVEN_NAMES.length) + given;
+	}
+
+	/**
+	 * Age of the next patient with given names, which differs from those of the patients generated before with the
+	 * same names: the step of the walk has no common divisor with the number of ages, so the walk goes through every
+	 * age before coming back to one.
+	 *
+	 * @param names number of the names
+	 * @return age in days, from 1 to MAX_AGE years
+	 */
+	private int age(int names) {
+		int homonym = homonyms[names]++;
+		if (homonym == AGES) {
+			throw new IllegalStateException("Every birthday is taken by patients with the same names");
+		}
+		long hash = mix(seed * 31 + names);
+		int start = (int) Math.floorMod(hash, (long) AGES);
+		int step = 1 + (int) Math.floorMod(hash >>> 32, (long) AGES - 1);
+		while (gcd(step, AGES) != 1) {
+			step++;
+		}
+		return 1 + (int) ((start + (long) homonym * step) % AGES);
+	}
+
+	/**
+	 * Spreads the bits of a number over the whole result (SplitMix64 finalizer).
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	private static int gcd(int a, int b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+
+	private String address() {
+		String address = (1 + random.nextInt(150)) + " " + pick(STREET_TYPES) + " " + pick(STREET_NAMES) + ", "
+				+ pick(CITIES);
+		return address.length() <= MAX_LENGTH ? address : address.substring(0, MAX_LENGTH);
+	}
+
+	private String phone() {
+		return String.format("%03d-%03d-%04d", 100 + random.nextInt(900), random.nextInt(1000), random.nextInt(10000));
+	}
+
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+}
@@ -0,0 +1,35 @@
+package com.abernathyclinic.datagen.loader;
+
+import com.abernathyclinic.datagen.bean.NoteBean;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes notes to the collection of the history microservice, in the same shape as the Note documents it writes.
+ * Batches are unordered inserts, which the server can split and apply in parallel.
+ */
+@Component
+public class NoteLoader {
+	static final String COLLECTION = "abernathy_clinic";
+	static final String NOTE_CLASS = "com.abernathyclinic.history.model.Note";
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	public void insert(List<NoteBean> notes) {
+		List<Document> documents = notes.stream()
+				.map(note -> new Document("patId", note.getPatId())
+						.append("content", note.getContent())
+						.append("createdAt", Date.from(note.getCreatedAt()))
+						.append("version", 0L)
+						.append("_class", NOTE_CLASS))
+				.toList();
+		mongoTemplate.getCollection(COLLECTION).insertMany(documents, new InsertManyOptions().ordered(false));
+	}
+}
@@ -0,0 +1,43 @@
+package com.abernathyclinic.datagen.loader;
+
+import com.abernathyclinic.datagen.bean.PatientBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.util.List;
+
+/**
+ * Writes patients to the patients table of the patients microservice.
+ * Patients are inserted with their ID, so that their notes can be generated without reading the IDs back; with
+ * rewriteBatchedStatements=true on the datasource url, a batch is sent as one multi-row INSERT.
+ */
+@Component
+public class PatientLoader {
+	static final String INSERT = "INSERT INTO patients (patient_id, family, given, dob, sex, address, phone) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * @return ID following the highest one of the patients table
+	 */
+	public int nextId() {
+		Integer highestId = jdbcTemplate.queryForObject("SELECT MAX(patient_id) FROM patients", Integer.class);
+		return highestId == null ? 1 : highestId + 1;
+	}
+
+	public void insert(List<PatientBean> patients) {
+		jdbcTemplate.batchUpdate(INSERT, patients, patients.size(), (statement, patient) -> {
+			statement.setInt(1, patient.getId());
+			statement.setString(2, patient.getFamily());
+			statement.setString(3, patient.getGiven());
+			statement.setDate(4, Date.valueOf(patient.getDob()));
+			statement.setString(5, patient.getSex());
+			statement.setString(6, patient.getAddress());
+			statement.setString(7, patient.getPhone());
+		});
+	}
+}
@@ -0,0 +1,81 @@
+package com.abernathyclinic.datagen;
+
+import com.abernathyclinic.datagen.bean.NoteBean;
+import com.abernathyclinic.datagen.bean.PatientBean;
+import com.abernathyclinic.datagen.loader.NoteLoader;
+import com.abernathyclinic.datagen.loader.PatientLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import(DatasetGenerator.class)
+@TestPropertySource(properties = {"datagen.patients.count=25", "datagen.batch-size=10",
+		"datagen.notes.mean-per-patient=3"})
+class DatasetGeneratorTest {
+	@Autowired
+	private DatasetGenerator datasetGenerator;
+	@MockBean
+	private PatientLoader patientLoader;
+	@MockBean
+	private NoteLoader noteLoader;
+
+	@Test
+	@DisplayName("Patients are written by batches after the stored ones, with the notes of every patient")
+	@SuppressWarnings("unchecked")
+	void run_shouldLoadPatientsAndNotesByBatches() {
+		when(patientLoader.nextId()).thenReturn(6);
+		List<Integer> patientIds = new ArrayList<>();
+		doAnswer(invocation -> {
+			List<PatientBean> batch = invocation.getArgument(0);
+			batch.forEach(patient -> patientIds.add(patient.getId()));
+			return null;
+		}).when(patientLoader).insert(anyList());
+		List<NoteBean> notes = new ArrayList<>();
+		doAnswer(invocation -> notes.addAll(invocation.getArgument(0))).when(noteLoader).insert(anyList());
+
+		datasetGenerator.run(null);
+
+		verify(patientLoader, times(3)).insert(anyList());
+		assertEquals(25, patientIds.size());
+		assertEquals(6, patientIds.get(0));
+		assertEquals(30, patientIds.get(24));
+		assertTrue(notes.stream().allMatch(note -> note.getPatId() >= 6 && note.getPatId() <= 30));
+		assertTrue(notes.size() > 25);
+	}
+
+	@Test
+	@DisplayName("A second run with the same seed adds other patients than the first one")
+	void run_afterFormerRun_shouldGenerateOtherPatients() {
+		when(patientLoader.nextId()).thenReturn(1, 26);
+		List<String> identities = new ArrayList<>();
+		doAnswer(invocation -> {
+			List<PatientBean> batch = invocation.getArgument(0);
+			batch.forEach(patient -> identities.add(patient.getFamily() + "|" + patient.getGiven() + "|" + patient.getDob()));
+			return null;
+		}).when(patientLoader).insert(anyList());
+
+		datasetGenerator.run(null);
+		datasetGenerator.run(null);
+
+		assertEquals(50, identities.size());
+		assertEquals(50, identities.stream().distinct().count());
+	}
+}
@@ -0,0 +1,98 @@
+package com.abernathyclinic.datagen.generator;
+
+import com.abernathyclinic.datagen.bean.NoteBean;
+import com.abernathyclinic.datagen.bean.PatientBean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteGeneratorTest {
+	private static final Instant NOW = Instant.parse("2023-07-01T00:00:00Z");
+
+	private final PatientBean patient = new PatientBean(1, "Martin", "Jean", LocalDate.of(2020, 1, 1), "M",
+			"1 rue Pasteur, Lyon", "100-222-3333");
+
+	@Test
+	@DisplayName("Notes belong to the patient and are written in order between birth and now")
+	void generateHistory_shouldDateNotesWithinPatientLife() {
+		NoteGenerator generator = new NoteGenerator(1, 10, 0.05);
+		Instant birth = patient.getDob().atStartOfDay().toInstant(ZoneOffset.UTC);
+
+		for (int i = 0; i < 100; i++) {
+			List<NoteBean> notes = generator.generateHistory(patient, NOW);
+			Instant previous = birth;
+			for (NoteBean note : notes) {
+				assertEquals(1, note.getPatId());
+				assertFalse(note.getContent().isBlank());
+				assertFalse(note.getCreatedAt().isBefore(previous));
+				assertFalse(note.getCreatedAt().isAfter(NOW));
+				previous = note.getCreatedAt();
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Notes per patient and trigger density average the requested values")
+	void generateHistory_shouldAverageRequestedValues() {
+		NoteGenerator generator = new NoteGenerator(1, 8, 0.2);
+		int patients = 5000;
+		long notes = 0;
+		long notesWithTrigger = 0;
+
+		for (int i = 0; i < patients; i++) {
+			for (NoteBean note : generator.generateHistory(patient, NOW)) {
+				notes++;
+				if (hasTrigger(note.getContent())) {
+					notesWithTrigger++;
+				}
+			}
+		}
+
+		assertEquals(8, (double) notes / patients, 0.5);
+		// 2.5 sentences per note on average, each one mentioning a trigger with a probability of 0.2
+		double expected = 1 - (0.8 + 0.64 + 0.512 + 0.4096) / 4;
+		assertEquals(expected, (double) notesWithTrigger / notes, 0.1);
+	}
+
+	@Test
+	@DisplayName("Without trigger density no note mentions a trigger")
+	void generateHistory_withoutTriggerDensity_shouldNotMentionTriggers() {
+		NoteGenerator generator = new NoteGenerator(1, 10, 0);
+
+		for (int i = 0; i < 1000; i++) {
+			generator.generateHistory(patient, NOW).forEach(note -> assertFalse(hasTrigger(note.getContent())));
+		}
+	}
+
+	@Test
+	@DisplayName("Two generators with the same seed generate the same notes")
+	void generateHistory_withSameSeed_shouldGenerateSameNotes() {
+		NoteGenerator generator = new NoteGenerator(3, 10, 0.1);
+		NoteGenerator sameGenerator = new NoteGenerator(3, 10, 0.1);
+
+		for (int i = 0; i < 100; i++) {
+			List<String> contents = generator.generateHistory(patient, NOW).stream().map(NoteBean::getContent).toList();
+			assertEquals(contents,
+					sameGenerator.generateHistory(patient, NOW).stream().map(NoteBean::getContent).toList());
+		}
+	}
+
+	private static boolean hasTrigger(String content) {
+		String normalized = normalize(content);
+		return Arrays.stream(NoteGenerator.TRIGGERS).anyMatch(trigger -> normalized.contains(normalize(trigger)));
+	}
+
+	private static String normalize(String text) {
+		return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase();
+	}
+}
@@ -0,0 +1,66 @@
+package com.abernathyclinic.datagen.generator;
+
+import com.abernathyclinic.datagen.bean.PatientBean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatientGeneratorTest {
+	private static final LocalDate TODAY = LocalDate.of(2023, 7, 1);
+
+	@Test
+	@DisplayName("Generated patients respect the constraints of the Patient entity")
+	void generatePatient_shouldRespectPatientConstraints() {
+		PatientGenerator generator = new PatientGenerator(1);
+		Set<String> families = new HashSet<>();
+
+		for (int id = 1; id <= 10000; id++) {
+			PatientBean patient = generator.generatePatient(id, TODAY);
+			assertEquals(id, patient.getId());
+			assertTrue(!patient.getFamily().isBlank() && patient.getFamily().length() <= 50);
+			assertTrue(!patient.getGiven().isBlank() && patient.getGiven().length() <= 50);
+			assertTrue(patient.getSex().matches("[MF]"));
+			assertTrue(patient.getDob().isBefore(TODAY) && patient.getDob().isAfter(TODAY.minusYears(101)));
+			assertTrue(patient.getAddress().length() <= 50);
+			assertTrue(patient.getPhone().matches("^([0-9]{3}-[0-9]{3}-[0-9]{4})?$"));
+			families.add(patient.getFamily());
+		}
+		// compound names spread patients over more than a thousand families
+		assertTrue(families.size() > 1000);
+	}
+
+	@Test
+	@DisplayName("Generated patients never share their family name, given name and birthday")
+	void generatePatient_shouldNotGenerateHomonymsBornTheSameDay() {
+		PatientGenerator generator = new PatientGenerator(1);
+		Set<String> identities = new HashSet<>();
+
+		// among that many patients, dozens of homonyms would be born the same day if their birthdays were drawn at random
+		for (int id = 1; id <= 200000; id++) {
+			PatientBean patient = generator.generatePatient(id, TODAY);
+			assertTrue(identities.add(patient.getFamily() + "|" + patient.getGiven() + "|" + patient.getDob()));
+		}
+	}
+
+	@Test
+	@DisplayName("Two generators with the same seed generate the same patients")
+	void generatePatient_withSameSeed_shouldGenerateSamePatients() {
+		assertEquals(describe(new PatientGenerator(7)), describe(new PatientGenerator(7)));
+	}
+
+	private static List<String> describe(PatientGenerator generator) {
+		return IntStream.rangeClosed(1, 100)
+				.mapToObj(id -> generator.generatePatient(id, TODAY))
+				.map(patient -> String.join("|", patient.getFamily(), patient.getGiven(), patient.getDob().toString(),
+						patient.getSex(), patient.getAddress(), patient.getPhone()))
+				.toList();
+	}
+}
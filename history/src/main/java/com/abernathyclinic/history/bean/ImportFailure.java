@@ -0,0 +1,19 @@
+package com.abernathyclinic.history.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Line of an import which could not be imported, numbered from 1.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportFailure {
+    private long line;
+    private Integer patId;
+    private String reason;
+}
@@ -0,0 +1,22 @@
+package com.abernathyclinic.history.bean;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Every failed line is counted, but only the first ones are detailed so that the report of
+ * a broken file stays small.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImportReport {
+    private long received;
+    private long imported;
+    private long failed;
+    private List<ImportFailure> failures = new ArrayList<>();
+}
@@ -0,0 +1,27 @@
+package com.abernathyclinic.history.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Index of a collection, with the number of times it was used by queries since the database server started or since
+ * the index was created. A required index which is missing is reported with no key and not present.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class IndexUsage {
+    private String collection;
+    private String name;
+    private Map<String, Object> keys;
+    private boolean required;
+    private boolean present;
+    private Long accesses;
+    private Instant since;
+}
@@ -0,0 +1,26 @@
+package com.abernathyclinic.history.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.mapping.TextScore;
+
+import java.time.Instant;
+
+/**
+ * Note matching a search, with its relevance: the higher the score, the more often and the more exactly the searched
+ * terms appear in the note.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class NoteSearchHit {
+    private String id;
+    private Integer patId;
+    private String content;
+    private Instant createdAt;
+    @TextScore
+    private Float score;
+}
@@ -0,0 +1,20 @@
+package com.abernathyclinic.history.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Patients read by their IDs from the patients microservice, and the requested IDs no patient has.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class PatientBatchBean {
+	private List<PatientBean> patients;
+	private List<Integer>     missingIds;
+}
@@ -0,0 +1,25 @@
+package com.abernathyclinic.history.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Database command which took longer than the slow query threshold.
+ * Only the names of the filtered fields are kept, not their values, so that no patient data ends up in diagnostics.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SlowQuery {
+    private String commandName;
+    private String collection;
+    private List<String> filterFields;
+    private long durationMillis;
+    private Instant finishedAt;
+}
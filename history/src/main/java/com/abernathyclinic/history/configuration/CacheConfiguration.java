@@ -0,0 +1,43 @@
+package com.abernathyclinic.history.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfiguration {
+    @Bean
+    public Cache<Integer, Boolean> patientExistenceCache(
+            @Value("${history.patient-cache.maximum-size:10000}") long maximumSize,
+            @Value("${history.patient-cache.positive-ttl:10m}") Duration positiveTtl,
+            @Value("${history.patient-cache.negative-ttl:30s}") Duration negativeTtl) {
+        // unknown patients are kept for a shorter time, a patient created while a notification was lost shows up soon
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Integer, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(Integer patientId, Boolean exists, long currentTime) {
+                        return (exists ? positiveTtl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer patientId, Boolean exists, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(patientId, exists, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer patientId, Boolean exists, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+}
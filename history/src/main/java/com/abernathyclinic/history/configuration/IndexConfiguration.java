@@ -0,0 +1,43 @@
+package com.abernathyclinic.history.configuration;
+
+import com.abernathyclinic.history.service.IndexService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+
+import java.util.List;
+
+@Configuration
+@Slf4j
+public class IndexConfiguration {
+    @Bean
+    @ConditionalOnProperty(name = "history.indexes.check-on-startup", havingValue = "true", matchIfMissing = true)
+    public ApplicationRunner indexCheck(IndexService indexService,
+                                        @Value("${history.indexes.create-missing:true}") boolean createMissing,
+                                        @Value("${history.indexes.fail-on-missing:false}") boolean failOnMissing) {
+        // without its indexes, every history read is a collection scan: refuse to start or at least say so
+        return args -> {
+            List<String> missing;
+            try {
+                missing = indexService.checkIndexes(createMissing);
+            } catch (DataAccessException exception) {
+                if (failOnMissing) {
+                    throw exception;
+                }
+                log.warn("Indexes could not be checked: " + exception.getMessage());
+                return;
+            }
+            if (missing.isEmpty()) {
+                return;
+            }
+            if (failOnMissing) {
+                throw new IllegalStateException("Required indexes are missing: " + missing);
+            }
+            log.warn("Required indexes are missing, queries will scan whole collections: " + missing);
+        };
+    }
+}
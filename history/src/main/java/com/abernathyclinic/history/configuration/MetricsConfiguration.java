@@ -0,0 +1,16 @@
+package com.abernathyclinic.history.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfiguration {
+    @Bean
+    public MeterBinder patientExistenceCacheMetrics(Cache<Integer, Boolean> patientExistenceCache) {
+        // hit ratio, size and evictions of the patient existence cache
+        return registry -> CaffeineCacheMetrics.monitor(registry, patientExistenceCache, "patientExistence");
+    }
+}
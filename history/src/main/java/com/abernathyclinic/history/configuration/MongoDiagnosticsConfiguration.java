@@ -0,0 +1,25 @@
+package com.abernathyclinic.history.configuration;
+
+import com.abernathyclinic.history.util.SlowQueryListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class MongoDiagnosticsConfiguration {
+    @Bean
+    public SlowQueryListener slowQueryListener(
+            @Value("${history.diagnostics.slow-query-threshold:100ms}") Duration threshold,
+            @Value("${history.diagnostics.slow-query-capacity:100}") int capacity) {
+        return new SlowQueryListener(threshold, capacity);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer slowQueryListenerCustomizer(SlowQueryListener slowQueryListener) {
+        // every command sent by the Mongo client goes through the listener
+        return settings -> settings.addCommandListener(slowQueryListener);
+    }
+}
@@ -0,0 +1,15 @@
+package com.abernathyclinic.history.configuration;
+
+import com.abernathyclinic.history.constants.Triggers;
+import com.abernathyclinic.history.util.TriggerMatcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TriggerConfiguration {
+    @Bean
+    public TriggerMatcher triggerMatcher() {
+        // compile the trigger list once, the matcher is shared by every summary update
+        return new TriggerMatcher(Triggers.list);
+    }
+}
@@ -0,0 +1,10 @@
+package com.abernathyclinic.history.constants;
+
+/**
+ * Kind of change a note went through, as published on the change feed.
+ */
+public enum NoteEventType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
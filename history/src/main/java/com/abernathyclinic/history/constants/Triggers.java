@@ -0,0 +1,25 @@
+package com.abernathyclinic.history.constants;
+
+import java.util.List;
+
+/**
+ * Terms which, when found in the notes of a patient, are counted by the assessments microservice to evaluate the risk
+ * of developing diabetes. Must be kept identical to the list of the assessments microservice.
+ */
+public class Triggers {
+    public static final List<String> list = List.of(
+            "Hémoglobine A1C",
+            "Microalbumine",
+            "Taille",
+            "Poids",
+            "Fumeur",
+            "Fumeuse",
+            "Anormal",
+            "Cholestérol",
+            "Vertige",
+            "Rechute",
+            "Réaction",
+            "Anticorps"
+    );
+
+}
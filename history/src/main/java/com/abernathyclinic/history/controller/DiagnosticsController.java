@@ -0,0 +1,35 @@
+package com.abernathyclinic.history.controller;
+
+import com.abernathyclinic.history.bean.IndexUsage;
+import com.abernathyclinic.history.bean.SlowQuery;
+import com.abernathyclinic.history.service.IndexService;
+import com.abernathyclinic.history.util.SlowQueryListener;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/diagnostics")
+public class DiagnosticsController {
+
+    @Autowired
+    IndexService indexService;
+    @Autowired
+    SlowQueryListener slowQueryListener;
+
+	@Operation(summary = "Lists indexes with their usage, along with required indexes which are missing")
+	@GetMapping("/indexes")
+	public List<IndexUsage> getIndexUsage() {
+		return indexService.getIndexUsage();
+	}
+
+	@Operation(summary = "Lists the last database commands slower than the slow query threshold, most recent first")
+	@GetMapping("/slow-queries")
+	public List<SlowQuery> getSlowQueries() {
+		return slowQueryListener.getSlowQueries();
+	}
+}
@@ -1,15 +1,31 @@
 package com.abernathyclinic.history.controller;
 
+import com.abernathyclinic.history.bean.ImportReport;
+import com.abernathyclinic.history.bean.NoteSearchHit;
 import com.abernathyclinic.history.exception.InvalidFormException;
 import com.abernathyclinic.history.exception.NoteNotFoundException;
 import com.abernathyclinic.history.exception.PatientNotFoundException;
 import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.NoteEvent;
+import com.abernathyclinic.history.model.PatientSummary;
+import com.abernathyclinic.history.service.HistoryVersionService;
+import com.abernathyclinic.history.service.NoteEventService;
+import com.abernathyclinic.history.service.NoteImportService;
+import com.abernathyclinic.history.service.NoteSearchService;
 import com.abernathyclinic.history.service.NoteService;
+import com.abernathyclinic.history.service.PatientExistenceService;
+import com.abernathyclinic.history.service.PatientSummaryService;
 import com.abernathyclinic.history.util.InvalidFormMessageBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,11 +34,20 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 
 @RestController
@@ -31,6 +56,23 @@ public class NoteController {
 
     @Autowired
     NoteService noteService;
+    @Autowired
+    PatientSummaryService patientSummaryService;
+    @Autowired
+    NoteImportService noteImportService;
+    @Autowired
+    PatientExistenceService patientExistenceService;
+    @Autowired
+    NoteSearchService noteSearchService;
+    @Autowired
+    NoteEventService noteEventService;
+    @Autowired
+    HistoryVersionService historyVersionService;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String NEXT_PAGE_HEADER = "X-Next-Page";
 
 	@Operation(summary = "Creates a patient")
 	@PostMapping
@@ -40,29 +82,161 @@ public class NoteController {
 		return noteService.createNote(note);
 	}
 
-	@Operation(summary = "Gets a patient's history")
+	@Operation(summary = "Imports notes sent as newline-delimited JSON, one note per line, and reports the lines which "
+			+ "could not be imported")
+	@PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+	public ImportReport importNotes(InputStream body) throws IOException {
+		return noteImportService.importNotes(body);
+	}
+
+	@Operation(summary = "Forgets whether a patient exists, called by the patients microservice when a patient is created "
+			+ "or deleted")
+	@PostMapping("/invalidate/{patientId}")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void invalidatePatient(
+			@Parameter(description = "id of patient which was created or deleted") @PathVariable Integer patientId) {
+		patientExistenceService.invalidate(patientId);
+		// a history cached by a client as found, or not found, is outdated
+		historyVersionService.increment(patientId);
+	}
+
+	@Operation(summary = "Gets a patient's history, not modified if the ETag sent in If-None-Match is still current")
 	@GetMapping("/patient/{patientId}")
-	public List<Note> getPatientHistory(
-			@Parameter(description = "id of patient for which history is requested") @PathVariable Integer patientId)
-			throws PatientNotFoundException {
-		return noteService.getPatientHistory(patientId);
+	public ResponseEntity<List<Note>> getPatientHistory(
+			@Parameter(description = "id of patient for which history is requested") @PathVariable Integer patientId,
+			WebRequest request) throws PatientNotFoundException {
+		String eTag = historyETag(patientId);
+		if (request.checkNotModified(eTag)) {
+			return null;
+		}
+		return ResponseEntity.ok().eTag(eTag).body(noteService.getPatientHistory(patientId));
+	}
+
+	@Operation(summary = "Gets the content of a patient's notes only, oldest first, not modified if the ETag sent in "
+			+ "If-None-Match is still current")
+	@GetMapping("/patient/{patientId}/contents")
+	public ResponseEntity<List<String>> getPatientNoteContents(
+			@Parameter(description = "id of patient for which note contents are requested") @PathVariable Integer patientId,
+			WebRequest request) throws PatientNotFoundException {
+		String eTag = historyETag(patientId);
+		if (request.checkNotModified(eTag)) {
+			return null;
+		}
+		return ResponseEntity.ok().eTag(eTag).body(noteService.getPatientNoteContents(patientId));
 	}
 
-	@Operation(summary = "Gets a note by its id")
+	@Operation(summary = "Counts the notes of several patients, by patient id")
+	@PostMapping("/patient/counts")
+	public Map<Integer, Long> countPatientsNotes(
+			@Parameter(description = "ids of patients whose notes are counted") @RequestBody Set<Integer> patientIds) {
+		return noteService.countPatientsNotes(patientIds);
+	}
+
+	@Operation(summary = "Gets a summary of a patient's history: number of notes containing each trigger, not modified "
+			+ "if the ETag sent in If-None-Match is still current")
+	@GetMapping("/patient/{patientId}/summary")
+	public ResponseEntity<PatientSummary> getPatientSummary(
+			@Parameter(description = "id of patient for which history summary is requested") @PathVariable Integer patientId,
+			WebRequest request) {
+		String eTag = historyETag(patientId);
+		if (request.checkNotModified(eTag)) {
+			return null;
+		}
+		return ResponseEntity.ok().eTag(eTag).body(patientSummaryService.getSummary(patientId));
+	}
+
+	@Operation(summary = "Gets the history of several patients, grouped by patient id")
+	@PostMapping("/patient/batch")
+	public Map<Integer, List<Note>> getPatientsHistories(
+			@Parameter(description = "ids of patients for which history is requested") @RequestBody Set<Integer> patientIds) {
+		return noteService.getPatientsHistories(patientIds);
+	}
+
+	@Operation(summary = "Gets a note by its id, not modified if the ETag sent in If-None-Match is still current")
 	@GetMapping("/{noteId}")
-	public Note getNoteById(@Parameter(description = "id of note to be searched") @PathVariable String noteId)
+	public ResponseEntity<Note> getNoteById(
+			@Parameter(description = "id of note to be searched") @PathVariable String noteId)
 			throws NoteNotFoundException {
-		return noteService.getNoteById(noteId)
+		Note note = noteService.getNoteById(noteId)
 				.orElseThrow(() -> new NoteNotFoundException("Note with ID " + noteId + " was not found"));
+		// the note is read anyway, a 304 without body is sent instead when the ETag matches If-None-Match
+		String eTag = "\"" + note.getId() + "-" + (note.getVersion() == null ? 0 : note.getVersion()) + "\"";
+		return ResponseEntity.ok().eTag(eTag).body(note);
 	}
 
-	@Operation(summary = "Get list of notes")
+	@Operation(summary = "Get a page of notes ordered by id, the id to pass as after for the next page is returned in the "
+			+ NEXT_CURSOR_HEADER + " header")
 	@GetMapping
-	public List<Note> getNotes() {
-		return noteService.getNotes();
+	public ResponseEntity<List<Note>> getNotes(
+			@Parameter(description = "id of the last note of the previous page, none for the first page")
+			@RequestParam(required = false) String after,
+			@Parameter(description = "number of notes per page, capped by history.notes.max-page-size")
+			@RequestParam(defaultValue = "100") int size) {
+		Slice<Note> notes = noteService.getNotes(after, size);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (notes.hasNext()) {
+			response.header(NEXT_CURSOR_HEADER, notes.getContent().get(notes.getNumberOfElements() - 1).getId());
+		}
+		return response.body(notes.getContent());
+	}
+
+	@Operation(summary = "Searches notes by their content, most relevant first, the number of the next page is returned in "
+			+ "the " + NEXT_PAGE_HEADER + " header")
+	@GetMapping("/search")
+	public ResponseEntity<List<NoteSearchHit>> searchNotes(
+			@Parameter(description = "searched terms, \"quoted phrases\" must appear as is and -terms must not appear")
+			@RequestParam String q,
+			@Parameter(description = "id of patient whose notes are searched, none for all patients")
+			@RequestParam(required = false) Integer patId,
+			@Parameter(description = "page number, from 0") @RequestParam(defaultValue = "0") int page,
+			@Parameter(description = "number of notes per page, capped by history.search.max-page-size")
+			@RequestParam(defaultValue = "20") int size) {
+		Slice<NoteSearchHit> hits = noteSearchService.search(q, patId, page, size);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (hits.hasNext()) {
+			response.header(NEXT_PAGE_HEADER, String.valueOf(page + 1));
+		}
+		return response.body(hits.getContent());
 	}
 
-	@Operation(summary = "Updates a requested note")
+	@Operation(summary = "Gets the note changes following a given one, oldest first, the sequence number to pass as after "
+			+ "for the next page is returned in the " + NEXT_CURSOR_HEADER + " header")
+	@GetMapping("/changes")
+	public ResponseEntity<List<NoteEvent>> getChanges(
+			@Parameter(description = "sequence number of the last change already processed, 0 for the oldest change kept")
+			@RequestParam(defaultValue = "0") long after,
+			@Parameter(description = "id of patient whose notes changed, none for all patients")
+			@RequestParam(required = false) Integer patId,
+			@Parameter(description = "number of changes per page, capped by history.changes.max-page-size")
+			@RequestParam(defaultValue = "100") int size) {
+		Slice<NoteEvent> events = noteEventService.getChanges(after, patId, size);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (events.hasNext()) {
+			response.header(NEXT_CURSOR_HEADER,
+					String.valueOf(events.getContent().get(events.getNumberOfElements() - 1).getSeq()));
+		}
+		return response.body(events.getContent());
+	}
+
+	@Operation(summary = "Streams every note as newline-delimited JSON, ordered by id")
+	@GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamNotes() {
+		// one note per line, read from a database cursor and written as it comes: memory use does not depend on the
+		// number of notes
+		ObjectWriter writer = objectMapper.writerFor(Note.class).without(SerializationFeature.INDENT_OUTPUT);
+		StreamingResponseBody body = output -> {
+			try (Stream<Note> notes = noteService.streamNotes()) {
+				Iterator<Note> iterator = notes.iterator();
+				while (iterator.hasNext()) {
+					output.write(writer.writeValueAsBytes(iterator.next()));
+					output.write('\n');
+				}
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
+
+	@Operation(summary = "Updates a requested note, only if it is still at the version sent, if any")
 	@PutMapping("/{id}")
 	public Note updateNoteById(@Parameter(description = "id of patient to be updated") @PathVariable String id,
 			@Valid @RequestBody Note note, Errors errors)
@@ -71,14 +245,22 @@ public class NoteController {
 		return noteService.updateNote(note);
 	}
 
-	@Operation(summary = "Removes a requested note")
+	@Operation(summary = "Removes a requested note, only if it is still at the given version, if any")
 	@DeleteMapping("/{id}")
 	@ResponseStatus(HttpStatus.NO_CONTENT)
-	public void deleteNoteById(@Parameter(description = "id of patient to be deleted") @PathVariable String id)
-			throws NoteNotFoundException {
-		noteService.deleteNoteById(id);
+	public void deleteNoteById(@Parameter(description = "id of patient to be deleted") @PathVariable String id,
+			@Parameter(description = "version of the note read by the client, none to delete whatever the version")
+			@RequestParam(required = false) Long version) throws NoteNotFoundException {
+		noteService.deleteNoteById(id, version);
 	}
 
+    /**
+     * Strong ETag of the representations of a patient history, read before the history itself.
+     */
+    private String historyETag(Integer patientId) {
+        return "\"" + patientId + "-" + historyVersionService.getVersion(patientId) + "\"";
+    }
+
     private void validateForm(Errors errors) throws InvalidFormException {
         if (errors.hasErrors()) {
             InvalidFormMessageBuilder.buildErrorMessage(errors);
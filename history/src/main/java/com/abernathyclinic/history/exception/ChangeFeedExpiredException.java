@@ -0,0 +1,15 @@
+package com.abernathyclinic.history.exception;
+
+/**
+ * Exception thrown when a consumer resumes the change feed from events which already expired.
+ */
+public class ChangeFeedExpiredException extends RuntimeException {
+    /**
+     * Exception thrown when a consumer resumes the change feed from events which already expired.
+     *
+     * @param message Exception message.
+     */
+    public ChangeFeedExpiredException(String message) {
+        super(message);
+    }
+}
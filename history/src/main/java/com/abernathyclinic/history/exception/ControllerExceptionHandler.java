@@ -31,6 +31,24 @@ public class ControllerExceptionHandler {
         log.error("Form has some incorrect fields.", invalidFormException);
         return "Form has some incorrect fields.\n" + invalidFormException.getMessage();
     }
+    @ExceptionHandler(VersionConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String versionConflictException(VersionConflictException versionConflictException) {
+        log.error("Note was changed by someone else.", versionConflictException);
+        return "Note was changed by someone else:\n" + versionConflictException.getMessage();
+    }
+    @ExceptionHandler(ChangeFeedExpiredException.class)
+    @ResponseStatus(HttpStatus.GONE)
+    public String changeFeedExpiredException(ChangeFeedExpiredException changeFeedExpiredException) {
+        log.error("Change feed was resumed from expired events.", changeFeedExpiredException);
+        return "Change feed can not be resumed:\n" + changeFeedExpiredException.getMessage();
+    }
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String illegalArgumentException(IllegalArgumentException illegalArgumentException) {
+        log.error("Request has an invalid parameter.", illegalArgumentException);
+        return "Request has an invalid parameter:\n" + illegalArgumentException.getMessage();
+    }
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public String returnMessage(Exception exception) {
@@ -0,0 +1,15 @@
+package com.abernathyclinic.history.exception;
+
+/**
+ * Exception thrown when the note to be updated or deleted was changed since the version the client read.
+ */
+public class VersionConflictException extends RuntimeException {
+    /**
+     * Exception thrown when the note to be updated or deleted was changed since the version the client read.
+     *
+     * @param message Exception message.
+     */
+    public VersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -5,10 +5,12 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 
 @Getter
 @Setter
@@ -22,4 +24,15 @@ public class Note {
     Integer patId;
     @NotBlank(message = "Notes/recommendations can not be blank")
     String content;
+    // set by the service on creation, notes written before this field existed have none
+    Instant createdAt;
+    // incremented on every update, an update or deletion sent with the version it read fails if the note changed since
+    @Version
+    Long version;
+
+    public Note(String id, Integer patId, String content) {
+        this.id = id;
+        this.patId = patId;
+        this.content = content;
+    }
 }
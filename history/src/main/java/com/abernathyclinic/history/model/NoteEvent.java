@@ -0,0 +1,32 @@
+package com.abernathyclinic.history.model;
+
+import com.abernathyclinic.history.constants.NoteEventType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Change of a note, recorded in an outbox collection when the note is written and read back as the change feed.
+ * Events are numbered by a sequence, which orders them and is the token a consumer resumes from.
+ * Only ids are published: consumers read the note itself when they need its content, it may have changed since.
+ * A note moved from one patient to another keeps its former patient in previousPatId.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "note_events")
+public class NoteEvent {
+    @Id
+    Long seq;
+    NoteEventType type;
+    String noteId;
+    Integer patId;
+    Integer previousPatId;
+    Instant at;
+}
@@ -0,0 +1,30 @@
+package com.abernathyclinic.history.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Digest of a patient history, kept up to date on every note change so that the risk of a patient can be assessed
+ * without downloading all their notes.
+ * For each trigger, the number of notes containing it is stored, a trigger being present as long as this count is
+ * positive. Counts are needed to know whether a trigger is still present when one of the notes is updated or deleted.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "patient_summaries")
+public class PatientSummary {
+    @Id
+    Integer patId;
+    Map<String, Integer> triggerNoteCounts;
+    long noteCount;
+    Instant lastModified;
+}
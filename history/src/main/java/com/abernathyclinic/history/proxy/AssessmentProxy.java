@@ -0,0 +1,11 @@
+package com.abernathyclinic.history.proxy;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+
+@FeignClient(name = "assessments", url = "${assessments.url}")
+public interface AssessmentProxy {
+    @PostMapping("/assess/invalidate/{patientId}")
+    void invalidateAssessment(@PathVariable("patientId") Integer patientId);
+}
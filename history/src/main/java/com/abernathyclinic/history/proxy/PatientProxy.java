@@ -1,12 +1,20 @@
 package com.abernathyclinic.history.proxy;
 
+import com.abernathyclinic.history.bean.PatientBatchBean;
 import com.abernathyclinic.history.bean.PatientBean;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.Collection;
 
 @FeignClient(name = "patients", url = "${patients.url}")
 public interface PatientProxy {
     @GetMapping("/patient/{id}")
     PatientBean getPatientById(@PathVariable("id") Integer id);
+
+    @PostMapping("/patient/batch")
+    PatientBatchBean getPatientsByIds(@RequestBody Collection<Integer> ids);
 }
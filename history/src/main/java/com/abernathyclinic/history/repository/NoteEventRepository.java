@@ -0,0 +1,23 @@
+package com.abernathyclinic.history.repository;
+
+import com.abernathyclinic.history.model.NoteEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface NoteEventRepository extends MongoRepository<NoteEvent, Long> {
+    Slice<NoteEvent> findAllBySeqGreaterThanAndAtBeforeOrderBySeqAsc(long after, Instant before, Pageable pageable);
+
+    // events of notes written for the patient or moved away from them
+    @Query(value = "{ '_id': { '$gt': ?0 }, 'at': { '$lt': ?1 }, '$or': [ { 'patId': ?2 }, { 'previousPatId': ?2 } ] }",
+            sort = "{ '_id': 1 }")
+    Slice<NoteEvent> findAllForPatient(long after, Instant before, Integer patId, Pageable pageable);
+
+    Optional<NoteEvent> findFirstByOrderBySeqAsc();
+}
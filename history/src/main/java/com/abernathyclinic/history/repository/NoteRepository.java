@@ -1,12 +1,32 @@
 package com.abernathyclinic.history.repository;
 
 import com.abernathyclinic.history.model.Note;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface NoteRepository extends MongoRepository<Note, String> {
+    // oldest note first, served by the patId_createdAt index declared in IndexService
+    @Query(value = "{ 'patId': ?0 }", sort = "{ 'createdAt': 1, '_id': 1 }")
     List<Note> findAllByPatId(Integer patId);
+
+    // only the content of each note is read from the database and sent over the network
+    @Query(value = "{ 'patId': ?0 }", fields = "{ 'content': 1, '_id': 0 }", sort = "{ 'createdAt': 1, '_id': 1 }")
+    List<Note> findContentsByPatId(Integer patId);
+
+    List<Note> findAllByPatIdIn(Collection<Integer> patIds);
+
+    Slice<Note> findAllByOrderByIdAsc(Pageable pageable);
+
+    Slice<Note> findAllByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    // backed by a cursor, the stream must be closed
+    Stream<Note> streamAllByOrderByIdAsc();
 }
@@ -0,0 +1,94 @@
+package com.abernathyclinic.history.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps a version number per patient history, incremented whenever one of the patient's notes is written or the
+ * patient is created or deleted. It is the ETag of every representation of the history, so that a client holding an
+ * up-to-date copy gets a 304 without the notes being read.
+ * Note writes are also counted while in progress, so that a patient summary built from the notes is only kept if no
+ * write overlapped the build.
+ */
+@Service
+@Slf4j
+public class HistoryVersionService {
+    static final String COLLECTION = "history_versions";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Gets the version of a patient history. It must be read before the history itself: a write in between then only
+     * makes the client download the history again on next request.
+     *
+     * @param patientId ID of patient
+     * @return version, 0 if the history never changed since versions are kept
+     */
+    public long getVersion(Integer patientId) {
+        return version(mongoTemplate.findById(patientId, Document.class, COLLECTION));
+    }
+
+    /**
+     * Gets the version of a patient history if none of its notes is being written.
+     *
+     * @param patientId ID of patient
+     * @return version, null while a write started by {@link #startWrite(Integer)} is not finished
+     */
+    public Long getSettledVersion(Integer patientId) {
+        Document version = mongoTemplate.findById(patientId, Document.class, COLLECTION);
+        Number   writes  = version == null ? null : version.get("writes", Number.class);
+        // a count which went wrong after a failure stays unsettled, summaries are then built on every request
+        return writes == null || writes.longValue() == 0 ? version(version) : null;
+    }
+
+    /**
+     * Increments the version of a patient history, to be called once the change is written.
+     *
+     * @param patientId ID of patient whose history changed
+     */
+    public void increment(Integer patientId) {
+        update(patientId, new Update().inc("version", 1L));
+    }
+
+    /**
+     * Counts a write of a patient history as in progress, to be called before the notes are written and followed by
+     * {@link #finishWrite(Integer)} whether the write succeeds or not.
+     *
+     * @param patientId ID of patient whose history is written
+     */
+    public void startWrite(Integer patientId) {
+        update(patientId, new Update().inc("writes", 1L));
+    }
+
+    /**
+     * Counts a write started by {@link #startWrite(Integer)} as over and increments the version of the history.
+     *
+     * @param patientId ID of patient whose history was written
+     */
+    public void finishWrite(Integer patientId) {
+        update(patientId, new Update().inc("version", 1L).inc("writes", -1L));
+    }
+
+    private void update(Integer patientId, Update update) {
+        try {
+            mongoTemplate.upsert(query(where("_id").is(patientId)), update, COLLECTION);
+        } catch (DataAccessException exception) {
+            // clients holding the previous version keep it until the next change of this history
+            log.error("Could not update history version of patient " + patientId, exception);
+        }
+    }
+
+    private static long version(Document version) {
+        Number number = version == null ? null : version.get("version", Number.class);
+        return number == null ? 0 : number.longValue();
+    }
+}
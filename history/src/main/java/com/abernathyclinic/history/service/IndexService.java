@@ -0,0 +1,153 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.IndexUsage;
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.NoteEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Declares the indexes the queries of the history microservice rely on, checks that they exist and reports how much
+ * every index of the collections is used.
+ */
+@Service
+@Slf4j
+public class IndexService {
+    /**
+     * Indexes needed by repository queries. patId_createdAt serves queries on patId alone as well, being its prefix:
+     * patient history, bulk histories and note counts. content_text serves note search: French stemming and stop
+     * words, case and diacritics insensitive. at_ttl expires change feed events.
+     */
+    static final List<RequiredIndex> REQUIRED_INDEXES = List.of(
+            new RequiredIndex(Note.class, new Index()
+                    .on("patId", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.ASC)
+                    .named("patId_createdAt")),
+            new RequiredIndex(Note.class, new TextIndexDefinition.TextIndexDefinitionBuilder()
+                    .onField("content")
+                    .withDefaultLanguage(NoteSearchService.LANGUAGE)
+                    .named("content_text")
+                    .build()),
+            new RequiredIndex(NoteEvent.class, new Index()
+                    .on("at", Sort.Direction.ASC)
+                    .expire(NoteEventService.RETENTION)
+                    .named("at_ttl"))
+    );
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Checks that every required index exists, creating the missing ones if asked to.
+     *
+     * @param createMissing whether missing indexes should be created
+     * @return names of the required indexes which are still missing
+     */
+    public List<String> checkIndexes(boolean createMissing) {
+        List<String> missing = new ArrayList<>();
+        for (RequiredIndex required : REQUIRED_INDEXES) {
+            IndexOperations indexOperations = mongoTemplate.indexOps(required.entityClass());
+            if (isPresent(required.index(), indexOperations.getIndexInfo())) {
+                continue;
+            }
+            if (createMissing) {
+                indexOperations.ensureIndex(required.index());
+                log.info("Index " + required.getName() + " created on " + getCollection(required));
+            } else {
+                missing.add(getCollection(required) + "." + required.getName());
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Lists the indexes of the collections having required indexes, with their usage statistics.
+     * Required indexes which do not exist are listed too, as not present.
+     *
+     * @return indexes grouped by collection
+     */
+    public List<IndexUsage> getIndexUsage() {
+        Map<String, List<RequiredIndex>> requiredByCollection = REQUIRED_INDEXES.stream()
+                .collect(Collectors.groupingBy(this::getCollection, LinkedHashMap::new, Collectors.toList()));
+        List<IndexUsage> usages = new ArrayList<>();
+        requiredByCollection.forEach((collection, requiredIndexes) -> {
+            Map<String, Document> statistics = getStatistics(collection);
+            List<IndexInfo> indexInfos = mongoTemplate.indexOps(collection).getIndexInfo();
+            for (IndexInfo indexInfo : indexInfos) {
+                boolean required = requiredIndexes.stream().anyMatch(index -> matches(index.index(), indexInfo));
+                Document accesses = statistics.getOrDefault(indexInfo.getName(), new Document());
+                usages.add(new IndexUsage(collection, indexInfo.getName(), getKeys(indexInfo), required, true,
+                        accesses.get("ops") instanceof Number ops ? ops.longValue() : null,
+                        accesses.getDate("since") != null ? accesses.getDate("since").toInstant() : null));
+            }
+            requiredIndexes.stream()
+                    .filter(required -> !isPresent(required.index(), indexInfos))
+                    .forEach(required -> usages.add(new IndexUsage(collection, required.getName(),
+                            new LinkedHashMap<>(required.index().getIndexKeys()), true, false, null, null)));
+        });
+        return usages;
+    }
+
+    private Map<String, Document> getStatistics(String collection) {
+        // accesses of every index since server start, by index name
+        Map<String, Document> statistics = new HashMap<>();
+        mongoTemplate.getCollection(collection)
+                .aggregate(List.of(new Document("$indexStats", new Document())))
+                .forEach(indexStats -> statistics.put(indexStats.getString("name"),
+                        indexStats.get("accesses", Document.class)));
+        return statistics;
+    }
+
+    private boolean isPresent(IndexDefinition index, List<IndexInfo> indexInfos) {
+        return indexInfos.stream().anyMatch(indexInfo -> matches(index, indexInfo));
+    }
+
+    private boolean matches(IndexDefinition index, IndexInfo indexInfo) {
+        // an index created by hand under another name is just as good, as long as its keys come in the same order
+        String name = index.getIndexOptions().getString("name");
+        return indexInfo.getName().equals(name)
+                || List.copyOf(getKeys(indexInfo).entrySet()).equals(List.copyOf(index.getIndexKeys().entrySet()));
+    }
+
+    private Map<String, Object> getKeys(IndexInfo indexInfo) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (IndexField field : indexInfo.getIndexFields()) {
+            // text indexes are keyed by field name like the declared definition, not by their internal _fts keys
+            keys.put(field.getKey(), field.isText() ? "text" : field.getDirection() == Sort.Direction.DESC ? -1 : 1);
+        }
+        return keys;
+    }
+
+    private String getCollection(RequiredIndex required) {
+        return mongoTemplate.getCollectionName(required.entityClass());
+    }
+
+    /**
+     * Index a query relies on.
+     *
+     * @param entityClass document class, which determines the collection
+     * @param index       index definition, which must be named
+     */
+    record RequiredIndex(Class<?> entityClass, IndexDefinition index) {
+        String getName() {
+            return index.getIndexOptions().getString("name");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.constants.NoteEventType;
+import com.abernathyclinic.history.exception.ChangeFeedExpiredException;
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.NoteEvent;
+import com.abernathyclinic.history.repository.NoteEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Records note changes in the note_events outbox collection and serves them as an ordered, resumable change feed.
+ * Events are numbered by a counter incremented atomically, so that their order is the same for every consumer. Their
+ * time is read from the clock of the instance which records them, so the clocks of history instances must stay well
+ * within history.changes.settle-delay of each other. Events expire after {@link #RETENTION}, through the at_ttl index
+ * declared in IndexService.
+ */
+@Service
+@Slf4j
+public class NoteEventService {
+    /** How long events are kept, a consumer which stopped for longer must read all notes again. */
+    static final Duration RETENTION = Duration.ofDays(7);
+    static final String COUNTERS_COLLECTION = "counters";
+    static final String COUNTER_ID = "note_events";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private NoteEventRepository noteEventRepository;
+    @Value("${history.changes.max-page-size:1000}")
+    private int maxPageSize;
+    @Value("${history.changes.settle-delay:2s}")
+    private Duration settleDelay;
+
+    public void noteCreated(Note note) {
+        record(List.of(new NoteEvent(null, NoteEventType.CREATED, note.getId(), note.getPatId(), null, null)));
+    }
+
+    public void notesCreated(Collection<Note> notes) {
+        record(notes.stream()
+                .map(note -> new NoteEvent(null, NoteEventType.CREATED, note.getId(), note.getPatId(), null, null))
+                .toList());
+    }
+
+    public void noteUpdated(Note previousNote, Note updatedNote) {
+        Integer previousPatId = previousNote.getPatId().equals(updatedNote.getPatId()) ? null : previousNote.getPatId();
+        record(List.of(new NoteEvent(null, NoteEventType.UPDATED, updatedNote.getId(), updatedNote.getPatId(),
+                previousPatId, null)));
+    }
+
+    public void noteDeleted(Note note) {
+        record(List.of(new NoteEvent(null, NoteEventType.DELETED, note.getId(), note.getPatId(), null, null)));
+    }
+
+    /**
+     * Gets the events following a given one, oldest first.
+     * Events younger than history.changes.settle-delay are held back: a sequence number is taken before its event is
+     * written, so a concurrent writer may still be about to write an event numbered below the last one visible.
+     *
+     * @param after     sequence number of the last event already processed, 0 to start from the oldest event kept
+     * @param patientId id of the patient whose notes changed, null for all patients
+     * @param size      number of events per page, capped by history.changes.max-page-size
+     * @return a page of events
+     * @throws ChangeFeedExpiredException if events following the given one expired
+     */
+    public Slice<NoteEvent> getChanges(long after, Integer patientId, int size) {
+        Assert.isTrue(after >= 0, "The sequence number should not be negative");
+        Assert.isTrue(size > 0, "The page size should be positive");
+        Pageable page = PageRequest.of(0, Math.min(size, maxPageSize));
+        Instant before = Instant.now().minus(settleDelay);
+        Slice<NoteEvent> events = patientId == null
+                ? noteEventRepository.findAllBySeqGreaterThanAndAtBeforeOrderBySeqAsc(after, before, page)
+                : noteEventRepository.findAllForPatient(after, before, patientId, page);
+        if (after > 0) {
+            // checked once the page is read: an event expiring in between can not go unnoticed
+            Optional<NoteEvent> oldest = noteEventRepository.findFirstByOrderBySeqAsc();
+            if (oldest.isPresent() && oldest.get().getSeq() > after + 1) {
+                throw new ChangeFeedExpiredException("Events following " + after + " expired, the oldest event kept is "
+                        + oldest.get().getSeq() + ": notes must be read again from GET /patHistory/stream");
+            }
+            // no event kept at all: events were numbered after the given one if the counter went past it
+            if (oldest.isEmpty()) {
+                long last = lastSequence();
+                if (last > after) {
+                    throw new ChangeFeedExpiredException("Events following " + after + " expired up to " + last
+                            + ": notes must be read again from GET /patHistory/stream");
+                }
+            }
+        }
+        return events;
+    }
+
+    private void record(List<NoteEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        // the note is already saved and there is no transaction to undo it: a lost event is logged to be replayed by
+        // hand rather than failing a write which succeeded
+        try {
+            long seq = nextSequence(events.size());
+            Instant now = Instant.now();
+            List<NoteEvent> numbered = new ArrayList<>(events.size());
+            for (NoteEvent event : events) {
+                event.setSeq(seq++);
+                event.setAt(now);
+                numbered.add(event);
+            }
+            noteEventRepository.insert(numbered);
+        } catch (DataAccessException exception) {
+            log.error("Could not record " + events.size() + " note events, first one: " + events.get(0).getType()
+                    + " of note " + events.get(0).getNoteId(), exception);
+        }
+    }
+
+    /**
+     * @return last sequence number reserved, 0 if no event was ever recorded
+     */
+    private long lastSequence() {
+        Document counter = mongoTemplate.findById(COUNTER_ID, Document.class, COUNTERS_COLLECTION);
+        return counter == null ? 0 : counter.get("seq", Number.class).longValue();
+    }
+
+    /**
+     * @return first of count consecutive sequence numbers reserved for the caller
+     */
+    private long nextSequence(int count) {
+        Document counter = mongoTemplate.findAndModify(query(where("_id").is(COUNTER_ID)),
+                new Update().inc("seq", (long) count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class, COUNTERS_COLLECTION);
+        return counter.get("seq", Number.class).longValue() - count + 1;
+    }
+}
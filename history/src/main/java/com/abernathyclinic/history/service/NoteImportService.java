@@ -0,0 +1,220 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.ImportFailure;
+import com.abernathyclinic.history.bean.ImportReport;
+import com.abernathyclinic.history.model.Note;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports notes in bulk, e.g. the history of a clinic moving from another system.
+ * Notes are read one line at a time and written by batches of unordered inserts, so that one invalid note does not
+ * stop the others. Each patient is checked once per import, whatever the number of notes.
+ */
+@Service
+@Slf4j
+public class NoteImportService {
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private PatientExistenceService patientExistenceService;
+    @Autowired
+    private NoteService noteService;
+    @Autowired
+    private PatientSummaryService patientSummaryService;
+    @Autowired
+    private NoteEventService noteEventService;
+    @Autowired
+    private HistoryVersionService historyVersionService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private Validator validator;
+    @Value("${history.import.batch-size:1000}")
+    private int batchSize;
+    @Value("${history.import.max-reported-failures:1000}")
+    private int maxReportedFailures;
+
+    /**
+     * Imports notes written as newline-delimited JSON, one note per line. Blank lines are ignored.
+     *
+     * @param input notes to import
+     * @return number of notes imported and lines which could not be imported
+     * @throws IOException if the input can not be read
+     */
+    public ImportReport importNotes(InputStream input) throws IOException {
+        ImportReport report = new ImportReport();
+        // patient existence by ID, checked the first time a patient is met
+        Map<Integer, Boolean> knownPatients = new HashMap<>();
+        List<PendingNote> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.setReceived(report.getReceived() + 1);
+                PendingNote pending = parse(lineNumber, line, report);
+                if (pending != null) {
+                    batch.add(pending);
+                }
+                if (batch.size() == batchSize) {
+                    importBatch(batch, knownPatients, report);
+                    batch.clear();
+                }
+            }
+        }
+        importBatch(batch, knownPatients, report);
+        log.info("Import done: " + report.getImported() + " notes imported, " + report.getFailed() + " failed");
+        return report;
+    }
+
+    private PendingNote parse(long lineNumber, String line, ImportReport report) {
+        Note note;
+        try {
+            note = objectMapper.readValue(line, Note.class);
+        } catch (JsonProcessingException exception) {
+            fail(report, lineNumber, null, "Invalid JSON: " + exception.getOriginalMessage());
+            return null;
+        }
+        Set<ConstraintViolation<Note>> violations = validator.validate(note);
+        if (!violations.isEmpty()) {
+            fail(report, lineNumber, note.getPatId(), violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+        return new PendingNote(lineNumber, note);
+    }
+
+    private void importBatch(List<PendingNote> batch, Map<Integer, Boolean> knownPatients, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        knownPatients.putAll(patientsExist(batch.stream()
+                .map(pending -> pending.note().getPatId())
+                .distinct()
+                .filter(patientId -> !knownPatients.containsKey(patientId))
+                .toList()));
+
+        List<PendingNote> toInsert = new ArrayList<>(batch.size());
+        for (PendingNote pending : batch) {
+            Boolean exists = knownPatients.get(pending.note().getPatId());
+            if (exists == null) {
+                fail(report, pending.line(), pending.note().getPatId(),
+                        "Patient with ID " + pending.note().getPatId() + " could not be checked");
+            } else if (!exists) {
+                fail(report, pending.line(), pending.note().getPatId(),
+                        "Patient with ID " + pending.note().getPatId() + " was not found");
+            } else {
+                // migrated notes keep their date, so that histories keep their chronology
+                if (pending.note().getCreatedAt() == null) {
+                    pending.note().setCreatedAt(Instant.now());
+                }
+                // bulk inserts do not report generated ids, the change feed needs them
+                if (pending.note().getId() == null) {
+                    pending.note().setId(new ObjectId().toHexString());
+                }
+                toInsert.add(pending);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> writtenPatients = new LinkedHashSet<>();
+        toInsert.forEach(pending -> writtenPatients.add(pending.note().getPatId()));
+        writtenPatients.forEach(historyVersionService::startWrite);
+        Set<Integer> changedPatients = new LinkedHashSet<>();
+        try {
+            Set<Integer> failedIndexes = new LinkedHashSet<>();
+            BulkOperations insert = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)
+                    .insert(toInsert.stream().map(PendingNote::note).toList());
+            try {
+                insert.execute();
+            } catch (BulkOperationException exception) {
+                // unordered: every note was attempted, only the ones in error are missing
+                for (BulkWriteError error : exception.getErrors()) {
+                    PendingNote pending = toInsert.get(error.getIndex());
+                    failedIndexes.add(error.getIndex());
+                    fail(report, pending.line(), pending.note().getPatId(), error.getMessage());
+                }
+            }
+            List<Note> inserted = new ArrayList<>(toInsert.size());
+            for (int index = 0; index < toInsert.size(); index++) {
+                if (!failedIndexes.contains(index)) {
+                    inserted.add(toInsert.get(index).note());
+                    changedPatients.add(toInsert.get(index).note().getPatId());
+                }
+            }
+            report.setImported(report.getImported() + toInsert.size() - failedIndexes.size());
+
+            // rebuilding a summary on next read is cheaper than one update per imported note
+            patientSummaryService.invalidate(changedPatients);
+            noteEventService.notesCreated(inserted);
+        } finally {
+            writtenPatients.forEach(patientId -> {
+                if (changedPatients.contains(patientId)) {
+                    noteService.notifyHistoryChanged(patientId);
+                } else {
+                    historyVersionService.finishWrite(patientId);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return whether each patient exists, null for every patient if they could not be checked
+     */
+    private Map<Integer, Boolean> patientsExist(List<Integer> patientIds) {
+        if (patientIds.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return patientExistenceService.exists(patientIds);
+        } catch (RuntimeException exception) {
+            log.warn("Could not check patients " + patientIds + ": " + exception.getMessage());
+            Map<Integer, Boolean> unchecked = new HashMap<>();
+            patientIds.forEach(patientId -> unchecked.put(patientId, null));
+            return unchecked;
+        }
+    }
+
+    private void fail(ImportReport report, long line, Integer patientId, String reason) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getFailures().size() < maxReportedFailures) {
+            report.getFailures().add(new ImportFailure(line, patientId, reason));
+        }
+    }
+
+    private record PendingNote(long line, Note note) {
+    }
+}
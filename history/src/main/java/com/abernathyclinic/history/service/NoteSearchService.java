@@ -0,0 +1,66 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.NoteSearchHit;
+import com.abernathyclinic.history.model.Note;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * Searches notes through the content_text index declared in IndexService.
+ * Terms are stemmed the French way and matched regardless of case and diacritics, so that "diabétique" also finds
+ * "Diabetiques". Quoted phrases must appear as is and terms prefixed by a minus sign must not appear.
+ */
+@Service
+public class NoteSearchService {
+    /** Language of the notes, used for stemming and stop words both when indexing and when searching. */
+    static final String LANGUAGE = "french";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Value("${history.search.max-page-size:100}")
+    private int maxPageSize;
+    @Value("${history.search.max-page:100}")
+    private int maxPage;
+
+    /**
+     * Searches notes, most relevant first.
+     *
+     * @param terms     searched terms, in MongoDB text search syntax
+     * @param patientId id of the patient the notes must belong to, null for all patients
+     * @param page      page number, from 0
+     * @param size      number of notes per page, capped by history.search.max-page-size
+     * @return a page of matching notes with their score
+     */
+    public Slice<NoteSearchHit> search(String terms, Integer patientId, int page, int size) {
+        Assert.isTrue(terms != null && !terms.isBlank(), "The searched terms should not be empty");
+        Assert.isTrue(page >= 0 && page <= maxPage, "The page number should be between 0 and " + maxPage);
+        Assert.isTrue(size > 0, "The page size should be positive");
+        Pageable pageable = PageRequest.of(page, Math.min(size, maxPageSize));
+
+        TextQuery query = TextQuery.queryText(TextCriteria.forLanguage(LANGUAGE).matching(terms));
+        if (patientId != null) {
+            query.addCriteria(Criteria.where("patId").is(patientId));
+        }
+        // ranking needs every match to be scored, deep pages cost as much as the first ones: they are capped by
+        // history.search.max-page. One more note is read to know whether another page follows, without counting.
+        query.sortByScore()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1);
+        List<NoteSearchHit> hits = mongoTemplate.find(query, NoteSearchHit.class,
+                mongoTemplate.getCollectionName(Note.class));
+        boolean hasNext = hits.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? hits.subList(0, pageable.getPageSize()) : hits, pageable, hasNext);
+    }
+}
@@ -2,32 +2,80 @@ package com.abernathyclinic.history.service;
 
 import com.abernathyclinic.history.exception.NoteNotFoundException;
 import com.abernathyclinic.history.exception.PatientNotFoundException;
+import com.abernathyclinic.history.exception.VersionConflictException;
 import com.abernathyclinic.history.model.Note;
-import com.abernathyclinic.history.proxy.PatientProxy;
+import com.abernathyclinic.history.proxy.AssessmentProxy;
 import com.abernathyclinic.history.repository.NoteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @Service
+@Slf4j
 public class NoteService {
-    PatientProxy patientProxy;
+    PatientExistenceService patientExistenceService;
 
     @Autowired
     private NoteRepository noteRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private AssessmentProxy assessmentProxy;
+    @Autowired
+    private PatientSummaryService patientSummaryService;
+    @Autowired
+    private NoteEventService noteEventService;
+    @Autowired
+    private HistoryVersionService historyVersionService;
+    @Value("${history.notes.max-page-size:1000}")
+    private int maxPageSize;
 
-    public NoteService(PatientProxy patientProxy) {
-        this.patientProxy = patientProxy;
+    public NoteService(PatientExistenceService patientExistenceService) {
+        this.patientExistenceService = patientExistenceService;
     }
 
     private final String genericNotEmptyIDMessage = "The provided ID should not be empty";
 
     public Note createNote(Note note) {
         if (patientExists(note.getPatId())) {
-            return noteRepository.insert(note);
+            historyVersionService.startWrite(note.getPatId());
+            Note created = null;
+            try {
+                note.setCreatedAt(Instant.now());
+                created = noteRepository.insert(note);
+                patientSummaryService.noteCreated(created);
+                noteEventService.noteCreated(created);
+                return created;
+            } finally {
+                endWrite(note.getPatId(), created != null);
+            }
         }
         throw new PatientNotFoundException("Patient with the provided ID " + note.getPatId() + " was not found");
     }
@@ -40,8 +88,61 @@ public class NoteService {
         throw new PatientNotFoundException("Patient with the provided ID " + patientId + " was not found");
     }
 
-    public List<Note> getNotes() {
-        return noteRepository.findAll();
+    public List<String> getPatientNoteContents(Integer patientId) {
+        Assert.notNull(patientId, genericNotEmptyIDMessage);
+        if (patientExists(patientId)) {
+            return noteRepository.findContentsByPatId(patientId).stream().map(Note::getContent).toList();
+        }
+        throw new PatientNotFoundException("Patient with the provided ID " + patientId + " was not found");
+    }
+
+    public Map<Integer, Long> countPatientsNotes(Collection<Integer> patientIds) {
+        // one aggregation grouping the patId_createdAt index entries, no document is read; unknown IDs count 0
+        Assert.notNull(patientIds, "The provided IDs should not be empty");
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        patientIds.stream()
+                .filter(Objects::nonNull)
+                .forEach(patientId -> counts.put(patientId, 0L));
+        if (counts.isEmpty()) {
+            return counts;
+        }
+        Aggregation aggregation = newAggregation(
+                match(where("patId").in(counts.keySet())),
+                group("patId").count().as("count"));
+        mongoTemplate.aggregate(aggregation, Note.class, Document.class)
+                .forEach(count -> counts.put(count.getInteger("_id"), count.get("count", Number.class).longValue()));
+        return counts;
+    }
+
+    public Map<Integer, List<Note>> getPatientsHistories(Collection<Integer> patientIds) {
+        // one query for all patients, no per patient existence check: an unknown ID just gets an empty history
+        Assert.notNull(patientIds, "The provided IDs should not be empty");
+        Map<Integer, List<Note>> histories = new LinkedHashMap<>();
+        patientIds.stream()
+                .filter(Objects::nonNull)
+                .forEach(patientId -> histories.put(patientId, new ArrayList<>()));
+        if (histories.isEmpty()) {
+            return histories;
+        }
+        noteRepository.findAllByPatIdIn(histories.keySet())
+                .forEach(note -> histories.get(note.getPatId()).add(note));
+        return histories;
+    }
+
+    public Slice<Note> getNotes(String after, int size) {
+        // keyset pagination on _id: a page is read from the index wherever it is, and inserts do not shift pages
+        Assert.isTrue(size > 0, "The page size should be positive");
+        Pageable page = PageRequest.of(0, Math.min(size, maxPageSize));
+        if (after == null || after.isBlank()) {
+            return noteRepository.findAllByOrderByIdAsc(page);
+        }
+        // any other string is compared as a string to the ObjectIds and always gives an empty page
+        Assert.isTrue(ObjectId.isValid(after), "The cursor should be the id of a note");
+        return noteRepository.findAllByIdGreaterThanOrderByIdAsc(after, page);
+    }
+
+    public Stream<Note> streamNotes() {
+        return noteRepository.streamAllByOrderByIdAsc();
     }
 
     public Optional<Note> getNoteById(String noteId) {
@@ -50,24 +151,104 @@ public class NoteService {
     }
 
     public Note updateNote(Note note) {
-        if (noteRepository.findById(note.getId()).isEmpty()) {
-            throw new NoteNotFoundException("Note with the given ID " + note.getId() + " was not found.");
+        Assert.notNull(note.getId(), genericNotEmptyIDMessage);
+        if (!patientExists(note.getPatId())) {
+            throw new PatientNotFoundException("Patient with the provided ID " + note.getPatId() + " was not found");
         }
-        if (patientExists(note.getPatId())) {
-            return noteRepository.save(note);
+        historyVersionService.startWrite(note.getPatId());
+        Note previous = null;
+        try {
+            // one round trip: the filter holds the version read by the client, if any, and the note as it was before
+            // the update is returned for the summary and the change feed
+            Update update = new Update()
+                    .set("patId", note.getPatId())
+                    .set("content", note.getContent())
+                    .inc("version", 1);
+            previous = mongoTemplate.findAndModify(byIdAndVersion(note.getId(), note.getVersion()), update, Note.class);
+            if (previous == null) {
+                throw notFoundOrConflict(note.getId(), note.getVersion());
+            }
+            // creation time is not part of the form, the stored one is kept
+            Note updated = new Note(previous.getId(), note.getPatId(), note.getContent(), previous.getCreatedAt(),
+                    previous.getVersion() == null ? 1 : previous.getVersion() + 1);
+            // the note may have been moved from another patient, whose write could only start once the note was read
+            boolean moved = !previous.getPatId().equals(updated.getPatId());
+            if (moved) {
+                historyVersionService.startWrite(previous.getPatId());
+            }
+            try {
+                patientSummaryService.noteUpdated(previous, updated);
+                noteEventService.noteUpdated(previous, updated);
+            } finally {
+                if (moved) {
+                    notifyHistoryChanged(previous.getPatId());
+                }
+            }
+            return updated;
+        } finally {
+            endWrite(note.getPatId(), previous != null);
         }
-        throw new PatientNotFoundException("Patient with the provided ID " + note.getPatId() + " was not found");
     }
 
-    public void deleteNoteById(String noteId) {
+    public void deleteNoteById(String noteId, Long version) {
         Assert.notNull(noteId, genericNotEmptyIDMessage);
-        if (noteRepository.findById(noteId).isEmpty()) {
-            throw new NoteNotFoundException("Note with the given ID " + noteId + " was not found.");
+        Note deleted = mongoTemplate.findAndRemove(byIdAndVersion(noteId, version), Note.class);
+        if (deleted == null) {
+            throw notFoundOrConflict(noteId, version);
+        }
+        // the patient is only known once the note is deleted, the summary is dropped rather than decremented
+        historyVersionService.startWrite(deleted.getPatId());
+        try {
+            patientSummaryService.noteDeleted(deleted);
+            noteEventService.noteDeleted(deleted);
+        } finally {
+            notifyHistoryChanged(deleted.getPatId());
+        }
+    }
+
+    private void endWrite(Integer patientId, boolean written) {
+        if (written) {
+            notifyHistoryChanged(patientId);
+        } else {
+            historyVersionService.finishWrite(patientId);
+        }
+    }
+
+    /**
+     * Ends a write of a patient history started with {@link HistoryVersionService#startWrite(Integer)}, and tells the
+     * assessments microservice that the risk of the patient may have changed.
+     *
+     * @param patientId ID of patient whose history was written
+     */
+    void notifyHistoryChanged(Integer patientId) {
+        historyVersionService.finishWrite(patientId);
+        // the note is already saved, an unreachable assessments microservice only delays the refresh until cache expiry
+        try {
+            assessmentProxy.invalidateAssessment(patientId);
+        } catch (RuntimeException exception) {
+            log.warn("Could not invalidate risk assessment of patient " + patientId + ": " + exception.getMessage());
+        }
+    }
+
+    private Query byIdAndVersion(String noteId, Long version) {
+        // without a version, the write applies to whatever version is stored
+        Query query = query(where("_id").is(noteId));
+        if (version != null) {
+            query.addCriteria(where("version").is(version));
+        }
+        return query;
+    }
+
+    private RuntimeException notFoundOrConflict(String noteId, Long version) {
+        // only read when the write matched nothing, to tell the client why
+        if (version != null && mongoTemplate.exists(query(where("_id").is(noteId)), Note.class)) {
+            return new VersionConflictException("Note with the given ID " + noteId + " is no longer at version "
+                    + version + ", it was changed since it was read.");
         }
-        noteRepository.deleteById(noteId);
+        return new NoteNotFoundException("Note with the given ID " + noteId + " was not found.");
     }
 
     private boolean patientExists(Integer patientId) {
-        return patientProxy.getPatientById(patientId) != null;
+        return patientExistenceService.exists(patientId);
     }
 }
@@ -0,0 +1,82 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.PatientBatchBean;
+import com.abernathyclinic.history.proxy.PatientProxy;
+import com.github.benmanes.caffeine.cache.Cache;
+import feign.FeignException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells whether a patient exists, asking the patients microservice only when the answer is not cached.
+ * Both known and unknown patients are cached. The patients microservice notifies creations and deletions, and entries
+ * expire anyway in case a notification is lost.
+ */
+@Service
+public class PatientExistenceService {
+    @Autowired
+    private PatientProxy patientProxy;
+    @Autowired
+    private Cache<Integer, Boolean> patientExistenceCache;
+    @Value("${history.patient-cache.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Checks whether a patient exists.
+     *
+     * @param patientId ID of patient
+     * @return true if the patient exists
+     * @throws RuntimeException if the patients microservice could not answer, nothing is cached then
+     */
+    public boolean exists(Integer patientId) {
+        return patientExistenceCache.get(patientId, this::fetch);
+    }
+
+    /**
+     * Checks whether several patients exist, asking the patients microservice about the ones not cached with one call
+     * per history.patient-cache.batch-size patients. The answers of these calls are not cached: unlike a single load,
+     * a bulk load does not hold back the invalidation of a patient created or deleted meanwhile.
+     *
+     * @param patientIds IDs of patients
+     * @return whether each patient exists, by ID
+     * @throws RuntimeException if the patients microservice could not answer
+     */
+    public Map<Integer, Boolean> exists(Collection<Integer> patientIds) {
+        Map<Integer, Boolean> existing = new HashMap<>(patientExistenceCache.getAllPresent(patientIds));
+        existing.putAll(fetchAll(patientIds.stream().filter(patientId -> !existing.containsKey(patientId)).toList()));
+        return existing;
+    }
+
+    /**
+     * Forgets what is known about a patient, e.g. after the patient was created or deleted.
+     *
+     * @param patientId ID of patient
+     */
+    public void invalidate(Integer patientId) {
+        patientExistenceCache.invalidate(patientId);
+    }
+
+    private Map<Integer, Boolean> fetchAll(List<Integer> ids) {
+        Map<Integer, Boolean> existing = new HashMap<>(ids.size());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            PatientBatchBean batch = patientProxy.getPatientsByIds(ids.subList(from, Math.min(from + batchSize, ids.size())));
+            batch.getPatients().forEach(patient -> existing.put(patient.getId(), true));
+            batch.getMissingIds().forEach(patientId -> existing.put(patientId, false));
+        }
+        return existing;
+    }
+
+    private Boolean fetch(Integer patientId) {
+        try {
+            return patientProxy.getPatientById(patientId) != null;
+        } catch (FeignException.NotFound notFound) {
+            return false;
+        }
+    }
+}
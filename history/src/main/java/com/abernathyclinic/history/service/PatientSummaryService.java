@@ -0,0 +1,132 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.PatientSummary;
+import com.abernathyclinic.history.repository.NoteRepository;
+import com.abernathyclinic.history.util.TriggerMatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Maintains the trigger summary of every patient.
+ * Note changes are applied with atomic increments, so concurrent writes on the same patient can not lose an update.
+ * Increments never create a summary: a summary is only built from the full history the first time it is requested,
+ * which also covers notes written before summaries existed. A built summary is only kept if no note of the patient was
+ * being written while the history was read, as the increments of such a write may or may not be part of it.
+ */
+@Service
+@Slf4j
+public class PatientSummaryService {
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private TriggerMatcher triggerMatcher;
+    @Autowired
+    private HistoryVersionService historyVersionService;
+
+    /**
+     * Gets the summary of a patient history, building it on first request.
+     *
+     * @param patientId ID of patient
+     * @return summary, empty if the patient has no note
+     */
+    public PatientSummary getSummary(Integer patientId) {
+        Assert.notNull(patientId, "The provided ID should not be empty");
+        PatientSummary summary = mongoTemplate.findById(patientId, PatientSummary.class);
+        if (summary != null) {
+            return summary;
+        }
+        // read first: any write which is not entirely before this read or entirely after the check below moves it
+        Long version = historyVersionService.getSettledVersion(patientId);
+        summary = buildSummary(patientId, noteRepository.findAllByPatId(patientId));
+        if (summary.getNoteCount() == 0 || version == null) {
+            // nothing worth storing or a write in progress, the summary will be built again on next request
+            return summary;
+        }
+        try {
+            mongoTemplate.insert(summary);
+        } catch (DuplicateKeyException alreadyBuilt) {
+            return mongoTemplate.findById(patientId, PatientSummary.class);
+        }
+        if (!version.equals(historyVersionService.getSettledVersion(patientId))) {
+            log.warn("History of patient " + patientId + " changed while its summary was built, discarding it");
+            mongoTemplate.remove(query(where("_id").is(patientId)), PatientSummary.class);
+        }
+        return summary;
+    }
+
+    public void noteCreated(Note note) {
+        applyChange(note.getPatId(), triggerMatcher.findDistinct(note.getContent()), 1);
+    }
+
+    public void noteDeleted(Note note) {
+        // the patient is only known once the note is gone, so their write may start after a summary was built without
+        // the note: decrementing it could count the note out twice, it is built again instead
+        invalidate(List.of(note.getPatId()));
+    }
+
+    public void noteUpdated(Note previousNote, Note updatedNote) {
+        if (!previousNote.getPatId().equals(updatedNote.getPatId())) {
+            noteDeleted(previousNote);
+            noteCreated(updatedNote);
+            return;
+        }
+        Set<String> previousTriggers = triggerMatcher.findDistinct(previousNote.getContent());
+        Set<String> updatedTriggers  = triggerMatcher.findDistinct(updatedNote.getContent());
+        Update      update           = new Update().set("lastModified", Instant.now());
+        updatedTriggers.stream()
+                .filter(trigger -> !previousTriggers.contains(trigger))
+                .forEach(trigger -> update.inc(triggerField(trigger), 1));
+        previousTriggers.stream()
+                .filter(trigger -> !updatedTriggers.contains(trigger))
+                .forEach(trigger -> update.inc(triggerField(trigger), -1));
+        mongoTemplate.updateFirst(query(where("_id").is(updatedNote.getPatId())), update, PatientSummary.class);
+    }
+
+    /**
+     * Drops the summaries of patients whose history changed in bulk, they are built again on next request.
+     *
+     * @param patientIds IDs of patients
+     */
+    public void invalidate(Collection<Integer> patientIds) {
+        if (!patientIds.isEmpty()) {
+            mongoTemplate.remove(query(where("_id").in(patientIds)), PatientSummary.class);
+        }
+    }
+
+    PatientSummary buildSummary(Integer patientId, List<Note> notes) {
+        Map<String, Integer> triggerNoteCounts = new HashMap<>();
+        notes.forEach(note -> triggerMatcher.findDistinct(note.getContent())
+                .forEach(trigger -> triggerNoteCounts.merge(trigger, 1, Integer::sum)));
+        return new PatientSummary(patientId, triggerNoteCounts, notes.size(), Instant.now());
+    }
+
+    private void applyChange(Integer patientId, Set<String> triggers, int delta) {
+        Update update = new Update()
+                .inc("noteCount", delta)
+                .set("lastModified", Instant.now());
+        triggers.forEach(trigger -> update.inc(triggerField(trigger), delta));
+        mongoTemplate.updateFirst(query(where("_id").is(patientId)), update, PatientSummary.class);
+    }
+
+    private static String triggerField(String trigger) {
+        return "triggerNoteCounts." + trigger;
+    }
+}
@@ -0,0 +1,99 @@
+package com.abernathyclinic.history.util;
+
+import com.abernathyclinic.history.bean.SlowQuery;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mongo driver listener keeping the last commands slower than a threshold.
+ * The command document is only valid while the started event is handled, so its shape is copied at that time and
+ * dropped as soon as the command completes.
+ */
+@Slf4j
+public class SlowQueryListener implements CommandListener {
+    private final long threshold;
+    private final int capacity;
+    private final Map<Integer, CommandShape> runningCommands = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * @param threshold duration from which a command is reported as slow
+     * @param capacity  number of slow queries kept, older ones are discarded
+     */
+    public SlowQueryListener(Duration threshold, int capacity) {
+        this.threshold = threshold.toNanos();
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonValue collection = event.getCommand().get(event.getCommandName());
+        runningCommands.put(event.getRequestId(), new CommandShape(
+                collection != null && collection.isString() ? collection.asString().getValue() : null,
+                filterFields(event.getCommand())));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        CommandShape shape = runningCommands.remove(event.getRequestId());
+        long elapsed = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        if (shape == null || elapsed < threshold) {
+            return;
+        }
+        SlowQuery slowQuery = new SlowQuery(event.getCommandName(), shape.collection(), shape.filterFields(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), Instant.now());
+        log.warn("Slow " + slowQuery.getCommandName() + " on " + slowQuery.getCollection() + " filtering on "
+                + slowQuery.getFilterFields() + ": " + slowQuery.getDurationMillis() + " ms");
+        synchronized (slowQueries) {
+            if (slowQueries.size() == capacity) {
+                slowQueries.removeLast();
+            }
+            slowQueries.addFirst(slowQuery);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        runningCommands.remove(event.getRequestId());
+    }
+
+    /**
+     * Returns the slow queries recorded so far.
+     *
+     * @return slow queries, most recent first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    private static List<String> filterFields(BsonDocument command) {
+        // find has a filter, count a query, aggregate usually starts with a $match stage
+        BsonValue filter = command.get("filter", command.get("query"));
+        if (filter == null && command.get("pipeline") instanceof BsonArray pipeline && !pipeline.isEmpty()
+                && pipeline.get(0).isDocument()) {
+            filter = pipeline.get(0).asDocument().get("$match");
+        }
+        return filter != null && filter.isDocument() ? List.copyOf(filter.asDocument().keySet()) : List.of();
+    }
+
+    private record CommandShape(String collection, List<String> filterFields) {
+    }
+}
@@ -3,7 +3,8 @@ package com.abernathyclinic.history;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// no database in unit tests
+@SpringBootTest(properties = "history.indexes.check-on-startup=false")
 class HistoryApplicationTests {
 
 	@Test
@@ -0,0 +1,64 @@
+package com.abernathyclinic.history.controller;
+
+import com.abernathyclinic.history.bean.IndexUsage;
+import com.abernathyclinic.history.bean.SlowQuery;
+import com.abernathyclinic.history.service.IndexService;
+import com.abernathyclinic.history.util.SlowQueryListener;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(controllers = DiagnosticsController.class)
+class DiagnosticsControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    IndexService indexService;
+    @MockBean
+    SlowQueryListener slowQueryListener;
+
+    @Test
+    @DisplayName("GET /diagnostics/indexes returns index usage")
+    void getIndexUsage() throws Exception {
+        when(indexService.getIndexUsage()).thenReturn(List.of(new IndexUsage("abernathy_clinic", "patId_createdAt",
+                Map.of("patId", 1, "createdAt", 1), true, true, 12L, Instant.now())));
+
+        mockMvc.perform(get("/diagnostics/indexes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("patId_createdAt")))
+                .andExpect(jsonPath("$[0].required", is(true)))
+                .andExpect(jsonPath("$[0].accesses", is(12)));
+    }
+
+    @Test
+    @DisplayName("GET /diagnostics/slow-queries returns recorded slow queries")
+    void getSlowQueries() throws Exception {
+        when(slowQueryListener.getSlowQueries()).thenReturn(List.of(
+                new SlowQuery("find", "abernathy_clinic", List.of("patId"), 250, Instant.now())));
+
+        mockMvc.perform(get("/diagnostics/slow-queries"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].commandName", is("find")))
+                .andExpect(jsonPath("$[0].filterFields[0]", is("patId")))
+                .andExpect(jsonPath("$[0].durationMillis", is(250)));
+    }
+}
@@ -1,12 +1,26 @@
 package com.abernathyclinic.history.controller;
 
+import com.abernathyclinic.history.bean.ImportFailure;
+import com.abernathyclinic.history.bean.ImportReport;
+import com.abernathyclinic.history.bean.NoteSearchHit;
 import com.abernathyclinic.history.bean.PatientBean;
+import com.abernathyclinic.history.constants.NoteEventType;
+import com.abernathyclinic.history.exception.ChangeFeedExpiredException;
 import com.abernathyclinic.history.exception.NoteNotFoundException;
 import com.abernathyclinic.history.exception.PatientNotFoundException;
+import com.abernathyclinic.history.exception.VersionConflictException;
 import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.NoteEvent;
+import com.abernathyclinic.history.model.PatientSummary;
 import com.abernathyclinic.history.proxy.PatientProxy;
 import com.abernathyclinic.history.repository.NoteRepository;
+import com.abernathyclinic.history.service.HistoryVersionService;
+import com.abernathyclinic.history.service.NoteEventService;
+import com.abernathyclinic.history.service.NoteImportService;
+import com.abernathyclinic.history.service.NoteSearchService;
 import com.abernathyclinic.history.service.NoteService;
+import com.abernathyclinic.history.service.PatientExistenceService;
+import com.abernathyclinic.history.service.PatientSummaryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,27 +31,43 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.InputStream;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -53,6 +83,18 @@ public class NoteControllerTest {
     NoteRepository noteRepository;
     @MockBean
     PatientProxy patientProxy;
+    @MockBean
+    PatientSummaryService patientSummaryService;
+    @MockBean
+    NoteImportService noteImportService;
+    @MockBean
+    PatientExistenceService patientExistenceService;
+    @MockBean
+    NoteSearchService noteSearchService;
+    @MockBean
+    NoteEventService noteEventService;
+    @MockBean
+    HistoryVersionService historyVersionService;
     private PatientBean patient;
     private Note note;
     private Note otherNote;
@@ -125,6 +167,40 @@ public class NoteControllerTest {
                 .andExpect(jsonPath("$[1].id", is(samePatientNote.getId())));
     }
 
+    @Test
+    @DisplayName("getPatientHistory() returns the history version as ETag and not modified without reading notes")
+    void getPatientHistory_withCurrentETag_shouldReturnNotModified() throws Exception {
+        when(historyVersionService.getVersion(1)).thenReturn(7L);
+        when(noteService.getPatientHistory(1)).thenReturn(testNonesNotes);
+
+        mockMvc.perform(get(baseURI + "/patient/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-7\""));
+        mockMvc.perform(get(baseURI + "/patient/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(noteService, times(1)).getPatientHistory(1);
+
+        when(historyVersionService.getVersion(1)).thenReturn(8L);
+        mockMvc.perform(get(baseURI + "/patient/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-8\""))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @DisplayName("getPatientSummary() and getPatientNoteContents() are not modified while the history version is")
+    void getPatientSummaryAndContents_withCurrentETag_shouldReturnNotModified() throws Exception {
+        when(historyVersionService.getVersion(1)).thenReturn(2L);
+
+        mockMvc.perform(get(baseURI + "/patient/1/summary").header(HttpHeaders.IF_NONE_MATCH, "\"1-2\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(baseURI + "/patient/1/contents").header(HttpHeaders.IF_NONE_MATCH, "\"1-2\""))
+                .andExpect(status().isNotModified());
+        verify(patientSummaryService, never()).getSummary(any(Integer.class));
+        verify(noteService, never()).getPatientNoteContents(any(Integer.class));
+    }
+
     @Test
     @DisplayName("getPatientHistory() returns PatientNotFoundException")
     void getPatientHistoryReturnsPatientNotFoundException() throws Exception {
@@ -135,20 +211,194 @@ public class NoteControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("getPatientSummary() returns trigger counts of patient")
+    void getPatientSummarySuccessful() throws Exception {
+        when(patientSummaryService.getSummary(1)).thenReturn(
+                new PatientSummary(1, Map.of("Poids", 2), 2, Instant.parse("2023-08-01T10:00:00Z")));
+
+        mockMvc.perform(get(baseURI + "/patient/1/summary"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patId", is(1)))
+                .andExpect(jsonPath("$.noteCount", is(2)))
+                .andExpect(jsonPath("$.triggerNoteCounts.Poids", is(2)));
+    }
+
+    @Test
+    @DisplayName("getPatientsHistories() returns notes grouped by patient")
+    void getPatientsHistoriesSuccessful() throws Exception {
+        when(noteService.getPatientsHistories(anySet())).thenReturn(Map.of(1, testNonesNotes, 404, List.of()));
+
+        mockMvc.perform(post(baseURI + "/patient/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 404]"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1", hasSize(2)))
+                .andExpect(jsonPath("$.1[0].id", is(note.getId())))
+                .andExpect(jsonPath("$.404", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("getPatientNoteContents() returns the content of each note only")
+    void getPatientNoteContentsSuccessful() throws Exception {
+        when(noteService.getPatientNoteContents(1)).thenReturn(List.of(note.getContent()));
+
+        mockMvc.perform(get(baseURI + "/patient/1/contents"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0]", is(note.getContent())));
+    }
+
+    @Test
+    @DisplayName("countPatientsNotes() returns the number of notes by patient")
+    void countPatientsNotesSuccessful() throws Exception {
+        when(noteService.countPatientsNotes(anySet())).thenReturn(Map.of(1, 2L, 404, 0L));
+
+        mockMvc.perform(post(baseURI + "/patient/counts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 404]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1", is(2)))
+                .andExpect(jsonPath("$.404", is(0)));
+    }
+
     @Test
     @DisplayName("getNotes() successful")
     void getNotesTest() throws Exception {
-        when(noteService.getNotes()).thenReturn(allNotes);
+        when(noteService.getNotes(null, 100)).thenReturn(new SliceImpl<>(allNotes));
 
         mockMvc.perform(get(baseURI))
                 .andDo(print())
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
                 .andExpect(jsonPath("$", hasSize(3)))
                 .andExpect(jsonPath("$[0].id", is(note.getId())))
                 .andExpect(jsonPath("$[1].id", is(otherNote.getId())))
                 .andExpect(jsonPath("$[2].id", is(samePatientNote.getId())));
     }
 
+    @Test
+    @DisplayName("getNotes() returns the cursor of the next page when there are more notes")
+    void getNotes_withMoreNotes_shouldReturnNextCursor() throws Exception {
+        when(noteService.getNotes(note.getId(), 1))
+                .thenReturn(new SliceImpl<>(List.of(otherNote), PageRequest.of(0, 1), true));
+
+        mockMvc.perform(get(baseURI).param("after", note.getId()).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", otherNote.getId()))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(otherNote.getId())));
+    }
+
+    @Test
+    @DisplayName("getNotes() with an invalid page size returns bad request")
+    void getNotes_withInvalidSize_shouldReturnBadRequest() throws Exception {
+        when(noteService.getNotes(null, 0)).thenThrow(new IllegalArgumentException("The page size should be positive"));
+
+        mockMvc.perform(get(baseURI).param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("searchNotes() returns matching notes and the number of the next page")
+    void searchNotesTest() throws Exception {
+        NoteSearchHit hit = new NoteSearchHit(note.getId(), note.getPatId(), note.getContent(), null, 1.5F);
+        when(noteSearchService.search("hémoglobine", 1, 2, 1))
+                .thenReturn(new SliceImpl<>(List.of(hit), PageRequest.of(2, 1), true));
+
+        mockMvc.perform(get(baseURI + "/search").param("q", "hémoglobine").param("patId", "1")
+                        .param("page", "2").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Page", "3"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(note.getId())))
+                .andExpect(jsonPath("$[0].score", is(1.5)));
+    }
+
+    @Test
+    @DisplayName("searchNotes() without terms returns bad request")
+    void searchNotes_withBlankTerms_shouldReturnBadRequest() throws Exception {
+        when(noteSearchService.search(" ", null, 0, 20))
+                .thenThrow(new IllegalArgumentException("The searched terms should not be empty"));
+
+        mockMvc.perform(get(baseURI + "/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("getChanges() returns the changes and the sequence number to resume from when more follow")
+    void getChangesTest() throws Exception {
+        NoteEvent created = new NoteEvent(41L, NoteEventType.CREATED, note.getId(), 1, null, Instant.now());
+        NoteEvent moved = new NoteEvent(42L, NoteEventType.UPDATED, otherNote.getId(), 2, 1, Instant.now());
+        when(noteEventService.getChanges(40, 1, 2))
+                .thenReturn(new SliceImpl<>(List.of(created, moved), PageRequest.of(0, 2), true));
+
+        mockMvc.perform(get(baseURI + "/changes").param("after", "40").param("patId", "1").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "42"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].type", is("CREATED")))
+                .andExpect(jsonPath("$[1].previousPatId", is(1)));
+    }
+
+    @Test
+    @DisplayName("getChanges() resumed from expired changes returns gone")
+    void getChanges_whenExpired_shouldReturnGone() throws Exception {
+        when(noteEventService.getChanges(1, null, 100)).thenThrow(new ChangeFeedExpiredException("Events expired"));
+
+        mockMvc.perform(get(baseURI + "/changes").param("after", "1"))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    @DisplayName("streamNotes() writes one note per line")
+    void streamNotesTest() throws Exception {
+        when(noteService.streamNotes()).thenReturn(allNotes.stream());
+
+        MvcResult result = mockMvc.perform(get(baseURI + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals(note.getId(), mapper.readValue(lines[0], Note.class).getId());
+        assertEquals(samePatientNote.getContent(), mapper.readValue(lines[2], Note.class).getContent());
+    }
+
+    @Test
+    @DisplayName("importNotes() returns the import report")
+    void importNotesTest() throws Exception {
+        ImportReport report = new ImportReport();
+        report.setReceived(2);
+        report.setImported(1);
+        report.setFailed(1);
+        report.getFailures().add(new ImportFailure(2, 404, "Patient with ID 404 was not found"));
+        when(noteImportService.importNotes(any(InputStream.class))).thenReturn(report);
+
+        mockMvc.perform(post(baseURI + "/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"patId\": 1, \"content\": \"note\"}\n{\"patId\": 404, \"content\": \"note\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.failed", is(1)))
+                .andExpect(jsonPath("$.failures[0].line", is(2)))
+                .andExpect(jsonPath("$.failures[0].patId", is(404)));
+    }
+
+    @Test
+    @DisplayName("invalidatePatient() forgets whether the patient exists")
+    void invalidatePatientTest() throws Exception {
+        mockMvc.perform(post(baseURI + "/invalidate/1"))
+                .andExpect(status().isNoContent());
+
+        verify(patientExistenceService).invalidate(1);
+    }
+
     @Test
     @DisplayName("getNoteById() successful")
     void getNoteByIdSuccessful() throws Exception {
@@ -160,6 +410,28 @@ public class NoteControllerTest {
                 .andExpect(jsonPath("$.id", is(note.getId())));
     }
 
+    @Test
+    @DisplayName("getNoteById() returns the note version as ETag and not modified when it is current")
+    void getNoteById_withCurrentETag_shouldReturnNotModified() throws Exception {
+        Note versioned = new Note(note.getId(), note.getPatId(), note.getContent(), null, 5L);
+        when(noteService.getNoteById(note.getId())).thenReturn(Optional.of(versioned));
+
+        mockMvc.perform(get(baseURI + "/" + note.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + note.getId() + "-5\""));
+        mockMvc.perform(get(baseURI + "/" + note.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"" + note.getId() + "-5\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("invalidatePatient() also changes the history version")
+    void invalidatePatient_shouldIncrementHistoryVersion() throws Exception {
+        mockMvc.perform(post(baseURI + "/invalidate/1"))
+                .andExpect(status().isNoContent());
+        verify(patientExistenceService).invalidate(1);
+        verify(historyVersionService).increment(1);
+    }
+
     @Test
     @DisplayName("getNoteById() returns NoteNotFoundException")
     void getNoteByIdReturnsNoteNotFoundException() throws Exception {
@@ -208,12 +480,20 @@ public class NoteControllerTest {
     @DisplayName("deleteNoteById() returns not found status")
     void deleteNoteByIdFails() throws Exception {
         when(noteRepository.findById(anyString())).thenReturn(Optional.empty());
-        doThrow(NoteNotFoundException.class).when(noteService).deleteNoteById(anyString());
+        doThrow(NoteNotFoundException.class).when(noteService).deleteNoteById(anyString(), any());
         mockMvc.perform(delete(baseURI + "/123"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("deleteNoteById() of a note changed since it was read returns conflict")
+    void deleteNoteById_withStaleVersion_shouldReturnConflict() throws Exception {
+        doThrow(new VersionConflictException("Note changed")).when(noteService).deleteNoteById("1", 2L);
+        mockMvc.perform(delete(baseURI + "/1").param("version", "2"))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @DisplayName("deleteNoteById() successful")
     void deleteNoteByIdSuccessful() throws Exception {
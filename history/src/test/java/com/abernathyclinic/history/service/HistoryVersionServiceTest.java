@@ -0,0 +1,82 @@
+package com.abernathyclinic.history.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import(HistoryVersionService.class)
+class HistoryVersionServiceTest {
+    @Autowired
+    private HistoryVersionService historyVersionService;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    @DisplayName("getVersion returns the stored version, 0 for a history that never changed")
+    void getVersionTest() {
+        when(mongoTemplate.findById(1, Document.class, HistoryVersionService.COLLECTION))
+                .thenReturn(new Document("_id", 1).append("version", 3L));
+
+        assertEquals(3L, historyVersionService.getVersion(1));
+        assertEquals(0L, historyVersionService.getVersion(2));
+    }
+
+    @Test
+    @DisplayName("getSettledVersion returns the version only when no write is in progress")
+    void getSettledVersionTest() {
+        when(mongoTemplate.findById(1, Document.class, HistoryVersionService.COLLECTION))
+                .thenReturn(new Document("_id", 1).append("version", 3L).append("writes", 0L));
+        when(mongoTemplate.findById(2, Document.class, HistoryVersionService.COLLECTION))
+                .thenReturn(new Document("_id", 2).append("version", 3L).append("writes", 1L));
+        when(mongoTemplate.findById(3, Document.class, HistoryVersionService.COLLECTION))
+                .thenReturn(new Document("_id", 3).append("writes", 1L));
+
+        assertEquals(3L, historyVersionService.getSettledVersion(1));
+        assertNull(historyVersionService.getSettledVersion(2));
+        assertNull(historyVersionService.getSettledVersion(3));
+        assertEquals(0L, historyVersionService.getVersion(3));
+        assertEquals(0L, historyVersionService.getSettledVersion(4));
+    }
+
+    @Test
+    @DisplayName("a write is counted in progress until it is finished, which increments the version")
+    void startWrite_finishWriteTest() {
+        historyVersionService.startWrite(1);
+        historyVersionService.finishWrite(1);
+
+        verify(mongoTemplate).upsert(any(Query.class), eq(new Update().inc("writes", 1L)),
+                eq(HistoryVersionService.COLLECTION));
+        verify(mongoTemplate).upsert(any(Query.class), eq(new Update().inc("version", 1L).inc("writes", -1L)),
+                eq(HistoryVersionService.COLLECTION));
+    }
+
+    @Test
+    @DisplayName("increment upserts the version and does not fail the write when it can not")
+    void incrementTest() {
+        historyVersionService.increment(1);
+        verify(mongoTemplate).upsert(any(Query.class), eq(new Update().inc("version", 1L)),
+                eq(HistoryVersionService.COLLECTION));
+
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(HistoryVersionService.COLLECTION)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        assertDoesNotThrow(() -> historyVersionService.increment(1));
+    }
+}
@@ -0,0 +1,181 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.IndexUsage;
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.NoteEvent;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import(IndexService.class)
+class IndexServiceTest {
+    private static final String COLLECTION = "abernathy_clinic";
+    private static final String EVENTS_COLLECTION = "note_events";
+
+    @Autowired
+    private IndexService indexService;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+
+    private final IndexOperations indexOperations = mock(IndexOperations.class);
+    private final IndexOperations eventIndexOperations = mock(IndexOperations.class);
+    private final IndexInfo idIndex = new IndexInfo(List.of(IndexField.create("_id", Sort.Direction.ASC)),
+            "_id_", false, false, null);
+    private final IndexInfo patIdCreatedAtIndex = new IndexInfo(List.of(
+            IndexField.create("patId", Sort.Direction.ASC), IndexField.create("createdAt", Sort.Direction.ASC)),
+            "patId_createdAt", false, false, null);
+    private final IndexInfo contentTextIndex = new IndexInfo(List.of(IndexField.text("content", 1F)),
+            "content_text", false, false, "french");
+    private final IndexInfo atTtlIndex = new IndexInfo(List.of(IndexField.create("at", Sort.Direction.ASC)),
+            "at_ttl", false, false, null);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(Note.class)).thenReturn(COLLECTION);
+        when(mongoTemplate.indexOps(Note.class)).thenReturn(indexOperations);
+        when(mongoTemplate.indexOps(COLLECTION)).thenReturn(indexOperations);
+        when(mongoTemplate.getCollectionName(NoteEvent.class)).thenReturn(EVENTS_COLLECTION);
+        when(mongoTemplate.indexOps(NoteEvent.class)).thenReturn(eventIndexOperations);
+        when(mongoTemplate.indexOps(EVENTS_COLLECTION)).thenReturn(eventIndexOperations);
+        when(eventIndexOperations.getIndexInfo()).thenReturn(List.of(atTtlIndex));
+    }
+
+    @Test
+    @DisplayName("checkIndexes does nothing when required indexes exist")
+    void checkIndexes_whenPresent_shouldNotCreateIndex() {
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex, patIdCreatedAtIndex, contentTextIndex));
+
+        assertTrue(indexService.checkIndexes(true).isEmpty());
+        verify(indexOperations, never()).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    @DisplayName("checkIndexes accepts an index with the same keys under another name")
+    void checkIndexes_whenPresentUnderOtherName_shouldNotCreateIndex() {
+        IndexInfo renamed = new IndexInfo(patIdCreatedAtIndex.getIndexFields(), "patId_1_createdAt_1",
+                false, false, null);
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex, renamed, contentTextIndex));
+
+        assertTrue(indexService.checkIndexes(false).isEmpty());
+    }
+
+    @Test
+    @DisplayName("checkIndexes does not accept an index on the same keys in another order")
+    void checkIndexes_whenKeysInOtherOrder_shouldReportMissingIndex() {
+        IndexInfo reversed = new IndexInfo(List.of(IndexField.create("createdAt", Sort.Direction.ASC),
+                IndexField.create("patId", Sort.Direction.ASC)), "createdAt_patId", false, false, null);
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex, reversed, contentTextIndex));
+
+        assertEquals(List.of(COLLECTION + ".patId_createdAt"), indexService.checkIndexes(false));
+    }
+
+    @Test
+    @DisplayName("checkIndexes creates missing indexes when asked to")
+    void checkIndexes_whenMissing_shouldCreateIndex() {
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex));
+
+        assertTrue(indexService.checkIndexes(true).isEmpty());
+        verify(indexOperations, times(2)).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    @DisplayName("checkIndexes reports missing indexes when not allowed to create them")
+    void checkIndexes_whenMissing_shouldReportMissingIndex() {
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex));
+
+        assertEquals(List.of(COLLECTION + ".patId_createdAt", COLLECTION + ".content_text"),
+                indexService.checkIndexes(false));
+        verify(indexOperations, never()).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    @DisplayName("getIndexUsage reports accesses of existing indexes and missing required indexes")
+    @SuppressWarnings("unchecked")
+    void getIndexUsage_shouldReportAccessesAndMissingIndexes() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        AggregateIterable<Document> indexStats = mock(AggregateIterable.class);
+        Date since = new Date();
+        when(mongoTemplate.getCollection(COLLECTION)).thenReturn(collection);
+        when(mongoTemplate.getCollection(EVENTS_COLLECTION)).thenReturn(collection);
+        when(collection.aggregate(anyList())).thenReturn(indexStats);
+        doAnswer(invocation -> {
+            ((Consumer<Document>) invocation.getArgument(0)).accept(new Document("name", "_id_")
+                    .append("accesses", new Document("ops", 42L).append("since", since)));
+            return null;
+        }).when(indexStats).forEach(any());
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex));
+
+        List<IndexUsage> result = indexService.getIndexUsage();
+
+        assertEquals(4, result.size());
+        IndexUsage id = result.get(0);
+        assertEquals("_id_", id.getName());
+        assertEquals(42L, id.getAccesses());
+        assertEquals(since.toInstant(), id.getSince());
+        assertFalse(id.isRequired());
+        assertTrue(id.isPresent());
+        IndexUsage missing = result.get(1);
+        assertEquals("patId_createdAt", missing.getName());
+        assertTrue(missing.isRequired());
+        assertFalse(missing.isPresent());
+        assertNull(missing.getAccesses());
+        assertEquals("content_text", result.get(2).getName());
+        assertEquals("text", result.get(2).getKeys().get("content"));
+        assertEquals(EVENTS_COLLECTION, result.get(3).getCollection());
+        assertEquals("at_ttl", result.get(3).getName());
+        assertTrue(result.get(3).isPresent());
+    }
+
+    @Test
+    @DisplayName("checkIndexes creates the expiry index of change feed events in their own collection")
+    void checkIndexes_whenEventIndexMissing_shouldCreateIt() {
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex, patIdCreatedAtIndex, contentTextIndex));
+        when(eventIndexOperations.getIndexInfo()).thenReturn(List.of(idIndex));
+
+        assertEquals(List.of(EVENTS_COLLECTION + ".at_ttl"), indexService.checkIndexes(false));
+        indexService.checkIndexes(true);
+        verify(eventIndexOperations, times(1)).ensureIndex(any(IndexDefinition.class));
+        verify(indexOperations, never()).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    @DisplayName("checkIndexes recognizes a text index on the content under another name")
+    void checkIndexes_whenTextIndexPresentUnderOtherName_shouldNotCreateIndex() {
+        IndexInfo renamed = new IndexInfo(contentTextIndex.getIndexFields(), "content_text_fr", false, false, "french");
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(idIndex, patIdCreatedAtIndex, renamed));
+
+        assertTrue(indexService.checkIndexes(false).isEmpty());
+    }
+}
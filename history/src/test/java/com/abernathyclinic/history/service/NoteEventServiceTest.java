@@ -0,0 +1,172 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.constants.NoteEventType;
+import com.abernathyclinic.history.exception.ChangeFeedExpiredException;
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.NoteEvent;
+import com.abernathyclinic.history.repository.NoteEventRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = NoteEventService.class)
+@TestPropertySource(properties = {"history.changes.max-page-size=2", "history.changes.settle-delay=5s"})
+class NoteEventServiceTest {
+    @Autowired
+    private NoteEventService noteEventService;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+    @MockBean
+    private NoteEventRepository noteEventRepository;
+
+    private final Note note = new Note("NOTE001", 1, "Patient states that they are 'feeling terrific'");
+    private final Note otherNote = new Note("NOTE002", 2, "Patient states that they are feeling stressed");
+
+    @Test
+    @DisplayName("Events of a batch get consecutive sequence numbers reserved in one counter increment")
+    @SuppressWarnings("unchecked")
+    void notesCreated_shouldNumberEventsConsecutively() {
+        counterReturns(12L);
+
+        noteEventService.notesCreated(List.of(note, otherNote));
+
+        ArgumentCaptor<Update> increment = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), increment.capture(), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(NoteEventService.COUNTERS_COLLECTION));
+        assertEquals(2L, increment.getValue().getUpdateObject().get("$inc", Document.class).get("seq"));
+        ArgumentCaptor<List<NoteEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(noteEventRepository).insert(events.capture());
+        assertEquals(List.of(11L, 12L), events.getValue().stream().map(NoteEvent::getSeq).toList());
+        assertEquals(NoteEventType.CREATED, events.getValue().get(1).getType());
+        assertEquals("NOTE002", events.getValue().get(1).getNoteId());
+        assertEquals(2, events.getValue().get(1).getPatId());
+        assertTrue(events.getValue().stream().allMatch(event -> event.getAt() != null));
+    }
+
+    @Test
+    @DisplayName("An update keeps the former patient of a note moved to another patient")
+    @SuppressWarnings("unchecked")
+    void noteUpdated_whenPatientChanged_shouldKeepPreviousPatient() {
+        counterReturns(1L);
+        Note moved = new Note(note.getId(), 2, note.getContent());
+
+        noteEventService.noteUpdated(note, moved);
+        noteEventService.noteUpdated(note, note);
+
+        ArgumentCaptor<List<NoteEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(noteEventRepository, times(2)).insert(events.capture());
+        NoteEvent movedEvent = events.getAllValues().get(0).get(0);
+        assertEquals(NoteEventType.UPDATED, movedEvent.getType());
+        assertEquals(2, movedEvent.getPatId());
+        assertEquals(1, movedEvent.getPreviousPatId());
+        assertNull(events.getAllValues().get(1).get(0).getPreviousPatId());
+    }
+
+    @Test
+    @DisplayName("An event which can not be recorded does not fail the note write")
+    void noteDeleted_whenDatabaseFails_shouldNotThrow() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(NoteEventService.COUNTERS_COLLECTION)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        noteEventService.noteDeleted(note);
+
+        verify(noteEventRepository, never()).insert(anyList());
+    }
+
+    @Test
+    @DisplayName("getChanges() holds back recent events and caps the page size")
+    void getChanges_shouldHoldBackRecentEvents() {
+        Slice<NoteEvent> events = new SliceImpl<>(List.of(
+                new NoteEvent(4L, NoteEventType.CREATED, "NOTE001", 1, null, Instant.now().minusSeconds(60))));
+        when(noteEventRepository.findAllBySeqGreaterThanAndAtBeforeOrderBySeqAsc(eq(3L), any(Instant.class),
+                any(Pageable.class))).thenReturn(events);
+        when(noteEventRepository.findFirstByOrderBySeqAsc()).thenReturn(Optional.of(events.getContent().get(0)));
+
+        Instant start = Instant.now();
+        assertEquals(events, noteEventService.getChanges(3, null, 10));
+
+        ArgumentCaptor<Instant> before = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(noteEventRepository).findAllBySeqGreaterThanAndAtBeforeOrderBySeqAsc(eq(3L), before.capture(),
+                page.capture());
+        assertFalse(before.getValue().isAfter(start.minusSeconds(4)));
+        assertEquals(2, page.getValue().getPageSize());
+    }
+
+    @Test
+    @DisplayName("getChanges() filters on the patient")
+    void getChanges_withPatient_shouldUsePatientQuery() {
+        when(noteEventRepository.findAllForPatient(eq(0L), any(Instant.class), eq(1), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+
+        noteEventService.getChanges(0, 1, 2);
+
+        verify(noteEventRepository).findAllForPatient(eq(0L), any(Instant.class), eq(1), any(Pageable.class));
+        verify(noteEventRepository, never()).findFirstByOrderBySeqAsc();
+    }
+
+    @Test
+    @DisplayName("getChanges() resumed from events which expired throws ChangeFeedExpiredException")
+    void getChanges_whenEventsExpired_shouldThrowChangeFeedExpiredException() {
+        when(noteEventRepository.findAllBySeqGreaterThanAndAtBeforeOrderBySeqAsc(anyLong(), any(Instant.class),
+                any(Pageable.class))).thenReturn(new SliceImpl<>(List.of()));
+        when(noteEventRepository.findFirstByOrderBySeqAsc()).thenReturn(Optional.of(
+                new NoteEvent(10L, NoteEventType.DELETED, "NOTE001", 1, null, Instant.now())));
+
+        assertThrows(ChangeFeedExpiredException.class, () -> noteEventService.getChanges(5, null, 2));
+        // resuming right before the oldest event kept is fine
+        noteEventService.getChanges(9, null, 2);
+    }
+
+    @Test
+    @DisplayName("getChanges() resumed after events which all expired throws ChangeFeedExpiredException")
+    void getChanges_whenAllEventsExpired_shouldThrowChangeFeedExpiredException() {
+        when(noteEventRepository.findAllBySeqGreaterThanAndAtBeforeOrderBySeqAsc(anyLong(), any(Instant.class),
+                any(Pageable.class))).thenReturn(new SliceImpl<>(List.of()));
+        when(noteEventRepository.findFirstByOrderBySeqAsc()).thenReturn(Optional.empty());
+        when(mongoTemplate.findById(NoteEventService.COUNTER_ID, Document.class, NoteEventService.COUNTERS_COLLECTION))
+                .thenReturn(new Document("_id", NoteEventService.COUNTER_ID).append("seq", 10L));
+
+        assertThrows(ChangeFeedExpiredException.class, () -> noteEventService.getChanges(5, null, 2));
+        // a consumer which read every event has nothing to read again
+        assertTrue(noteEventService.getChanges(10, null, 2).isEmpty());
+    }
+
+    private void counterReturns(long seq) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(NoteEventService.COUNTERS_COLLECTION)))
+                .thenReturn(new Document("_id", NoteEventService.COUNTER_ID).append("seq", seq));
+    }
+}
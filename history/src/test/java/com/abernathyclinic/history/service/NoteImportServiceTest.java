@@ -0,0 +1,213 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.ImportReport;
+import com.abernathyclinic.history.bean.PatientBatchBean;
+import com.abernathyclinic.history.bean.PatientBean;
+import com.abernathyclinic.history.configuration.CacheConfiguration;
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.proxy.PatientProxy;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import feign.FeignException;
+import feign.Request;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = {NoteImportService.class, PatientExistenceService.class, CacheConfiguration.class,
+        JacksonAutoConfiguration.class, LocalValidatorFactoryBean.class})
+@TestPropertySource(properties = {"history.import.batch-size=2", "history.import.max-reported-failures=2"})
+class NoteImportServiceTest {
+    @Autowired
+    private NoteImportService noteImportService;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+    @MockBean
+    private BulkOperations bulkOperations;
+    @MockBean
+    private PatientProxy patientProxy;
+    @MockBean
+    private NoteService noteService;
+    @MockBean
+    private PatientSummaryService patientSummaryService;
+    @MockBean
+    private NoteEventService noteEventService;
+    @MockBean
+    private HistoryVersionService historyVersionService;
+    @Autowired
+    private Cache<Integer, Boolean> patientExistenceCache;
+
+    private PatientBean patient;
+
+    @BeforeEach
+    void setUp() {
+        patientExistenceCache.invalidateAll();
+        patient = new PatientBean(1, "TestNone", "Test", LocalDate.of(1966, 12, 31), "F", "1 Brookside St", "100-222-3333");
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+
+    @Test
+    @DisplayName("Notes are inserted by batches and each patient is checked once")
+    @SuppressWarnings("unchecked")
+    void importNotes_shouldInsertByBatches_andCheckEachPatientOnce() throws IOException {
+        PatientBean other = new PatientBean(2, "TestBorderline", "Test", LocalDate.of(1945, 6, 24), "M", "", "");
+        when(patientProxy.getPatientsByIds(List.of(1))).thenReturn(new PatientBatchBean(List.of(patient), List.of()));
+        when(patientProxy.getPatientsByIds(List.of(2))).thenReturn(new PatientBatchBean(List.of(other), List.of()));
+
+        ImportReport report = noteImportService.importNotes(ndjson(
+                "{\"patId\": 1, \"content\": \"first note\"}",
+                "{\"patId\": 1, \"content\": \"second note\"}",
+                "",
+                "{\"patId\": 2, \"content\": \"third note\"}",
+                "{\"patId\": 1, \"content\": \"fourth note\"}",
+                "{\"patId\": 2, \"content\": \"fifth note\"}"));
+
+        assertEquals(5, report.getReceived());
+        assertEquals(5, report.getImported());
+        assertEquals(0, report.getFailed());
+        // patient 1 is checked with the first batch, patient 2 with the second one
+        verify(patientProxy, times(2)).getPatientsByIds(anyCollection());
+        verify(patientProxy, never()).getPatientById(any(Integer.class));
+        ArgumentCaptor<List<Note>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations, times(3)).insert(inserted.capture());
+        assertEquals(List.of(2, 2, 1), inserted.getAllValues().stream().map(List::size).toList());
+        assertNotNull(inserted.getAllValues().get(0).get(0).getCreatedAt());
+        verify(bulkOperations, times(3)).execute();
+        verify(patientSummaryService, times(3)).invalidate(any(Collection.class));
+        verify(noteService, times(2)).notifyHistoryChanged(1);
+        verify(noteService, times(2)).notifyHistoryChanged(2);
+    }
+
+    @Test
+    @DisplayName("Invalid lines and notes of unknown patients are reported, not inserted")
+    void importNotes_withInvalidLines_shouldReportFailures() throws IOException {
+        when(patientProxy.getPatientsByIds(List.of(1, 2))).thenReturn(new PatientBatchBean(List.of(), List.of(1, 2)));
+
+        ImportReport report = noteImportService.importNotes(ndjson(
+                "not json",
+                "{\"patId\": 1, \"content\": \"unknown patient\"}",
+                "{\"patId\": 2, \"content\": \"unknown patient too\"}",
+                "{\"content\": \"no patient\"}"));
+
+        assertEquals(4, report.getReceived());
+        assertEquals(0, report.getImported());
+        assertEquals(4, report.getFailed());
+        // only the first failures are detailed
+        assertEquals(2, report.getFailures().size());
+        assertEquals(1, report.getFailures().get(0).getLine());
+        assertNull(report.getFailures().get(0).getPatId());
+        assertTrue(report.getFailures().get(0).getReason().startsWith("Invalid JSON"));
+        assertEquals(2, report.getFailures().get(1).getLine());
+        assertEquals("Patient with ID 1 was not found", report.getFailures().get(1).getReason());
+        verify(bulkOperations, never()).execute();
+        verify(noteEventService, never()).notesCreated(any());
+        verify(noteService, never()).notifyHistoryChanged(any(Integer.class));
+    }
+
+    @Test
+    @DisplayName("Notes rejected by the database are reported, the others of the batch are imported")
+    @SuppressWarnings("unchecked")
+    void importNotes_withWriteError_shouldReportRejectedNote() throws IOException {
+        PatientBean other = new PatientBean(2, "TestBorderline", "Test", LocalDate.of(1945, 6, 24), "M", "", "");
+        when(patientProxy.getPatientsByIds(List.of(1, 2))).thenReturn(new PatientBatchBean(List.of(patient, other), List.of()));
+        BulkWriteError duplicate = new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0);
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("Bulk write failed",
+                new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(duplicate), null,
+                        new ServerAddress())));
+
+        ImportReport report = noteImportService.importNotes(ndjson(
+                "{\"id\": \"NOTE001\", \"patId\": 1, \"content\": \"already imported\"}",
+                "{\"patId\": 2, \"content\": \"new note\"}"));
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(1, report.getFailures().get(0).getLine());
+        assertEquals("E11000 duplicate key error", report.getFailures().get(0).getReason());
+        verify(patientSummaryService).invalidate(Set.of(2));
+        // only the inserted note is published, with the id it was given
+        ArgumentCaptor<Collection<Note>> published = ArgumentCaptor.forClass(Collection.class);
+        verify(noteEventService).notesCreated(published.capture());
+        assertEquals(1, published.getValue().size());
+        Note newNote = published.getValue().iterator().next();
+        assertEquals(2, newNote.getPatId());
+        assertNotNull(newNote.getId());
+        verify(noteService, never()).notifyHistoryChanged(1);
+        verify(noteService, times(1)).notifyHistoryChanged(2);
+        // the write of patient 1 is still ended, so that their summary can be stored again
+        verify(historyVersionService).startWrite(1);
+        verify(historyVersionService).finishWrite(1);
+    }
+
+    @Test
+    @DisplayName("Imported notes keep their creation date, notes without one are dated now")
+    @SuppressWarnings("unchecked")
+    void importNotes_shouldKeepCreationDate() throws IOException {
+        when(patientProxy.getPatientsByIds(List.of(1))).thenReturn(new PatientBatchBean(List.of(patient), List.of()));
+
+        Instant start = Instant.now();
+        noteImportService.importNotes(ndjson(
+                "{\"patId\": 1, \"content\": \"legacy note\", \"createdAt\": \"2019-03-14T09:30:00Z\"}",
+                "{\"patId\": 1, \"content\": \"undated note\"}"));
+
+        ArgumentCaptor<List<Note>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations).insert(inserted.capture());
+        assertEquals(Instant.parse("2019-03-14T09:30:00Z"), inserted.getValue().get(0).getCreatedAt());
+        assertFalse(inserted.getValue().get(1).getCreatedAt().isBefore(start));
+    }
+
+    @Test
+    @DisplayName("Notes of patients which could not be checked are reported, not inserted")
+    void importNotes_whenPatientsUnreachable_shouldReportFailures() throws IOException {
+        when(patientProxy.getPatientsByIds(anyCollection())).thenThrow(new FeignException.ServiceUnavailable("Unavailable",
+                Request.create(Request.HttpMethod.POST, "/patient/batch", new HashMap<>(), null, StandardCharsets.UTF_8, null),
+                null, null));
+
+        ImportReport report = noteImportService.importNotes(ndjson("{\"patId\": 1, \"content\": \"first note\"}"));
+
+        assertEquals(1, report.getFailed());
+        assertEquals("Patient with ID 1 could not be checked", report.getFailures().get(0).getReason());
+        verify(bulkOperations, never()).execute();
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.NoteSearchHit;
+import com.abernathyclinic.history.model.Note;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import(NoteSearchService.class)
+@TestPropertySource(properties = {"history.search.max-page-size=2", "history.search.max-page=5"})
+class NoteSearchServiceTest {
+    private static final String COLLECTION = "abernathy_clinic";
+
+    @Autowired
+    private NoteSearchService noteSearchService;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+
+    private final NoteSearchHit first = new NoteSearchHit("NOTE001", 1, "Hémoglobine A1C supérieure", null, 2F);
+    private final NoteSearchHit second = new NoteSearchHit("NOTE002", 1, "hemoglobine normale", null, 1F);
+    private final NoteSearchHit third = new NoteSearchHit("NOTE003", 2, "Taux d'hémoglobine", null, 0.5F);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(Note.class)).thenReturn(COLLECTION);
+    }
+
+    @Test
+    @DisplayName("search() queries the text index in French, ranked by score")
+    void search_shouldRankByScore() {
+        when(mongoTemplate.find(any(Query.class), eq(NoteSearchHit.class), eq(COLLECTION)))
+                .thenReturn(List.of(first, second));
+
+        Slice<NoteSearchHit> result = noteSearchService.search("hémoglobine", null, 0, 2);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(NoteSearchHit.class), eq(COLLECTION));
+        Document text = query.getValue().getQueryObject().get("$text", Document.class);
+        assertEquals("hémoglobine", text.getString("$search"));
+        assertEquals("french", text.getString("$language"));
+        assertFalse(query.getValue().getQueryObject().containsKey("patId"));
+        assertTrue(query.getValue().getSortObject().containsKey("score"));
+        assertEquals(List.of(first, second), result.getContent());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    @DisplayName("search() filters on the patient and reads one more note to know whether a next page exists")
+    void search_withPatient_shouldFilterAndPaginate() {
+        when(mongoTemplate.find(any(Query.class), eq(NoteSearchHit.class), eq(COLLECTION)))
+                .thenReturn(List.of(first, second, third));
+
+        Slice<NoteSearchHit> result = noteSearchService.search("hémoglobine", 1, 1, 10);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(NoteSearchHit.class), eq(COLLECTION));
+        assertEquals(1, query.getValue().getQueryObject().get("patId"));
+        // page size capped to history.search.max-page-size
+        assertEquals(2, query.getValue().getSkip());
+        assertEquals(3, query.getValue().getLimit());
+        assertEquals(List.of(first, second), result.getContent());
+        assertTrue(result.hasNext());
+    }
+
+    @Test
+    @DisplayName("search() refuses blank terms, pages beyond history.search.max-page and empty pages")
+    void search_withInvalidArguments_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> noteSearchService.search(" ", null, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> noteSearchService.search("diabète", null, 6, 2));
+        assertThrows(IllegalArgumentException.class, () -> noteSearchService.search("diabète", null, 0, 0));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(NoteSearchHit.class), eq(COLLECTION));
+    }
+}
@@ -3,34 +3,50 @@ package com.abernathyclinic.history.service;
 import com.abernathyclinic.history.bean.PatientBean;
 import com.abernathyclinic.history.exception.NoteNotFoundException;
 import com.abernathyclinic.history.exception.PatientNotFoundException;
+import com.abernathyclinic.history.exception.VersionConflictException;
+import com.abernathyclinic.history.configuration.CacheConfiguration;
 import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.proxy.AssessmentProxy;
 import com.abernathyclinic.history.proxy.PatientProxy;
 import com.abernathyclinic.history.repository.NoteRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
-import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.context.annotation.Import;
-import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@ExtendWith(SpringExtension.class)
-@Import(NoteService.class)
+@SpringBootTest(classes = {NoteService.class, PatientExistenceService.class, CacheConfiguration.class})
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class NoteServiceTest {
     @Autowired
@@ -38,7 +54,19 @@ class NoteServiceTest {
     @MockBean
     private NoteRepository noteRepository;
     @MockBean
+    private MongoTemplate mongoTemplate;
+    @MockBean
     private PatientProxy patientProxy;
+    @MockBean
+    private AssessmentProxy assessmentProxy;
+    @MockBean
+    private PatientSummaryService patientSummaryService;
+    @MockBean
+    private NoteEventService noteEventService;
+    @MockBean
+    private HistoryVersionService historyVersionService;
+    @Autowired
+    private Cache<Integer, Boolean> patientExistenceCache;
 
     private Note note;
     private Note otherNote;
@@ -48,7 +76,8 @@ class NoteServiceTest {
 
     @BeforeEach
     void setUp() {
-        note = new Note("NOTE001", 1, "Patient: TestNone Practitioner's notes/recommendations: Patient states that they are 'feeling terrific' Weight at or below recommended level");
+        patientExistenceCache.invalidateAll();
+        note = new Note("64b5f0c2a1d3e4f5a6b7c8d9", 1, "Patient: TestNone Practitioner's notes/recommendations: Patient states that they are 'feeling terrific' Weight at or below recommended level");
         otherNote = new Note("NOTE002", 2, "Patient: TestBorderline Practitioner's notes/recommendations: Patient states that they are feeling a great deal of stress at work Patient also complains that their hearing seems Abnormal as of late");
         samePatientNote = new Note("NOTE003", 1, "Patient: TestNone Practitioner's notes/recommendations: Patient states that they are 'feeling very strong'");
         notes = List.of(note, otherNote, samePatientNote);
@@ -64,6 +93,11 @@ class NoteServiceTest {
         note = noteService.createNote(note);
 
         verify(noteRepository, times(1)).insert(any(Note.class));
+        verify(patientSummaryService, times(1)).noteCreated(note);
+        verify(noteEventService, times(1)).noteCreated(note);
+        verify(historyVersionService, times(1)).startWrite(note.getPatId());
+        verify(historyVersionService, times(1)).finishWrite(note.getPatId());
+        verify(assessmentProxy, times(1)).invalidateAssessment(note.getPatId());
         assertThat(note).isNotNull();
     }
 
@@ -75,17 +109,44 @@ class NoteServiceTest {
     }
 
     @Test
-    @DisplayName("getNotes() should return list of existing notes")
+    @DisplayName("getNotes() should return the first page of notes when no cursor is given")
     void getNotes() {
-        when(noteRepository.findAll()).thenReturn(notes);
+        when(noteRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(new SliceImpl<>(notes));
 
-        List<Note> result = noteService.getNotes();
+        List<Note> result = noteService.getNotes(null, 10).getContent();
 
         assertTrue(result.contains(note));
         assertTrue(result.contains(otherNote));
         assertTrue(result.contains(samePatientNote));
     }
 
+    @Test
+    @DisplayName("getNotes() should return the notes after the cursor, with a capped page size")
+    void getNotes_withCursor_shouldReturnNextPage() {
+        when(noteRepository.findAllByIdGreaterThanOrderByIdAsc(eq("64b5f0c2a1d3e4f5a6b7c8d9"), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(otherNote, samePatientNote)));
+
+        List<Note> result = noteService.getNotes("64b5f0c2a1d3e4f5a6b7c8d9", 1_000_000).getContent();
+
+        assertEquals(List.of(otherNote, samePatientNote), result);
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(noteRepository).findAllByIdGreaterThanOrderByIdAsc(eq("64b5f0c2a1d3e4f5a6b7c8d9"), page.capture());
+        assertEquals(1000, page.getValue().getPageSize());
+    }
+
+    @Test
+    @DisplayName("getNotes() should reject a cursor which is not a note id")
+    void getNotes_withInvalidCursor_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNotes("NOTE001", 10));
+        verify(noteRepository, never()).findAllByIdGreaterThanOrderByIdAsc(any(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("getNotes() should reject a page size which is not positive")
+    void getNotes_withInvalidSize_shouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNotes(null, 0));
+    }
+
     @Test
     @DisplayName("Id should not be null when calling getNoteById")
     void getNoteById_whenIDIsNull_shouldThrowException() {
@@ -112,6 +173,52 @@ class NoteServiceTest {
         assertTrue(result.contains(samePatientNote));
     }
 
+    @Test
+    @DisplayName("getPatientsHistories should group notes by patient ID with a single query")
+    void getPatientsHistories() {
+        when(noteRepository.findAllByPatIdIn(Set.of(1, 2, 3))).thenReturn(notes);
+
+        Map<Integer, List<Note>> result = noteService.getPatientsHistories(List.of(1, 2, 3));
+
+        assertEquals(List.of(note, samePatientNote), result.get(1));
+        assertEquals(List.of(otherNote), result.get(2));
+        assertTrue(result.get(3).isEmpty());
+        verify(noteRepository, times(1)).findAllByPatIdIn(any());
+        verify(patientProxy, never()).getPatientById(any(Integer.class));
+    }
+
+    @Test
+    @DisplayName("getPatientNoteContents should return the content of each note from a projection query")
+    void getPatientNoteContents() {
+        when(patientProxy.getPatientById(1)).thenReturn(patient);
+        when(noteRepository.findContentsByPatId(1)).thenReturn(List.of(
+                new Note(null, null, note.getContent()), new Note(null, null, samePatientNote.getContent())));
+
+        assertEquals(List.of(note.getContent(), samePatientNote.getContent()), noteService.getPatientNoteContents(1));
+        verify(noteRepository, never()).findAllByPatId(any(Integer.class));
+    }
+
+    @Test
+    @DisplayName("getPatientNoteContents should throw PatientNotFoundException")
+    void getPatientNoteContents_shouldThrow_PatientNotFoundException() {
+        when(patientProxy.getPatientById(any(Integer.class))).thenReturn(null);
+        assertThrows(PatientNotFoundException.class, () -> noteService.getPatientNoteContents(patient.getId()));
+    }
+
+    @Test
+    @DisplayName("countPatientsNotes should count notes of all patients with a single aggregation")
+    void countPatientsNotes() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Note.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document("_id", 1).append("count", 2),
+                        new Document("_id", 2).append("count", 1)), new Document()));
+
+        Map<Integer, Long> result = noteService.countPatientsNotes(List.of(1, 2, 3));
+
+        assertEquals(Map.of(1, 2L, 2, 1L, 3, 0L), result);
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(Note.class), eq(Document.class));
+        verify(patientProxy, never()).getPatientById(any(Integer.class));
+    }
+
     @Test
     @DisplayName("getPatientHistory should throw IllegalArgumentException")
     void getPatientHistory_shouldThrow_IllegalArgumentException() {
@@ -128,56 +235,139 @@ class NoteServiceTest {
     @Test
     @DisplayName("Updating note which does not exist should throw NoteNotFoundException")
     void updateNote_whoDoesNotExist_shouldThrow_NoteNotFoundException() {
-        when(noteRepository.findById(any(String.class))).thenReturn(Optional.empty());
+        when(patientProxy.getPatientById(any(Integer.class))).thenReturn(patient);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Note.class))).thenReturn(null);
         assertThrows(NoteNotFoundException.class, () -> noteService.updateNote(note));
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(Note.class));
     }
 
     @Test
     @DisplayName("updateNote should throw PatientNotFoundException")
     void updateNote_shouldThrow_PatientNotFoundException() {
-        when(noteRepository.findById(any(String.class))).thenReturn(Optional.of(note));
         when(patientProxy.getPatientById(any(Integer.class))).thenReturn(null);
         assertThrows(PatientNotFoundException.class, () -> noteService.updateNote(note));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), eq(Note.class));
     }
 
     @Test
-    @DisplayName("Updating existing note should save changes to database")
+    @DisplayName("Updating existing note should save changes to database in a single conditional write")
     void updateNote_whichExists_shouldUpdate_existingNote() {
-        when(noteRepository.findById(any(String.class))).thenReturn(Optional.of(note));
+        note.setVersion(3L);
+        Note stored = new Note(note.getId(), note.getPatId(), note.getContent(), null, 3L);
         when(patientProxy.getPatientById(any(Integer.class))).thenReturn(patient);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Note.class))).thenReturn(stored);
         String newContent = "this is a new content for the test";
         note.setContent(newContent);
-        when(noteRepository.save(any(Note.class))).thenReturn(note);
 
-        note = noteService.updateNote(note);
+        Note updated = noteService.updateNote(note);
 
-        verify(noteRepository, times(1)).findById(any(String.class));
-        verify(patientProxy,times(1)).getPatientById(any(Integer.class));
-        verify(noteRepository, times(1)).save(any(Note.class));
-        assertThat(note).isNotNull();
-        assertEquals(newContent, note.getContent());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).findAndModify(query.capture(), update.capture(), eq(Note.class));
+        assertEquals(note.getId(), query.getValue().getQueryObject().get("_id"));
+        assertEquals(3L, query.getValue().getQueryObject().get("version"));
+        assertEquals(newContent, update.getValue().getUpdateObject().get("$set", Document.class).get("content"));
+        verify(noteRepository, never()).findById(any(String.class));
+        verify(noteRepository, never()).save(any(Note.class));
+        verify(assessmentProxy, times(1)).invalidateAssessment(note.getPatId());
+        assertEquals(newContent, updated.getContent());
+        assertEquals(4L, updated.getVersion());
+    }
+
+    @Test
+    @DisplayName("Updating a note changed since it was read should throw VersionConflictException")
+    void updateNote_withStaleVersion_shouldThrow_VersionConflictException() {
+        note.setVersion(3L);
+        when(patientProxy.getPatientById(any(Integer.class))).thenReturn(patient);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Note.class))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Note.class))).thenReturn(true);
+
+        assertThrows(VersionConflictException.class, () -> noteService.updateNote(note));
+        verify(patientSummaryService, never()).noteUpdated(any(Note.class), any(Note.class));
+        verify(assessmentProxy, never()).invalidateAssessment(any(Integer.class));
+        // the write still ends, or summaries of the patient would never be stored again
+        verify(historyVersionService, times(1)).finishWrite(note.getPatId());
+    }
+
+    @Test
+    @DisplayName("Creating a note should set its creation time, updating it should keep it")
+    void createdAt_shouldBeSetOnCreation_andKeptOnUpdate() {
+        when(patientProxy.getPatientById(any(Integer.class))).thenReturn(patient);
+        when(noteRepository.insert(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Note created = noteService.createNote(note);
+        assertNotNull(created.getCreatedAt());
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Note.class))).thenReturn(created);
+        Note edited = new Note(note.getId(), note.getPatId(), "edited content");
+        Note updated = noteService.updateNote(edited);
+
+        assertEquals(created.getCreatedAt(), updated.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Moving a note to another patient should invalidate both risk assessments")
+    void updateNote_movedToOtherPatient_shouldInvalidateBothAssessments() {
+        Note movedNote = new Note(note.getId(), 2, note.getContent());
+        when(patientProxy.getPatientById(any(Integer.class))).thenReturn(patient);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Note.class))).thenReturn(note);
+
+        noteService.updateNote(movedNote);
+
+        ArgumentCaptor<Note> updated = ArgumentCaptor.forClass(Note.class);
+        verify(patientSummaryService, times(1)).noteUpdated(eq(note), updated.capture());
+        assertEquals(2, updated.getValue().getPatId());
+        verify(noteEventService, times(1)).noteUpdated(note, updated.getValue());
+        verify(assessmentProxy, times(1)).invalidateAssessment(1);
+        verify(assessmentProxy, times(1)).invalidateAssessment(2);
+    }
+
+    @Test
+    @DisplayName("A note should be saved even if the assessments microservice can not be notified")
+    void createNote_whenAssessmentsUnreachable_shouldStillCreateNote() {
+        when(patientProxy.getPatientById(any(Integer.class))).thenReturn(patient);
+        when(noteRepository.insert(any(Note.class))).thenReturn(note);
+        doThrow(new RuntimeException("Connection refused")).when(assessmentProxy).invalidateAssessment(any(Integer.class));
+
+        assertEquals(note, noteService.createNote(note));
     }
 
     @Test
     @DisplayName("Note should not be null when calling deleteNote()")
     void deleteNote_whenNoteIsNull_shouldThrowException() {
         assertThrows(IllegalArgumentException.class,
-                () -> noteService.deleteNoteById(null));
+                () -> noteService.deleteNoteById(null, null));
     }
 
     @Test
-    @DisplayName("Deleting existing note should delete them from database")
+    @DisplayName("Deleting existing note should delete them from database in a single write")
     void deleteNote() {
-        when(noteRepository.findById(any(String.class))).thenReturn(Optional.of(note));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Note.class))).thenReturn(note);
         String idBeforeDeletion = note.getId();
-        noteService.deleteNoteById(idBeforeDeletion);
-        verify(noteRepository, times(1)).deleteById(any(String.class));
+        noteService.deleteNoteById(idBeforeDeletion, null);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).findAndRemove(query.capture(), eq(Note.class));
+        assertEquals(Map.of("_id", idBeforeDeletion), Map.copyOf(query.getValue().getQueryObject()));
+        verify(noteRepository, never()).findById(any(String.class));
+        verify(patientSummaryService, times(1)).noteDeleted(note);
+        verify(noteEventService, times(1)).noteDeleted(note);
+        verify(assessmentProxy, times(1)).invalidateAssessment(note.getPatId());
     }
 
     @Test
     @DisplayName("Deleting note which does not exist should throw NoteNotFoundException")
     void deleteNote_whichDoesNotExist_shouldThrow_NoteNotFoundException() {
-        when(noteRepository.findById(any(String.class))).thenReturn(Optional.empty());
-        assertThrows(NoteNotFoundException.class, () -> noteService.deleteNoteById(note.getId()));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Note.class))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Note.class))).thenReturn(false);
+        assertThrows(NoteNotFoundException.class, () -> noteService.deleteNoteById(note.getId(), 2L));
+    }
+
+    @Test
+    @DisplayName("Deleting a note changed since it was read should throw VersionConflictException")
+    void deleteNote_withStaleVersion_shouldThrow_VersionConflictException() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Note.class))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Note.class))).thenReturn(true);
+        assertThrows(VersionConflictException.class, () -> noteService.deleteNoteById(note.getId(), 2L));
+        verify(patientSummaryService, never()).noteDeleted(any(Note.class));
     }
 }
\ No newline at end of file
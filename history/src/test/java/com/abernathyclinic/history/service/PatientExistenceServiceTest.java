@@ -0,0 +1,108 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.bean.PatientBatchBean;
+import com.abernathyclinic.history.bean.PatientBean;
+import com.abernathyclinic.history.configuration.CacheConfiguration;
+import com.abernathyclinic.history.proxy.PatientProxy;
+import com.github.benmanes.caffeine.cache.Cache;
+import feign.FeignException;
+import feign.Request;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = {PatientExistenceService.class, CacheConfiguration.class})
+@TestPropertySource(properties = "history.patient-cache.batch-size=2")
+class PatientExistenceServiceTest {
+    @Autowired
+    private PatientExistenceService patientExistenceService;
+    @Autowired
+    private Cache<Integer, Boolean> patientExistenceCache;
+    @MockBean
+    private PatientProxy patientProxy;
+
+    private PatientBean patient;
+
+    @BeforeEach
+    void setUp() {
+        patientExistenceCache.invalidateAll();
+        patient = new PatientBean(1, "TestNone", "Test", LocalDate.of(1966, 12, 31), "F", "1 Brookside St", "100-222-3333");
+    }
+
+    @Test
+    @DisplayName("An existing patient is asked to the patients microservice only once")
+    void exists_shouldCacheKnownPatient() {
+        when(patientProxy.getPatientById(1)).thenReturn(patient);
+
+        assertTrue(patientExistenceService.exists(1));
+        assertTrue(patientExistenceService.exists(1));
+
+        verify(patientProxy, times(1)).getPatientById(1);
+    }
+
+    @Test
+    @DisplayName("An unknown patient is cached too, until it is invalidated")
+    void exists_shouldCacheUnknownPatient_untilInvalidated() {
+        when(patientProxy.getPatientById(2)).thenThrow(new FeignException.NotFound("Not found",
+                Request.create(Request.HttpMethod.GET, "/patient/2", new HashMap<>(), null, StandardCharsets.UTF_8, null),
+                null, null));
+
+        assertFalse(patientExistenceService.exists(2));
+        assertFalse(patientExistenceService.exists(2));
+        verify(patientProxy, times(1)).getPatientById(2);
+
+        doReturn(patient).when(patientProxy).getPatientById(2);
+        patientExistenceService.invalidate(2);
+
+        assertTrue(patientExistenceService.exists(2));
+        verify(patientProxy, times(2)).getPatientById(2);
+    }
+
+    @Test
+    @DisplayName("Patients which are not cached are checked by batches, without caching the answers")
+    void exists_withSeveralPatients_shouldCheckUncachedOnesByBatches() {
+        when(patientProxy.getPatientById(1)).thenReturn(patient);
+        patientExistenceService.exists(1);
+        when(patientProxy.getPatientsByIds(List.of(2, 3))).thenReturn(new PatientBatchBean(List.of(), List.of(2, 3)));
+        PatientBean other = new PatientBean(4, "TestBorderline", "Test", LocalDate.of(1945, 6, 24), "M", "", "");
+        when(patientProxy.getPatientsByIds(List.of(4))).thenReturn(new PatientBatchBean(List.of(other), List.of()));
+
+        assertEquals(Map.of(1, true, 2, false, 3, false, 4, true), patientExistenceService.exists(List.of(1, 2, 3, 4)));
+
+        verify(patientProxy, times(2)).getPatientsByIds(anyCollection());
+        // a patient created or deleted during a batch call could be cached with an outdated answer
+        assertNull(patientExistenceCache.getIfPresent(2));
+        assertNull(patientExistenceCache.getIfPresent(4));
+    }
+
+    @Test
+    @DisplayName("A failed check is not cached")
+    void exists_whenPatientsUnreachable_shouldNotCache() {
+        when(patientProxy.getPatientById(3)).thenThrow(new RuntimeException("Connection refused"));
+
+        assertThrows(RuntimeException.class, () -> patientExistenceService.exists(3));
+
+        assertTrue(patientExistenceCache.asMap().isEmpty());
+    }
+}
@@ -0,0 +1,174 @@
+package com.abernathyclinic.history.service;
+
+import com.abernathyclinic.history.configuration.TriggerConfiguration;
+import com.abernathyclinic.history.model.Note;
+import com.abernathyclinic.history.model.PatientSummary;
+import com.abernathyclinic.history.repository.NoteRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import({PatientSummaryService.class, TriggerConfiguration.class})
+class PatientSummaryServiceTest {
+    @Autowired
+    private PatientSummaryService patientSummaryService;
+    @MockBean
+    private MongoTemplate mongoTemplate;
+    @MockBean
+    private NoteRepository noteRepository;
+    @MockBean
+    private HistoryVersionService historyVersionService;
+
+    private Note note;
+    private Note otherNote;
+
+    @BeforeEach
+    void setUp() {
+        note = new Note("NOTE001", 1, "Patient states that they are 'feeling terrific' Weight at or below recommended level, Fumeur");
+        otherNote = new Note("NOTE002", 1, "Hémoglobine A1C above recommended level, fumeur");
+    }
+
+    @Test
+    @DisplayName("getSummary returns stored summary without reading history")
+    void getSummary_whenStored_shouldNotReadHistory() {
+        PatientSummary stored = new PatientSummary(1, Map.of("Fumeur", 2), 2, Instant.now());
+        when(mongoTemplate.findById(1, PatientSummary.class)).thenReturn(stored);
+
+        assertSame(stored, patientSummaryService.getSummary(1));
+        verify(noteRepository, never()).findAllByPatId(any(Integer.class));
+    }
+
+    @Test
+    @DisplayName("getSummary builds summary from history on first request")
+    void getSummary_whenMissing_shouldBuildAndStoreSummary() {
+        when(historyVersionService.getSettledVersion(1)).thenReturn(4L);
+        when(noteRepository.findAllByPatId(1)).thenReturn(List.of(note, otherNote));
+
+        PatientSummary result = patientSummaryService.getSummary(1);
+
+        assertEquals(2, result.getNoteCount());
+        assertEquals(Map.of("Fumeur", 2, "Hémoglobine A1C", 1), result.getTriggerNoteCounts());
+        verify(mongoTemplate, times(1)).insert(result);
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(PatientSummary.class));
+    }
+
+    @Test
+    @DisplayName("getSummary does not store summary of patient without note")
+    void getSummary_withoutNotes_shouldNotStoreSummary() {
+        when(historyVersionService.getSettledVersion(1)).thenReturn(4L);
+        when(noteRepository.findAllByPatId(1)).thenReturn(List.of());
+
+        assertEquals(0, patientSummaryService.getSummary(1).getNoteCount());
+        verify(mongoTemplate, never()).insert(any(PatientSummary.class));
+    }
+
+    @Test
+    @DisplayName("getSummary does not store summary while a note of the patient is being written")
+    void getSummary_whenWriteInProgress_shouldNotStoreSummary() {
+        when(historyVersionService.getSettledVersion(1)).thenReturn(null);
+        when(noteRepository.findAllByPatId(1)).thenReturn(List.of(note, otherNote));
+
+        assertEquals(2, patientSummaryService.getSummary(1).getNoteCount());
+        verify(mongoTemplate, never()).insert(any(PatientSummary.class));
+    }
+
+    @Test
+    @DisplayName("getSummary discards summary when a note was updated while it was built")
+    void getSummary_whenNoteUpdatedMeanwhile_shouldDiscardSummary() {
+        // same number of notes, but the second one lost its triggers after it was read
+        when(historyVersionService.getSettledVersion(1)).thenReturn(4L).thenReturn(5L);
+        when(noteRepository.findAllByPatId(1)).thenReturn(List.of(note, otherNote));
+
+        patientSummaryService.getSummary(1);
+
+        verify(mongoTemplate, times(1)).insert(any(PatientSummary.class));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(PatientSummary.class));
+    }
+
+    @Test
+    @DisplayName("getSummary discards summary when a write was still in progress once it was stored")
+    void getSummary_whenWriteStillInProgress_shouldDiscardSummary() {
+        when(historyVersionService.getSettledVersion(1)).thenReturn(4L).thenReturn(null);
+        when(noteRepository.findAllByPatId(1)).thenReturn(List.of(note));
+
+        patientSummaryService.getSummary(1);
+
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(PatientSummary.class));
+    }
+
+    @Test
+    @DisplayName("noteCreated increments note count and counts of triggers found in note")
+    void noteCreated_shouldIncrementCounts() {
+        patientSummaryService.noteCreated(otherNote);
+
+        Document increments = capturedUpdate().getUpdateObject().get("$inc", Document.class);
+        assertEquals(1, increments.get("noteCount"));
+        assertEquals(1, increments.get("triggerNoteCounts.Fumeur"));
+        assertEquals(1, increments.get("triggerNoteCounts.Hémoglobine A1C"));
+    }
+
+    @Test
+    @DisplayName("noteUpdated only changes counts of triggers added or removed")
+    void noteUpdated_shouldApplyTriggerDifference() {
+        Note updatedNote = new Note(otherNote.getId(), otherNote.getPatId(), "Fumeur, Poids stable");
+
+        patientSummaryService.noteUpdated(otherNote, updatedNote);
+
+        Document increments = capturedUpdate().getUpdateObject().get("$inc", Document.class);
+        assertEquals(1, increments.get("triggerNoteCounts.Poids"));
+        assertEquals(-1, increments.get("triggerNoteCounts.Hémoglobine A1C"));
+        assertFalse(increments.containsKey("triggerNoteCounts.Fumeur"));
+        assertFalse(increments.containsKey("noteCount"));
+    }
+
+    @Test
+    @DisplayName("noteDeleted drops the summary rather than decrementing it")
+    void noteDeleted_shouldRemoveSummary() {
+        patientSummaryService.noteDeleted(otherNote);
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(PatientSummary.class));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(PatientSummary.class));
+    }
+
+    @Test
+    @DisplayName("invalidate removes the summaries of the given patients only")
+    void invalidate_shouldRemoveSummaries() {
+        patientSummaryService.invalidate(List.of(1, 2));
+        patientSummaryService.invalidate(List.of());
+
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).remove(removed.capture(), eq(PatientSummary.class));
+        assertEquals(List.of(1, 2), removed.getValue().getQueryObject().get("_id", Document.class).get("$in"));
+    }
+
+    private Update capturedUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(PatientSummary.class));
+        return update.getValue();
+    }
+}
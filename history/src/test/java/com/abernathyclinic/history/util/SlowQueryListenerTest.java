@@ -0,0 +1,83 @@
+package com.abernathyclinic.history.util;
+
+import com.abernathyclinic.history.bean.SlowQuery;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowQueryListenerTest {
+    private final ConnectionDescription connection =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+    private final SlowQueryListener listener = new SlowQueryListener(Duration.ofMillis(100), 2);
+
+    @Test
+    @DisplayName("Commands faster than the threshold are not recorded")
+    void fastCommand_shouldNotBeRecorded() {
+        run(1, "find", "{ find: 'abernathy_clinic', filter: { patId: 1 } }", 5);
+
+        assertTrue(listener.getSlowQueries().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Slow commands are recorded with their collection and filtered fields, without values")
+    void slowCommand_shouldBeRecorded() {
+        run(1, "find", "{ find: 'abernathy_clinic', filter: { patId: 1, createdAt: { $gt: 0 } } }", 150);
+        run(2, "aggregate", "{ aggregate: 'abernathy_clinic', pipeline: [ { $match: { content: 'x' } } ] }", 200);
+
+        List<SlowQuery> result = listener.getSlowQueries();
+
+        assertEquals(2, result.size());
+        assertEquals("aggregate", result.get(0).getCommandName());
+        assertEquals(List.of("content"), result.get(0).getFilterFields());
+        assertEquals("find", result.get(1).getCommandName());
+        assertEquals("abernathy_clinic", result.get(1).getCollection());
+        assertEquals(List.of("patId", "createdAt"), result.get(1).getFilterFields());
+        assertEquals(150, result.get(1).getDurationMillis());
+    }
+
+    @Test
+    @DisplayName("Only the most recent slow commands are kept")
+    void slowCommands_overCapacity_shouldDiscardOldest() {
+        run(1, "find", "{ find: 'first', filter: {} }", 150);
+        run(2, "find", "{ find: 'second', filter: {} }", 150);
+        run(3, "find", "{ find: 'third', filter: {} }", 150);
+
+        List<SlowQuery> result = listener.getSlowQueries();
+
+        assertEquals(2, result.size());
+        assertEquals("third", result.get(0).getCollection());
+        assertEquals("second", result.get(1).getCollection());
+    }
+
+    @Test
+    @DisplayName("Failed commands are not recorded")
+    void failedCommand_shouldNotBeRecorded() {
+        listener.commandStarted(new CommandStartedEvent(null, 1, connection, "mediscreen", "find",
+                BsonDocument.parse("{ find: 'abernathy_clinic', filter: {} }")));
+        listener.commandFailed(new CommandFailedEvent(null, 1, connection, "find",
+                TimeUnit.MILLISECONDS.toNanos(500), new RuntimeException("timeout")));
+
+        assertTrue(listener.getSlowQueries().isEmpty());
+    }
+
+    private void run(int requestId, String commandName, String command, long millis) {
+        listener.commandStarted(new CommandStartedEvent(null, requestId, connection, "mediscreen", commandName,
+                BsonDocument.parse(command)));
+        listener.commandSucceeded(new CommandSucceededEvent(null, requestId, connection, commandName,
+                new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(millis)));
+    }
+}
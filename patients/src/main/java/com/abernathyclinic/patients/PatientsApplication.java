@@ -2,8 +2,10 @@ package com.abernathyclinic.patients;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.openfeign.EnableFeignClients;
 
 @SpringBootApplication
+@EnableFeignClients("com.abernathyclinic")
 public class PatientsApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,19 @@
+package com.abernathyclinic.patients.bean;
+
+import com.abernathyclinic.patients.model.Patient;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Patients read by their IDs, in the order the IDs were requested, and the requested IDs no patient has.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientBatch {
+    private List<Patient> patients;
+    private List<Integer> missingIds;
+}
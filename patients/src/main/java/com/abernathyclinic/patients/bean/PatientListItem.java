@@ -0,0 +1,23 @@
+package com.abernathyclinic.patients.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Patient as shown in a list, read with a constructor expression instead of as a managed entity.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientListItem {
+    private Integer id;
+    private String family;
+    private String given;
+    private LocalDate dob;
+    private String sex;
+    private String address;
+    private String phone;
+}
@@ -0,0 +1,22 @@
+package com.abernathyclinic.patients.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Patient found by a name search.
+ * similarity is the share of the searched text found in the patient's names, 1 when all of it is found.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientMatch {
+    private Integer id;
+    private String family;
+    private String given;
+    private LocalDate dob;
+    private double similarity;
+}
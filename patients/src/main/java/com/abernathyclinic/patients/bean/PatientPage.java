@@ -0,0 +1,21 @@
+package com.abernathyclinic.patients.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page of patients.
+ * nextCursor is sent back to get the following page, it is null on the last page. estimatedTotal is the number of
+ * patients, exact for small tables and estimated from the table statistics otherwise.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientPage {
+    private List<PatientListItem> patients;
+    private String nextCursor;
+    private long estimatedTotal;
+}
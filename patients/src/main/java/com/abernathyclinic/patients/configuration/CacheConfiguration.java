@@ -0,0 +1,25 @@
+package com.abernathyclinic.patients.configuration;
+
+import com.abernathyclinic.patients.model.Patient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfiguration {
+    @Bean
+    public Cache<Integer, Patient> patientCache(
+            @Value("${patients.patient-cache.maximum-size:10000}") long maximumSize,
+            @Value("${patients.patient-cache.ttl:10m}") Duration ttl) {
+        // changes are invalidated by PatientService, the TTL only bounds how long a change made elsewhere goes unseen
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+}
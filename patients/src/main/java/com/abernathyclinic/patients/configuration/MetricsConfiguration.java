@@ -0,0 +1,17 @@
+package com.abernathyclinic.patients.configuration;
+
+import com.abernathyclinic.patients.model.Patient;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfiguration {
+    @Bean
+    public MeterBinder patientCacheMetrics(Cache<Integer, Patient> patientCache) {
+        // hit ratio, size and evictions of the patient cache
+        return registry -> CaffeineCacheMetrics.monitor(registry, patientCache, "patient");
+    }
+}
@@ -0,0 +1,41 @@
+package com.abernathyclinic.patients.configuration;
+
+import com.abernathyclinic.patients.service.PatientNameIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class NameIndexConfiguration {
+    @Bean
+    @ConditionalOnProperty(name = "patients.name-index.build-on-startup", havingValue = "true", matchIfMissing = true)
+    public ApplicationRunner nameIndexBuild(PatientNameIndex patientNameIndex,
+            @Value("${patients.name-index.build-attempts:3}") int attempts,
+            @Value("${patients.name-index.build-retry-delay:5s}") Duration retryDelay) {
+        // patients created from now on are indexed by PatientService, only those already there are read. An index
+        // missing patients would go unnoticed, the microservice rather fails to start and never gets ready
+        return args -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    patientNameIndex.build();
+                    return;
+                } catch (DataAccessException exception) {
+                    if (attempt >= attempts) {
+                        throw exception;
+                    }
+                    // patients indexed by the failed attempt are indexed again by the next one
+                    log.warn("Patient names could not be indexed, attempt " + attempt + " of " + attempts
+                            + " retried in " + retryDelay + ": " + exception.getMessage());
+                    Thread.sleep(retryDelay.toMillis());
+                }
+            }
+        };
+    }
+}
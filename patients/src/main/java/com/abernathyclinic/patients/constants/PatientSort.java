@@ -0,0 +1,42 @@
+package com.abernathyclinic.patients.constants;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sort orders of the patient list. Each order is completed up to a unique key, so that a page can start right after
+ * the last patient of the previous one, and matches an index of the patients table.
+ */
+public enum PatientSort {
+    // unique constraint on family, given name and birthday
+    FAMILY(List.of("family", "given", "dob", "id")),
+    GIVEN(List.of("given", "id")),
+    DOB(List.of("dob", "id")),
+    ID(List.of("id"));
+
+    private final List<String> keys;
+
+    PatientSort(List<String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * @return attributes of Patient the list is ordered by
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @param name name of sort order, in any case
+     * @return sort order
+     * @throws IllegalArgumentException if there is no sort order with this name
+     */
+    public static PatientSort of(String name) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.name().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Patients can not be sorted by " + name
+                        + ", sort by one of " + Arrays.toString(values()).toLowerCase()));
+    }
+}
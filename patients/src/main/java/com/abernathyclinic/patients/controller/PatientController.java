@@ -1,5 +1,9 @@
 package com.abernathyclinic.patients.controller;
 
+import com.abernathyclinic.patients.bean.PatientBatch;
+import com.abernathyclinic.patients.bean.PatientMatch;
+import com.abernathyclinic.patients.bean.PatientPage;
+import com.abernathyclinic.patients.constants.PatientSort;
 import com.abernathyclinic.patients.exception.AlreadyExistsException;
 import com.abernathyclinic.patients.exception.InvalidFormException;
 import com.abernathyclinic.patients.exception.PatientNotFoundException;
@@ -9,7 +13,9 @@ import com.abernathyclinic.patients.util.InvalidFormMessageBuilder;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
@@ -35,17 +41,38 @@ public class PatientController {
 		return patientService.createPatient(patient);
 	}
 
-	@Operation(summary = "Gets the list of patients")
+	@Operation(summary = "Gets a page of patients, the next page is requested with the nextCursor of the previous one")
 	@GetMapping
-	public List<Patient> getPatients() {
-		return patientService.getPatients();
+	public PatientPage getPatients(
+			@Parameter(description = "family, given, dob or id") @RequestParam(defaultValue = "family") String sort,
+			@Parameter(description = "asc or desc") @RequestParam(defaultValue = "asc") String direction,
+			@Parameter(description = "nextCursor of the previous page") @RequestParam(required = false) String cursor,
+			@Parameter(description = "number of patients per page") @RequestParam(defaultValue = "20") int size) {
+		return patientService.getPatientPage(PatientSort.of(sort), Sort.Direction.fromString(direction), cursor, size);
 	}
 
-	@Operation(summary = "Gets a patient by their id")
+	@Operation(summary = "Searches patients by the beginning of their family and/or given name, typos and accents aside")
+	@GetMapping("/search")
+	public List<PatientMatch> searchPatients(
+			@Parameter(description = "family and/or given name, or their beginning") @RequestParam String q,
+			@Parameter(description = "maximum number of patients returned") @RequestParam(defaultValue = "10") int limit) {
+		return patientService.searchPatients(q, limit);
+	}
+
+	@Operation(summary = "Gets a patient by their id, not modified if the ETag sent in If-None-Match is still current")
 	@GetMapping("/{id}")
-	public Patient getPatientById(@Parameter(description = "id of patient to be searched") @PathVariable Integer id) {
-		return patientService.getPatientById(id)
+	public ResponseEntity<Patient> getPatientById(
+			@Parameter(description = "id of patient to be searched") @PathVariable Integer id) {
+		Patient patient = patientService.getPatientById(id)
 				.orElseThrow(() -> new PatientNotFoundException("Patient with the provided ID does not exist."));
+		// a 304 without body is sent instead when the ETag matches If-None-Match
+		return ResponseEntity.ok().eTag(eTag(patient)).body(patient);
+	}
+
+	@Operation(summary = "Gets patients by their ids, with the ids of patients which do not exist")
+	@PostMapping("/batch")
+	public PatientBatch getPatientsByIds(@RequestBody List<Integer> ids) {
+		return patientService.getPatientsByIds(ids);
 	}
 
 	@Operation(summary = "Gets a patient by their family name")
@@ -81,5 +108,15 @@ public class PatientController {
 		patientService.deletePatient(patientService.getPatientById(Integer.valueOf(id)).get());
 	}
 
+	/**
+	 * Strong ETag of a patient, which changes on every update of the patient.
+	 *
+	 * @param patient patient
+	 * @return ETag
+	 */
+	private static String eTag(Patient patient) {
+		return "\"" + patient.getId() + "-" + patient.getVersion() + "\"";
+	}
+
 }
 
@@ -1,6 +1,7 @@
 package com.abernathyclinic.patients.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -21,10 +22,10 @@ public class ControllerExceptionHandler {
     }
 
     @ExceptionHandler(AlreadyExistsException.class)
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseStatus(HttpStatus.CONFLICT)
     public String alreadyExistsException(AlreadyExistsException alreadyExistsException) {
-        log.error("Illegal argument value.", alreadyExistsException);
-        return "Illegal argument value:\n" + alreadyExistsException.getMessage();
+        log.error("Patient already exists.", alreadyExistsException);
+        return "Patient already exists:\n" + alreadyExistsException.getMessage();
     }
 
     @ExceptionHandler(InvalidFormException.class)
@@ -34,6 +35,21 @@ public class ControllerExceptionHandler {
         return "Form has some incorrect fields.\n" + invalidFormException.getMessage();
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String optimisticLockingFailureException(OptimisticLockingFailureException optimisticLockingFailureException) {
+        log.error("Patient was changed by someone else.", optimisticLockingFailureException);
+        return "Patient was changed by someone else, reload it and try again:\n"
+                + optimisticLockingFailureException.getMessage();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String illegalArgumentException(IllegalArgumentException illegalArgumentException) {
+        log.error("Request has an invalid parameter.", illegalArgumentException);
+        return "Request has an invalid parameter:\n" + illegalArgumentException.getMessage();
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public String returnMessage(Exception exception) {
@@ -13,13 +13,16 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "patients")
+@Table(name = "patients", uniqueConstraints = @UniqueConstraint(name = "uk_patients_family_given_dob",
+        columnNames = {"family", "given", "dob"}))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -44,5 +47,18 @@ public class Patient {
     private String address;
     @Pattern(regexp = "^([0-9]{3}-[0-9]{3}-[0-9]{4})?$", message = "Phone number must be in 123-456-7890 format")
     private String phone;
+    // incremented on every update, used as ETag and to refuse an update based on an outdated read
+    @Version
+    private Long version;
+
+    public Patient(Integer id, String family, String given, LocalDate dob, String sex, String address, String phone) {
+        this.id = id;
+        this.family = family;
+        this.given = given;
+        this.dob = dob;
+        this.sex = sex;
+        this.address = address;
+        this.phone = phone;
+    }
 }
 
@@ -0,0 +1,11 @@
+package com.abernathyclinic.patients.proxy;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+
+@FeignClient(name = "history", url = "${history.url}")
+public interface HistoryProxy {
+    @PostMapping("/patHistory/invalidate/{patientId}")
+    void invalidatePatient(@PathVariable("patientId") Integer patientId);
+}
@@ -0,0 +1,27 @@
+package com.abernathyclinic.patients.repository;
+
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.constants.PatientSort;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+public interface PatientRepositoryCustom {
+    /**
+     * Reads a page of the patient list.
+     *
+     * @param sort      sort order
+     * @param direction sort direction
+     * @param after     values of the sort keys of the last patient of the previous page, null for the first page
+     * @param size      maximum number of patients
+     * @return patients following the given key
+     */
+    List<PatientListItem> findPage(PatientSort sort, Sort.Direction direction, List<Object> after, int size);
+
+    /**
+     * Counts patients, from the table statistics once there are too many of them for an exact count to be cheap.
+     *
+     * @return number of patients, possibly estimated
+     */
+    long estimateCount();
+}
@@ -0,0 +1,78 @@
+package com.abernathyclinic.patients.repository;
+
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.constants.PatientSort;
+import com.abernathyclinic.patients.model.Patient;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PatientRepositoryCustomImpl implements PatientRepositoryCustom {
+    // below this estimate, the InnoDB statistics are too rough and counting is cheap anyway
+    static final long EXACT_COUNT_THRESHOLD = 10_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PatientListItem> findPage(PatientSort sort, Sort.Direction direction, List<Object> after, int size) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PatientListItem> query = builder.createQuery(PatientListItem.class);
+        Root<Patient> patient = query.from(Patient.class);
+        query.select(builder.construct(PatientListItem.class, patient.get("id"), patient.get("family"),
+                patient.get("given"), patient.get("dob"), patient.get("sex"), patient.get("address"),
+                patient.get("phone")));
+        if (after != null) {
+            query.where(after(builder, patient, sort.getKeys(), after, direction));
+        }
+        List<Order> orders = new ArrayList<>();
+        sort.getKeys().forEach(key -> orders.add(direction.isDescending()
+                ? builder.desc(patient.get(key)) : builder.asc(patient.get(key))));
+        query.orderBy(orders);
+        return entityManager.createQuery(query).setMaxResults(size).getResultList();
+    }
+
+    @Override
+    public long estimateCount() {
+        List<?> statistics = entityManager.createNativeQuery("SELECT TABLE_ROWS FROM information_schema.TABLES "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'patients'")
+                .getResultList();
+        if (!statistics.isEmpty() && statistics.get(0) instanceof Number estimate
+            && estimate.longValue() >= EXACT_COUNT_THRESHOLD) {
+            return estimate.longValue();
+        }
+        return entityManager.createQuery("SELECT COUNT(p) FROM Patient p", Long.class).getSingleResult();
+    }
+
+    /**
+     * Keyset condition: the key of the patient follows the given one in the list order, i.e. its first key differs
+     * and follows, or is equal and the second one follows, and so on.
+     */
+    private static Predicate after(CriteriaBuilder builder, Root<Patient> patient, List<String> keys, List<Object> values,
+            Sort.Direction direction) {
+        Predicate[] alternatives = new Predicate[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            Predicate[] conditions = new Predicate[i + 1];
+            for (int j = 0; j < i; j++) {
+                conditions[j] = builder.equal(patient.get(keys.get(j)), values.get(j));
+            }
+            conditions[i] = follows(builder, patient.get(keys.get(i)), (Comparable<?>) values.get(i), direction);
+            alternatives[i] = builder.and(conditions);
+        }
+        return builder.or(alternatives);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate follows(CriteriaBuilder builder, Path path, Comparable value, Sort.Direction direction) {
+        return direction.isDescending() ? builder.lessThan(path, value) : builder.greaterThan(path, value);
+    }
+}
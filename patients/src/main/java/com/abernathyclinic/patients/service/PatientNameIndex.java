@@ -0,0 +1,407 @@
+package com.abernathyclinic.patients.service;
+
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.bean.PatientMatch;
+import com.abernathyclinic.patients.constants.PatientSort;
+import com.abernathyclinic.patients.repository.PatientRepository;
+import com.abernathyclinic.patients.util.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index of patient names, for searches as the name is typed.
+ * Names are folded by TextNormalizer, then cut into trigrams, each word being padded with two boundaries before
+ * and one after: "Dupont" gives "  d", " du", "dup", "upo", "pon", "ont" and "nt ". A patient matches when enough of the
+ * trigrams of the searched text are among theirs, which tolerates accents, case and a typo or two. The last searched
+ * word is not padded after, as it is usually a prefix still being typed.
+ * The index is filled from the database at startup and kept current by PatientService once its changes are committed.
+ */
+@Service
+@Slf4j
+public class PatientNameIndex {
+    static final int MAX_QUERY_LENGTH = 64;
+    // trigrams are numbered over this alphabet: word boundary, a to z, 0 to 9 and any other letter
+    private static final int BOUNDARY = 0;
+    private static final int OTHER = 37;
+    private static final int ALPHABET = 38;
+    private static final int TRIGRAMS = ALPHABET * ALPHABET * ALPHABET;
+    private static final int BUILD_PAGE_SIZE = 10_000;
+    // removed patients are only forgotten by the next compaction, at least this many of them
+    private static final int MIN_REMOVED_BEFORE_COMPACTION = 1_000;
+
+    @Autowired
+    PatientRepository patientRepository;
+    @Value("${patients.name-index.min-similarity:0.5}")
+    double minSimilarity;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // indexed patients by entry number, null once removed
+    private Entry[] entries = new Entry[1024];
+    private int entryCount;
+    private int removedCount;
+    private final Map<Integer, Integer> entryByPatientId = new HashMap<>();
+    // numbers of the entries holding each trigram, null for trigrams no name holds
+    private int[][] postings = new int[TRIGRAMS][];
+    private int[] postingSizes = new int[TRIGRAMS];
+    // numbers the puts and removes, those made while build() runs are kept by patient so that older pages skip them
+    private long changeCount;
+    private boolean building;
+    private final Map<Integer, Long> changesDuringBuild = new HashMap<>();
+    // trigrams shared with each entry, reused by the searches of each thread and zeroed after each of them
+    private final ThreadLocal<short[]> sharedCounts = ThreadLocal.withInitial(() -> new short[0]);
+
+    /**
+     * Indexes every patient of the database, reading them by pages of patient ids. A patient put or removed once their
+     * page started being read is left as put or removed, the page being possibly older.
+     */
+    public void build() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            building = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            List<Object> after = null;
+            List<PatientListItem> page;
+            do {
+                long pageChange = changeCount();
+                page = patientRepository.findPage(PatientSort.ID, Sort.Direction.ASC, after, BUILD_PAGE_SIZE);
+                lock.writeLock().lock();
+                try {
+                    for (PatientListItem patient : page) {
+                        Long change = changesDuringBuild.get(patient.getId());
+                        if (change == null || change <= pageChange) {
+                            add(patient.getId(), patient.getFamily(), patient.getGiven(), patient.getDob());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!page.isEmpty()) {
+                    after = List.of(page.get(page.size() - 1).getId());
+                }
+            } while (page.size() == BUILD_PAGE_SIZE);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                building = false;
+                changesDuringBuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Indexed names of " + size() + " patients in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Indexes a new patient or the new names of a patient.
+     *
+     * @param id     patient ID
+     * @param family family name
+     * @param given  given name
+     * @param dob    birthday, returned with the matches to tell homonyms apart
+     */
+    public void put(Integer id, String family, String given, LocalDate dob) {
+        Assert.notNull(id, "Patient ID must not be empty.");
+        lock.writeLock().lock();
+        try {
+            changed(id);
+            add(id, family, given, dob);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a patient from the index, if indexed.
+     *
+     * @param id patient ID
+     */
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            changed(id);
+            Integer entry = entryByPatientId.remove(id);
+            if (entry != null) {
+                entries[entry] = null;
+                removedCount++;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the patients whose names are the closest to a text, best match first. Ties go to the shortest names,
+     * then by family and given name.
+     *
+     * @param text  family and/or given name, or their beginning, in any case and with or without accents
+     * @param limit maximum number of patients returned
+     * @return matching patients, empty if the text holds no letter or digit
+     */
+    public List<PatientMatch> search(String text, int limit) {
+        Assert.notNull(text, "Searched text must not be empty.");
+        Assert.isTrue(text.length() <= MAX_QUERY_LENGTH, "Searched text must be at most " + MAX_QUERY_LENGTH + " characters long");
+        Assert.isTrue(limit > 0, "Limit must be positive");
+        int[] queryTrigrams = trigrams(text, true);
+        if (queryTrigrams.length == 0) {
+            return List.of();
+        }
+        int required = Math.max(1, (int) Math.ceil(minSimilarity * queryTrigrams.length));
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1);
+        lock.readLock().lock();
+        // trigrams shared with each entry, an entry becomes a candidate when it shares enough of them
+        short[] shared = sharedCounts.get();
+        if (shared.length < entryCount) {
+            shared = new short[entries.length];
+            sharedCounts.set(shared);
+        }
+        try {
+            int[] candidates = new int[64];
+            int candidateCount = 0;
+            for (int trigram : queryTrigrams) {
+                int[] posting = postings[trigram];
+                for (int i = 0; i < postingSizes[trigram]; i++) {
+                    int entry = posting[i];
+                    if (++shared[entry] == required && entries[entry] != null) {
+                        if (candidateCount == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                        }
+                        candidates[candidateCount++] = entry;
+                    }
+                }
+            }
+            // short prefixes have many candidates, most of them are skipped without being allocated
+            for (int i = 0; i < candidateCount; i++) {
+                Entry entry = entries[candidates[i]];
+                long rank = rank(shared[candidates[i]], entry);
+                if (best.size() == limit && compare(rank, entry, best.peek().rank, best.peek().entry) <= 0) {
+                    continue;
+                }
+                best.add(new Candidate(entry, shared[candidates[i]], rank));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        } finally {
+            // only the entries of the searched postings were counted, the others are still zero
+            for (int trigram : queryTrigrams) {
+                int[] posting = postings[trigram];
+                for (int i = 0; i < postingSizes[trigram]; i++) {
+                    shared[posting[i]] = 0;
+                }
+            }
+            lock.readLock().unlock();
+        }
+        PatientMatch[] matches = new PatientMatch[best.size()];
+        for (int i = matches.length - 1; i >= 0; i--) {
+            Candidate candidate = best.poll();
+            matches[i] = new PatientMatch(candidate.entry.patientId, candidate.entry.family, candidate.entry.given,
+                    candidate.entry.dob, (double) candidate.shared / queryTrigrams.length);
+        }
+        return Arrays.asList(matches);
+    }
+
+    /**
+     * @return number of patients indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entryByPatientId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long changeCount() {
+        lock.readLock().lock();
+        try {
+            return changeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Numbers a put or remove of a patient, kept while build() runs. Runs under the write lock.
+     */
+    private void changed(Integer id) {
+        changeCount++;
+        if (building) {
+            changesDuringBuild.put(id, changeCount);
+        }
+    }
+
+    /**
+     * Adds a patient, replacing their former entry. Runs under the write lock.
+     */
+    private void add(Integer id, String family, String given, LocalDate dob) {
+        Integer former = entryByPatientId.remove(id);
+        if (former != null) {
+            entries[former] = null;
+            removedCount++;
+        }
+        int[] nameTrigrams = trigrams(family + " " + given, false);
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entryCount + (entryCount >> 1));
+        }
+        int entry = entryCount++;
+        entries[entry] = new Entry(id, family, given, dob, nameTrigrams.length);
+        entryByPatientId.put(id, entry);
+        for (int trigram : nameTrigrams) {
+            int[] posting = postings[trigram];
+            int size = postingSizes[trigram];
+            if (posting == null) {
+                posting = postings[trigram] = new int[4];
+            } else if (size == posting.length) {
+                posting = postings[trigram] = Arrays.copyOf(posting, size + (size >> 1));
+            }
+            posting[size] = entry;
+            postingSizes[trigram] = size + 1;
+        }
+    }
+
+    /**
+     * Indexes the remaining patients again to forget the removed ones, once they make half of the entries, so that
+     * searches do not go through more removed entries than live ones. Runs under the write lock.
+     */
+    private void compactIfNeeded() {
+        if (removedCount < MIN_REMOVED_BEFORE_COMPACTION || removedCount * 2 <= entryCount) {
+            return;
+        }
+        Entry[] remaining = entries;
+        int remainingCount = entryCount;
+        entries = new Entry[Math.max(1024, entryByPatientId.size())];
+        entryCount = 0;
+        removedCount = 0;
+        entryByPatientId.clear();
+        postings = new int[TRIGRAMS][];
+        postingSizes = new int[TRIGRAMS];
+        for (int i = 0; i < remainingCount; i++) {
+            Entry entry = remaining[i];
+            if (entry != null) {
+                add(entry.patientId, entry.family, entry.given, entry.dob);
+            }
+        }
+    }
+
+    /**
+     * Distinct trigrams of a text, once folded.
+     *
+     * @param text   text
+     * @param prefix whether the last word may be incomplete, in which case it is not padded after
+     * @return trigram numbers, sorted
+     */
+    static int[] trigrams(String text, boolean prefix) {
+        String normalized = TextNormalizer.normalize(text);
+        int[] trigrams = new int[normalized.length() * 2 + 1];
+        int count = 0;
+        int first = BOUNDARY;
+        int second = BOUNDARY;
+        for (int i = 0; i < normalized.length(); i++) {
+            int code = code(normalized.charAt(i));
+            if (code == BOUNDARY) {
+                if (second != BOUNDARY) {
+                    trigrams[count++] = (first * ALPHABET + second) * ALPHABET + BOUNDARY;
+                    first = second = BOUNDARY;
+                }
+                continue;
+            }
+            trigrams[count++] = (first * ALPHABET + second) * ALPHABET + code;
+            first = second;
+            second = code;
+        }
+        if (second != BOUNDARY && !prefix) {
+            trigrams[count++] = (first * ALPHABET + second) * ALPHABET + BOUNDARY;
+        }
+        return Arrays.stream(trigrams, 0, count).sorted().distinct().toArray();
+    }
+
+    /**
+     * Rank of a candidate, higher for more shared trigrams, then for shorter names.
+     */
+    private static long rank(int shared, Entry entry) {
+        return ((long) shared << 32) - entry.trigramCount;
+    }
+
+    /**
+     * Compares two candidates, the best being the greatest: the highest rank, then the first by family name, given
+     * name and patient ID.
+     */
+    private static int compare(long rank, Entry entry, long otherRank, Entry otherEntry) {
+        int comparison = Long.compare(rank, otherRank);
+        if (comparison == 0) {
+            comparison = otherEntry.family.compareTo(entry.family);
+        }
+        if (comparison == 0) {
+            comparison = otherEntry.given.compareTo(entry.given);
+        }
+        return comparison != 0 ? comparison : Integer.compare(otherEntry.patientId, entry.patientId);
+    }
+
+    private static int code(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1 + c - 'a';
+        } else if (c >= '0' && c <= '9') {
+            return 27 + c - '0';
+        } else if (Character.isLetter(c)) {
+            return OTHER;
+        }
+        // spaces, hyphens and apostrophes separate words
+        return BOUNDARY;
+    }
+
+    private static final class Entry {
+        private final int patientId;
+        private final String family;
+        private final String given;
+        private final LocalDate dob;
+        private final int trigramCount;
+
+        private Entry(int patientId, String family, String given, LocalDate dob, int trigramCount) {
+            this.patientId = patientId;
+            this.family = family;
+            this.given = given;
+            this.dob = dob;
+            this.trigramCount = trigramCount;
+        }
+    }
+
+    /**
+     * Candidate match, ordered from the worst to the best so that the worst is polled first from a priority queue.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        private final Entry entry;
+        private final int shared;
+        private final long rank;
+
+        private Candidate(Entry entry, int shared, long rank) {
+            this.entry = entry;
+            this.shared = shared;
+            this.rank = rank;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return compare(rank, entry, other.rank, other.entry);
+        }
+    }
+}
@@ -1,30 +1,72 @@
 package com.abernathyclinic.patients.service;
 
+import com.abernathyclinic.patients.bean.PatientBatch;
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.bean.PatientMatch;
+import com.abernathyclinic.patients.bean.PatientPage;
+import com.abernathyclinic.patients.constants.PatientSort;
 import com.abernathyclinic.patients.exception.AlreadyExistsException;
 import com.abernathyclinic.patients.exception.PatientNotFoundException;
 import com.abernathyclinic.patients.model.Patient;
+import com.abernathyclinic.patients.proxy.AssessmentProxy;
+import com.abernathyclinic.patients.proxy.HistoryProxy;
 import com.abernathyclinic.patients.repository.PatientRepository;
+import com.abernathyclinic.patients.util.PatientCursor;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class PatientService {
+    // unique constraint on family, given name and birthday, see db/migration
+    static final String IDENTITY_CONSTRAINT = "uk_patients_family_given_dob";
+
     @Autowired
     PatientRepository patientRepository;
+    @Autowired
+    AssessmentProxy assessmentProxy;
+    @Autowired
+    HistoryProxy historyProxy;
+    @Autowired
+    PatientNameIndex patientNameIndex;
+    @Autowired
+    Cache<Integer, Patient> patientCache;
+    @Value("${patients.page.max-size:100}")
+    int maxPageSize;
+    @Value("${patients.name-index.max-results:50}")
+    int maxSearchResults;
+    @Value("${patients.batch.max-size:1000}")
+    int maxBatchSize;
+    @Value("${patients.batch.chunk-size:500}")
+    int batchChunkSize;
 
     public PatientService(PatientRepository patientRepository) {
         this.patientRepository = patientRepository;
     }
 
     /**
-     * Saves new patient to database
+     * Saves new patient to database. Duplicates are refused by the unique constraint on family, given name and
+     * birthday, so that two concurrent registrations of the same patient can not both succeed.
      *
      * @param patient Patient to save
      * @return Patient with ID if no error
@@ -32,28 +74,116 @@ public class PatientService {
      */
     @Transactional
     public Patient createPatient(Patient patient) {
-        if (patientRepository.findByFamilyAndGivenAndDob(patient.getFamily(), patient.getGiven(), patient.getDob()).isPresent()) {
-            String alreadyExistsErrorMessage = "Patient " + patient.getFamily() + " " + patient.getGiven() + ", born " + patient.getDob() + " already exists.";
-            log.error(alreadyExistsErrorMessage);
-            throw new AlreadyExistsException(alreadyExistsErrorMessage);
-        }
         log.debug("Saving new patient " + toString(patient));
-        return patientRepository.save(patient);
+        Patient createdPatient;
+        try {
+            createdPatient = patientRepository.save(patient);
+        } catch (DataIntegrityViolationException exception) {
+            throw alreadyExists(patient, exception);
+        }
+        // the history microservice may have cached that this ID did not exist
+        afterCommit(() -> {
+            index(createdPatient);
+            notifyHistory(createdPatient.getId());
+        });
+        return createdPatient;
+    }
+
+    /**
+     * Gets a page of the patient list. Pages are read by keyset: a page starts right after the last patient of the
+     * previous one, which costs the same whatever the position of the page in the list.
+     *
+     * @param sort      sort order
+     * @param direction sort direction
+     * @param cursor    cursor of the previous page, null for the first page
+     * @param size      number of patients per page
+     * @return page of patients with the cursor of the next page
+     * @throws IllegalArgumentException if the size is out of bounds or the cursor is invalid for this order
+     */
+    public PatientPage getPatientPage(PatientSort sort, Sort.Direction direction, String cursor, int size) {
+        Assert.isTrue(size > 0 && size <= maxPageSize, "Page size must be between 1 and " + maxPageSize);
+        List<Object> after = cursor == null ? null : PatientCursor.decode(cursor, sort, direction);
+        // one more patient tells whether there is a next page
+        List<PatientListItem> patients = new ArrayList<>(patientRepository.findPage(sort, direction, after, size + 1));
+        String nextCursor = null;
+        if (patients.size() > size) {
+            patients.remove(size);
+            nextCursor = PatientCursor.encode(sort, direction, patients.get(size - 1));
+        }
+        return new PatientPage(patients, nextCursor, patientRepository.estimateCount());
     }
 
-    public List<Patient> getPatients() {
-        return patientRepository.findAll();
+    /**
+     * Finds the patients whose names are the closest to a text, typos and accents aside.
+     *
+     * @param text  family and/or given name, or their beginning
+     * @param limit maximum number of patients returned
+     * @return matching patients, best match first
+     * @throws IllegalArgumentException if the text is too long or the limit is out of bounds
+     */
+    public List<PatientMatch> searchPatients(String text, int limit) {
+        Assert.isTrue(limit > 0 && limit <= maxSearchResults, "Limit must be between 1 and " + maxSearchResults);
+        return patientNameIndex.search(text, limit);
     }
 
     /**
-     * Finds a patient thanks to their ID.
+     * Finds a patient thanks to their ID. Patients are read through a cache, which is invalidated once a change of the
+     * patient is committed; unknown IDs are not cached. The patient returned may be shared and must not be modified.
      *
      * @param id Patient ID.
      * @return found patient or empty optional.
      */
     public Optional<Patient> getPatientById(Integer id) {
         Assert.notNull(id, "Patient ID must not be empty. Please provide an ID");
-        return patientRepository.findById(id);
+        return Optional.ofNullable(patientCache.get(id, patientId -> patientRepository.findById(patientId)
+                .map(PatientService::copy)
+                .orElse(null)));
+    }
+
+    /**
+     * Finds patients thanks to their IDs, taken from the same cache as getPatientById when cached. The others are read
+     * with one query per chunk of IDs, so that the IN list of a query stays short, and are not cached: unlike a
+     * single load, a bulk load does not hold back the eviction of a patient changed meanwhile, and could cache the
+     * patient as they were before the change.
+     *
+     * @param ids Patient IDs, duplicates and nulls are ignored
+     * @return found patients in the order of their IDs, and the IDs of patients which do not exist
+     * @throws IllegalArgumentException if there are more IDs than patients.batch.max-size
+     */
+    public PatientBatch getPatientsByIds(Collection<Integer> ids) {
+        Assert.notNull(ids, "Patient IDs must be provided.");
+        Set<Integer> uniqueIds = ids.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Assert.isTrue(uniqueIds.size() <= maxBatchSize, "At most " + maxBatchSize + " patients can be read at once");
+        Map<Integer, Patient> found = new HashMap<>(patientCache.getAllPresent(uniqueIds));
+        found.putAll(findAllById(uniqueIds.stream().filter(id -> !found.containsKey(id)).toList()));
+        List<Patient> patients = new ArrayList<>(found.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : uniqueIds) {
+            Patient patient = found.get(id);
+            if (patient != null) {
+                patients.add(patient);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new PatientBatch(patients, missingIds);
+    }
+
+    /**
+     * Reads patients by chunks of IDs.
+     *
+     * @param ids Patient IDs
+     * @return every patient found by ID
+     */
+    private Map<Integer, Patient> findAllById(List<Integer> ids) {
+        Map<Integer, Patient> found = new HashMap<>(ids.size());
+        for (int from = 0; from < ids.size(); from += batchChunkSize) {
+            patientRepository.findAllById(ids.subList(from, Math.min(from + batchChunkSize, ids.size())))
+                    .forEach(patient -> found.put(patient.getId(), patient));
+        }
+        return found;
     }
 
     /**
@@ -69,18 +199,44 @@ public class PatientService {
 
 
     /**
-     * Updates a patient.
+     * Updates a patient. The risk assessment of the patient is invalidated if their birthday or sex changed.
+     * The update fails with an optimistic locking failure if the patient was changed since the version sent was read.
      *
      * @param patient Patient to be updated
      * @return updated patient
+     * @throws AlreadyExistsException if another patient has the same family and given name and birthday
      */
     @Transactional
     public Patient updatePatient(Patient patient) {
         Assert.notNull(patient, "Please provide a Patient to update");
         String patientString = toString(patient);
-        if (patientRepository.existsById(patient.getId())) {
+        Optional<Patient> existingPatient = patientRepository.findById(patient.getId());
+        if (existingPatient.isPresent()) {
+            // read before saving, the managed entity is overwritten by the merge
+            boolean riskFactorsChanged = !Objects.equals(existingPatient.get().getDob(), patient.getDob())
+                                         || !Objects.equals(existingPatient.get().getSex(), patient.getSex());
+            // a client which did not send the version it read overwrites whatever version is stored
+            if (patient.getVersion() == null) {
+                patient.setVersion(existingPatient.get().getVersion());
+            }
             log.debug("Updating patient " + patientString);
-            return patientRepository.save(patient);
+            Patient updatedPatient;
+            // flushed here so that taking the names and birthday of another patient is refused like a duplicate
+            // creation, instead of failing on commit
+            try {
+                updatedPatient = patientRepository.save(patient);
+                patientRepository.flush();
+            } catch (DataIntegrityViolationException exception) {
+                throw alreadyExists(patient, exception);
+            }
+            afterCommit(() -> {
+                patientCache.invalidate(updatedPatient.getId());
+                index(updatedPatient);
+                if (riskFactorsChanged) {
+                    notifyAssessments(updatedPatient.getId());
+                }
+            });
+            return updatedPatient;
         } else {
             String patientNotFoundErrorMessage = "Patient " + patientString + " does not exist.";
             log.error(patientNotFoundErrorMessage);
@@ -100,6 +256,12 @@ public class PatientService {
         if (patientRepository.existsById(patient.getId())) {
             patientRepository.delete(patient);
             log.debug("Deleted patient " + patientString);
+            afterCommit(() -> {
+                patientCache.invalidate(patient.getId());
+                patientNameIndex.remove(patient.getId());
+                notifyHistory(patient.getId());
+                notifyAssessments(patient.getId());
+            });
         } else {
             String deleteErrorMessage = "Patient " + patientString + " does not exist.";
             log.error(deleteErrorMessage);
@@ -107,6 +269,90 @@ public class PatientService {
         }
     }
 
+    /**
+     * Tells whether a failed write broke the unique constraint on family, given name and birthday.
+     *
+     * @param patient   patient written
+     * @param exception failure of the write
+     * @return AlreadyExistsException if the patient has the same names and birthday as another one
+     * @throws DataIntegrityViolationException the failure itself if another constraint was broken
+     */
+    private AlreadyExistsException alreadyExists(Patient patient, DataIntegrityViolationException exception) {
+        if (!String.valueOf(exception.getMostSpecificCause().getMessage()).contains(IDENTITY_CONSTRAINT)) {
+            throw exception;
+        }
+        String alreadyExistsErrorMessage = "Patient " + patient.getFamily() + " " + patient.getGiven() + ", born " + patient.getDob() + " already exists.";
+        log.error(alreadyExistsErrorMessage);
+        return new AlreadyExistsException(alreadyExistsErrorMessage);
+    }
+
+    /**
+     * Runs a notification once the current transaction is committed, so that other microservices can not read the
+     * patient before the change is visible.
+     *
+     * @param notification notification to send
+     */
+    private void afterCommit(Runnable notification) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notification.run();
+                }
+            });
+        } else {
+            notification.run();
+        }
+    }
+
+    /**
+     * Indexes the names of a patient created or updated.
+     *
+     * @param patient saved patient
+     */
+    private void index(Patient patient) {
+        patientNameIndex.put(patient.getId(), patient.getFamily(), patient.getGiven(), patient.getDob());
+    }
+
+    /**
+     * Invalidates the risk assessment of a patient. A notification failure is only logged.
+     *
+     * @param patientId ID of patient whose risk assessment is outdated
+     */
+    private void notifyAssessments(Integer patientId) {
+        try {
+            assessmentProxy.invalidateAssessment(patientId);
+        } catch (RuntimeException exception) {
+            log.warn("Could not invalidate risk assessment of patient " + patientId + ": " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Tells the history microservice that a patient was created or deleted. A notification failure is only logged,
+     * the history microservice forgets about the patient after a while anyway.
+     *
+     * @param patientId ID of patient created or deleted
+     */
+    private void notifyHistory(Integer patientId) {
+        try {
+            historyProxy.invalidatePatient(patientId);
+        } catch (RuntimeException exception) {
+            log.warn("Could not notify history of changes on patient " + patientId + ": " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Copies a patient before caching them: the entity read stays managed by the request and a later merge would
+     * change it in place.
+     *
+     * @param patient entity read
+     * @return detached copy
+     */
+    private static Patient copy(Patient patient) {
+        return new Patient(patient.getId(), patient.getFamily(), patient.getGiven(), patient.getDob(), patient.getSex(),
+                patient.getAddress(), patient.getPhone(), patient.getVersion());
+    }
+
     /**
      * Returns String containing patient's family and given name and birthday.
      * @param patient Patient to retrieve information for
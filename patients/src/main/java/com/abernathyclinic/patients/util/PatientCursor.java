@@ -0,0 +1,80 @@
+package com.abernathyclinic.patients.util;
+
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.constants.PatientSort;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position in the patient list: the sort order and the key of the last patient of a page, so that the next page is
+ * read from the index right after it instead of skipping every previous row.
+ * A cursor is made of the sort order, the direction and the base64url encoded values of the key, separated by dots.
+ */
+public class PatientCursor {
+
+    public static String encode(PatientSort sort, Sort.Direction direction, PatientListItem last) {
+        StringBuilder cursor = new StringBuilder(sort.name().toLowerCase()).append('.').append(direction.name().toLowerCase());
+        sort.getKeys().forEach(key -> cursor.append('.').append(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(keyOf(last, key)).getBytes(StandardCharsets.UTF_8))));
+        return cursor.toString();
+    }
+
+    /**
+     * Reads the key values of a cursor.
+     *
+     * @param cursor    cursor received
+     * @param sort      sort order of the requested page
+     * @param direction direction of the requested page
+     * @return values of the sort keys, in order
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another sort order
+     */
+    public static List<Object> decode(String cursor, PatientSort sort, Sort.Direction direction) {
+        String[] parts = cursor.split("\\.", -1);
+        if (parts.length != sort.getKeys().size() + 2 || !parts[0].equalsIgnoreCase(sort.name())
+            || !parts[1].equalsIgnoreCase(direction.name())) {
+            throw new IllegalArgumentException("Cursor " + cursor + " was not issued for patients sorted by "
+                    + sort.name().toLowerCase() + " " + direction.name().toLowerCase());
+        }
+        List<Object> values = new ArrayList<>(sort.getKeys().size());
+        try {
+            for (int i = 0; i < sort.getKeys().size(); i++) {
+                String value = new String(Base64.getUrlDecoder().decode(parts[i + 2]), StandardCharsets.UTF_8);
+                values.add(parse(sort.getKeys().get(i), value));
+            }
+        } catch (RuntimeException malformed) {
+            throw new IllegalArgumentException("Cursor " + cursor + " is malformed", malformed);
+        }
+        return values;
+    }
+
+    private static Object keyOf(PatientListItem patient, String key) {
+        switch (key) {
+            case "id":
+                return patient.getId();
+            case "family":
+                return patient.getFamily();
+            case "given":
+                return patient.getGiven();
+            case "dob":
+                return patient.getDob();
+            default:
+                throw new IllegalStateException("Unknown sort key " + key);
+        }
+    }
+
+    private static Object parse(String key, String value) {
+        switch (key) {
+            case "id":
+                return Integer.valueOf(value);
+            case "dob":
+                return LocalDate.parse(value);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.abernathyclinic.patients.util;
+
+import java.text.Normalizer;
+
+/**
+ * Folds case and accents of patient names, so that "Lefèvre", "LEFEVRE" and "lefevre" are indexed alike.
+ * Spaces, hyphens and apostrophes are kept as they are, the name index reads them as word separators.
+ */
+public final class TextNormalizer {
+    /** Folded value of combining accents, which are dropped from names. */
+    public static final char IGNORED = '\0';
+
+    /** Covers the Latin letters of names, up to Latin Extended-B, and combining accents. */
+    private static final char[] FOLDING_TABLE = buildFoldingTable(0x0370);
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Folds one char of a name.
+     *
+     * @param c char to fold
+     * @return lower case char without accent, or {@link #IGNORED} for a combining accent
+     */
+    public static char fold(char c) {
+        return c < FOLDING_TABLE.length ? FOLDING_TABLE[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * Folds a whole name.
+     *
+     * @param name family and/or given name
+     * @return lower case name without accents
+     */
+    public static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char folded = fold(name.charAt(i));
+            if (folded != IGNORED) {
+                normalized.append(folded);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static char[] buildFoldingTable(int size) {
+        char[] table = new char[size];
+        for (char c = 0; c < size; c++) {
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                table[c] = IGNORED;
+            } else {
+                // keep the base letter of the canonical decomposition, 'É' -> 'e' + U+0301 -> 'e'
+                String decomposed = Normalizer.normalize(String.valueOf(Character.toLowerCase(c)), Normalizer.Form.NFD);
+                table[c] = decomposed.length() == 1 || Character.getType(decomposed.charAt(1)) == Character.NON_SPACING_MARK
+                           ? decomposed.charAt(0)
+                           : Character.toLowerCase(c);
+            }
+        }
+        // letters with a stroke have no canonical decomposition, as in "Søren" or "Łukasz"
+        table['ø'] = 'o';
+        table['Ø'] = 'o';
+        table['đ'] = 'd';
+        table['Đ'] = 'd';
+        table['ł'] = 'l';
+        table['Ł'] = 'l';
+        return table;
+    }
+}
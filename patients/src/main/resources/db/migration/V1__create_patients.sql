@@ -0,0 +1,10 @@
+-- schema created by database/initDb.sql before migrations, existing databases are baselined at this version
+CREATE TABLE patients (
+    patient_id INT NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    family VARCHAR(50) NOT NULL,
+    given VARCHAR(50) NOT NULL,
+    dob DATE NOT NULL,
+    sex VARCHAR(1),
+    address VARCHAR(100),
+    phone VARCHAR(50)
+);
@@ -0,0 +1,14 @@
+-- optimistic locking and ETag of patients
+-- databases created by initDb.sql once patients were versioned already have the column, they are baselined at
+-- version 1 like older ones, so the column is only added when missing
+SET @missing_version = (SELECT COUNT(*) = 0
+                        FROM information_schema.COLUMNS
+                        WHERE TABLE_SCHEMA = DATABASE()
+                          AND TABLE_NAME = 'patients'
+                          AND COLUMN_NAME = 'version');
+SET @add_version = IF(@missing_version,
+                      'ALTER TABLE patients ADD COLUMN version BIGINT NOT NULL DEFAULT 0',
+                      'DO 0');
+PREPARE add_version FROM @add_version;
+EXECUTE add_version;
+DEALLOCATE PREPARE add_version;
@@ -0,0 +1,28 @@
+-- a patient is registered once, whatever the number of concurrent registrations.
+-- family is the leftmost column of the index, which also serves the searches by family name.
+
+-- concurrent registrations could create the same patient twice before this constraint: rather than a bare duplicate
+-- key error, the migration stops naming the first duplicates, to be resolved as described in patients/README.md
+DROP PROCEDURE IF EXISTS check_patient_duplicates;
+DELIMITER $$
+CREATE PROCEDURE check_patient_duplicates()
+BEGIN
+    DECLARE duplicates TEXT;
+    DECLARE message VARCHAR(128);
+    SELECT GROUP_CONCAT(CONCAT(family, ' ', given, ' ', dob, ' (', ids, ')') SEPARATOR ', ')
+    INTO duplicates
+    FROM (SELECT family, given, dob, GROUP_CONCAT(patient_id ORDER BY patient_id) AS ids
+          FROM patients
+          GROUP BY family, given, dob
+          HAVING COUNT(*) > 1
+          LIMIT 3) AS duplicated;
+    IF duplicates IS NOT NULL THEN
+        SET message = LEFT(CONCAT('Duplicated patients, see patients/README.md: ', duplicates), 128);
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = message;
+    END IF;
+END $$
+DELIMITER ;
+CALL check_patient_duplicates();
+DROP PROCEDURE check_patient_duplicates;
+
+ALTER TABLE patients ADD CONSTRAINT uk_patients_family_given_dob UNIQUE (family, given, dob);
@@ -0,0 +1,4 @@
+-- pages of the patient list sorted by given name or birthday are read from these indexes, which end with the primary
+-- key like every InnoDB secondary index; the list sorted by family name uses the identity constraint
+CREATE INDEX idx_patients_given ON patients (given);
+CREATE INDEX idx_patients_dob ON patients (dob);
@@ -3,7 +3,8 @@ package com.abernathyclinic.patients;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// no database in unit tests
+@SpringBootTest(properties = {"spring.flyway.enabled=false", "patients.name-index.build-on-startup=false"})
 class PatientsApplicationTests {
 
 	@Test
@@ -0,0 +1,38 @@
+package com.abernathyclinic.patients.configuration;
+
+import com.abernathyclinic.patients.service.PatientNameIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class NameIndexConfigurationTest {
+    private final PatientNameIndex patientNameIndex = mock(PatientNameIndex.class);
+
+    @Test
+    @DisplayName("A failed build of the name index is attempted again")
+    void nameIndexBuild_whenBuildFailsOnce_shouldRetry() throws Exception {
+        doThrow(new DataAccessResourceFailureException("connection lost")).doNothing().when(patientNameIndex).build();
+
+        new NameIndexConfiguration().nameIndexBuild(patientNameIndex, 3, Duration.ZERO).run(null);
+
+        verify(patientNameIndex, times(2)).build();
+    }
+
+    @Test
+    @DisplayName("The microservice does not start when every build of the name index fails")
+    void nameIndexBuild_whenEveryBuildFails_shouldThrow() {
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(patientNameIndex).build();
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> new NameIndexConfiguration().nameIndexBuild(patientNameIndex, 3, Duration.ZERO).run(null));
+        verify(patientNameIndex, times(3)).build();
+    }
+}
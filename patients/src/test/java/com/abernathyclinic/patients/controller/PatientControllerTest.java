@@ -1,5 +1,10 @@
 package com.abernathyclinic.patients.controller;
 
+import com.abernathyclinic.patients.bean.PatientBatch;
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.bean.PatientMatch;
+import com.abernathyclinic.patients.bean.PatientPage;
+import com.abernathyclinic.patients.constants.PatientSort;
 import com.abernathyclinic.patients.exception.AlreadyExistsException;
 import com.abernathyclinic.patients.exception.PatientNotFoundException;
 import com.abernathyclinic.patients.model.Patient;
@@ -11,6 +16,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -27,6 +34,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -62,14 +71,41 @@ public class PatientControllerTest {
     @Test
     @DisplayName("Return list of patients")
     public void getPatientsTest() throws Exception {
-        when(service.getPatients()).thenReturn(patients);
+        List<PatientListItem> items = patients.stream()
+                .map(patient -> new PatientListItem(patient.getId(), patient.getFamily(), patient.getGiven(),
+                        patient.getDob(), patient.getSex(), patient.getAddress(), patient.getPhone()))
+                .toList();
+        when(service.getPatientPage(PatientSort.DOB, Sort.Direction.DESC, "cursor", 2))
+                .thenReturn(new PatientPage(items, "next", 40L));
 
-        mockMvc.perform(get("/patient"))
+        mockMvc.perform(get("/patient?sort=dob&direction=desc&cursor=cursor&size=2"))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].family", is("TestNone")))
-                .andExpect(jsonPath("$[1].family", is("TestBorderline")));
+                .andExpect(jsonPath("$.patients", hasSize(2)))
+                .andExpect(jsonPath("$.patients[0].family", is("TestNone")))
+                .andExpect(jsonPath("$.patients[1].family", is("TestBorderline")))
+                .andExpect(jsonPath("$.nextCursor", is("next")))
+                .andExpect(jsonPath("$.estimatedTotal", is(40)));
+    }
+
+    @Test
+    @DisplayName("Return bad request for an unknown sort order")
+    public void getPatients_withUnknownSort_returnsBadRequest() throws Exception {
+        mockMvc.perform(get("/patient?sort=phone"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Search patients by name returns the matches")
+    public void searchPatientsTest() throws Exception {
+        when(service.searchPatients("tesnon", 5)).thenReturn(List.of(
+                new PatientMatch(1, "TestNone", "Test", LocalDate.of(1966, 12, 31), 0.8)));
+
+        mockMvc.perform(get("/patient/search?q=tesnon&limit=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].similarity", is(0.8)));
     }
 
     @Test
@@ -83,6 +119,25 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$.family", is("TestNone")));
     }
 
+    @Test
+    @DisplayName("Get patient by ID returns its ETag and not modified when the ETag sent is current")
+    public void getPatientById_withCurrentETag_returnsNotModified() throws Exception {
+        Patient patient = new Patient(1, "TestNone", "Test", LocalDate.of(1966, 12, 31), "F", "1 Brookside St",
+                "100-222-3333");
+        patient.setVersion(3L);
+        when(service.getPatientById(1)).thenReturn(Optional.of(patient));
+
+        mockMvc.perform(get("/patient/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-3\""));
+        mockMvc.perform(get("/patient/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/patient/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-2\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(3)));
+    }
+
     @Test
     @DisplayName("Get patient by ID throws PatientNotFoundException")
     public void getPatientById_throwsPatientNotFoundException() throws Exception {
@@ -93,6 +148,20 @@ public class PatientControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Get patients by ids returns the patients found and the missing ids")
+    public void getPatientsByIdsTest() throws Exception {
+        when(service.getPatientsByIds(List.of(1, 3, 42))).thenReturn(new PatientBatch(List.of(testNone, testNone2), List.of(42)));
+
+        mockMvc.perform(post("/patient/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 3, 42]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients", hasSize(2)))
+                .andExpect(jsonPath("$.patients[1].given", is("Test2")))
+                .andExpect(jsonPath("$.missingIds", contains(42)));
+    }
+
     @Test
     @DisplayName("Get patient by family name returns a list of one element")
     public void getPatientByFamilyName_returnsListOfOneElement() throws Exception {
@@ -151,7 +220,7 @@ public class PatientControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(mapper.writeValueAsString(testNone)))
                 .andDo(print())
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isConflict());
     }
 
 
@@ -0,0 +1,160 @@
+package com.abernathyclinic.patients.service;
+
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.bean.PatientMatch;
+import com.abernathyclinic.patients.constants.PatientSort;
+import com.abernathyclinic.patients.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PatientNameIndexTest {
+    private PatientNameIndex patientNameIndex;
+
+    @BeforeEach
+    void setUp() {
+        patientNameIndex = new PatientNameIndex();
+        patientNameIndex.minSimilarity = 0.5;
+        patientNameIndex.put(1, "Dupont", "Jean", LocalDate.of(1966, 12, 31));
+        patientNameIndex.put(2, "Dupond", "Marie", LocalDate.of(1945, 6, 24));
+        patientNameIndex.put(3, "Lefèvre", "Hélène", LocalDate.of(2004, 6, 18));
+        patientNameIndex.put(4, "Durand-Martin", "Jean-Pierre", LocalDate.of(1980, 2, 1));
+    }
+
+    @Test
+    @DisplayName("Names are searched by their beginning, whatever the case")
+    void search_byPrefix_shouldReturnPatientsStartingWithIt() {
+        // the shortest names come first among equal matches
+        assertEquals(List.of(1, 2), ids(patientNameIndex.search("DUPON", 10)));
+        assertEquals(4, patientNameIndex.search("mart", 10).get(0).getId());
+        assertEquals(List.of(1, 2, 4), ids(patientNameIndex.search("dupont jea", 10)));
+        assertEquals(1.0, patientNameIndex.search("dupont jea", 10).get(0).getSimilarity());
+    }
+
+    @Test
+    @DisplayName("Accents and typos are tolerated")
+    void search_withTyposAndAccents_shouldFindPatient() {
+        assertEquals(List.of(3), ids(patientNameIndex.search("lefevre helene", 10)));
+        assertEquals(List.of(3), ids(patientNameIndex.search("Léfèbvre", 10)));
+        PatientMatch match = patientNameIndex.search("dupnot", 10).get(0);
+        assertTrue(List.of(1, 2).contains(match.getId()));
+        assertTrue(match.getSimilarity() >= 0.5 && match.getSimilarity() < 1);
+        assertTrue(patientNameIndex.search("zzz", 10).isEmpty());
+        assertTrue(patientNameIndex.search(" - ", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Exact matches come first and the limit is kept")
+    void search_shouldRankBestMatchesFirst() {
+        List<PatientMatch> matches = patientNameIndex.search("dupont", 1);
+
+        assertEquals(1, matches.size());
+        assertEquals(1, matches.get(0).getId());
+        assertEquals(1.0, matches.get(0).getSimilarity());
+        assertEquals(LocalDate.of(1966, 12, 31), matches.get(0).getDob());
+    }
+
+    @Test
+    @DisplayName("Renamed and removed patients are only found by their current names")
+    void putAndRemove_shouldKeepIndexCurrent() {
+        patientNameIndex.put(1, "Martin", "Jean", LocalDate.of(1966, 12, 31));
+        patientNameIndex.remove(2);
+        patientNameIndex.remove(42);
+
+        assertTrue(patientNameIndex.search("dupon", 10).isEmpty());
+        assertEquals(List.of(1, 4), ids(patientNameIndex.search("martin", 10)));
+        assertEquals(3, patientNameIndex.size());
+    }
+
+    @Test
+    @DisplayName("Removed patients are forgotten once they are many")
+    void remove_manyPatients_shouldCompactIndex() {
+        for (int id = 100; id < 2_600; id++) {
+            patientNameIndex.put(id, "Family" + id, "Given", LocalDate.of(1990, 1, 1));
+        }
+        for (int id = 100; id < 2_100; id++) {
+            patientNameIndex.remove(id);
+        }
+
+        assertEquals(504, patientNameIndex.size());
+        assertEquals(List.of(2_500), ids(patientNameIndex.search("family2500 given", 1)));
+        assertEquals(1, patientNameIndex.search("dupont jean", 10).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("build() indexes every patient of the database, page by page")
+    void build_shouldIndexAllPages() {
+        PatientRepository patientRepository = mock(PatientRepository.class);
+        List<PatientListItem> firstPage = new ArrayList<>();
+        for (int id = 1; id <= 10_000; id++) {
+            firstPage.add(new PatientListItem(id, "Family" + id, "Given", LocalDate.of(1990, 1, 1), "F", "", ""));
+        }
+        when(patientRepository.findPage(eq(PatientSort.ID), eq(Sort.Direction.ASC), isNull(), anyInt())).thenReturn(firstPage);
+        when(patientRepository.findPage(PatientSort.ID, Sort.Direction.ASC, List.of(10_000), 10_000)).thenReturn(List.of(
+                new PatientListItem(10_001, "Lefèvre", "Hélène", LocalDate.of(2004, 6, 18), "F", "", "")));
+        patientNameIndex = new PatientNameIndex();
+        patientNameIndex.minSimilarity = 0.5;
+        patientNameIndex.patientRepository = patientRepository;
+
+        patientNameIndex.build();
+
+        assertEquals(10_001, patientNameIndex.size());
+        assertEquals(List.of(10_001), ids(patientNameIndex.search("lefevre", 10)));
+    }
+
+    @Test
+    @DisplayName("build() keeps the patients put or removed while their page was read")
+    void build_withChangesDuringPageRead_shouldKeepChanges() {
+        PatientRepository patientRepository = mock(PatientRepository.class);
+        patientNameIndex = new PatientNameIndex();
+        patientNameIndex.minSimilarity = 0.5;
+        patientNameIndex.patientRepository = patientRepository;
+        List<PatientListItem> page = List.of(
+                new PatientListItem(1, "Dupont", "Jean", LocalDate.of(1966, 12, 31), "M", "", ""),
+                new PatientListItem(2, "Dupond", "Marie", LocalDate.of(1945, 6, 24), "F", "", ""),
+                new PatientListItem(3, "Lefèvre", "Hélène", LocalDate.of(2004, 6, 18), "F", "", ""));
+        when(patientRepository.findPage(eq(PatientSort.ID), eq(Sort.Direction.ASC), isNull(), anyInt())).thenAnswer(invocation -> {
+            // renamed and deleted once the page was read from the database
+            patientNameIndex.put(1, "Martin", "Jean", LocalDate.of(1966, 12, 31));
+            patientNameIndex.remove(2);
+            return page;
+        }).thenReturn(page);
+
+        patientNameIndex.build();
+
+        assertEquals(2, patientNameIndex.size());
+        assertTrue(patientNameIndex.search("dupon", 10).isEmpty());
+        assertEquals(List.of(1), ids(patientNameIndex.search("martin", 10)));
+        assertEquals(List.of(3), ids(patientNameIndex.search("lefevre", 10)));
+        // changes made after the build are not remembered for the next one
+        patientNameIndex.remove(3);
+        patientNameIndex.build();
+        assertEquals(3, patientNameIndex.size());
+        assertEquals(List.of(1, 2), ids(patientNameIndex.search("dupon", 10)));
+    }
+
+    @Test
+    @DisplayName("Searched texts which are too long are refused")
+    void search_withTooLongText_shouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> patientNameIndex.search("a".repeat(PatientNameIndex.MAX_QUERY_LENGTH + 1), 10));
+    }
+
+    private static List<Integer> ids(List<PatientMatch> matches) {
+        return matches.stream().map(PatientMatch::getId).toList();
+    }
+}
@@ -1,30 +1,45 @@
 package com.abernathyclinic.patients.service;
 
+import com.abernathyclinic.patients.bean.PatientBatch;
+import com.abernathyclinic.patients.bean.PatientListItem;
+import com.abernathyclinic.patients.bean.PatientPage;
+import com.abernathyclinic.patients.configuration.CacheConfiguration;
+import com.abernathyclinic.patients.constants.PatientSort;
 import com.abernathyclinic.patients.exception.AlreadyExistsException;
 import com.abernathyclinic.patients.exception.PatientNotFoundException;
 import com.abernathyclinic.patients.model.Patient;
+import com.abernathyclinic.patients.proxy.AssessmentProxy;
+import com.abernathyclinic.patients.proxy.HistoryProxy;
 import com.abernathyclinic.patients.repository.PatientRepository;
+import com.abernathyclinic.patients.util.PatientCursor;
+import com.github.benmanes.caffeine.cache.Cache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
-import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.context.annotation.Import;
-import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
 
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
-@ExtendWith(SpringExtension.class)
-@Import(PatientService.class)
+// the cache TTL is a Duration, converted by Spring Boot
+@SpringBootTest(classes = {PatientService.class, CacheConfiguration.class})
+@TestPropertySource(properties = "patients.batch.chunk-size=2")
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class PatientServiceTest {
     /**
@@ -35,12 +50,21 @@ class PatientServiceTest {
 
     @MockBean
     PatientRepository patientRepository;
+    @MockBean
+    AssessmentProxy assessmentProxy;
+    @MockBean
+    HistoryProxy historyProxy;
+    @MockBean
+    PatientNameIndex patientNameIndex;
+    @Autowired
+    Cache<Integer, Patient> patientCache;
 
     private Patient testNone;
     private Patient testBorderline;
 
     @BeforeEach
     void setUp() {
+        patientCache.invalidateAll();
         testNone = new Patient(1, "TestNone", "Test", LocalDate.of(1966, 12, 31), "F", "1 Brookside St", "100-222-3333");
         testBorderline = new Patient(2, "TestBorderline", "Test", LocalDate.of(1945, 6, 24), "M", "2 High St", "200-333-4444");
     }
@@ -54,26 +78,76 @@ class PatientServiceTest {
         testNone = patientService.createPatient(testNone);
 
         verify(patientRepository, times(1)).save(any(Patient.class));
+        verify(historyProxy, times(1)).invalidatePatient(testNone.getId());
+        verify(patientNameIndex, times(1)).put(testNone.getId(), testNone.getFamily(), testNone.getGiven(), testNone.getDob());
         assertThat(testNone).isNotNull();
     }
 
     @Test
     @DisplayName("Registering a patient who already exists should throw AlreadyExistException")
     void createPatient_whoAlreadyExists_shouldThrow_AlreadyExistException() {
-        when(patientRepository.findByFamilyAndGivenAndDob(any(String.class), any(String.class), any(LocalDate.class))).thenReturn(Optional.of(testNone));
+        when(patientRepository.save(any(Patient.class))).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException("Duplicate entry 'TestNone-Test-1966-12-31' for key 'patients."
+                        + PatientService.IDENTITY_CONSTRAINT + "'")));
+
         assertThrows(AlreadyExistsException.class, () -> patientService.createPatient(testNone));
+        verify(historyProxy, never()).invalidatePatient(any(Integer.class));
+        verify(patientNameIndex, never()).put(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Registering a patient breaking another constraint should not be reported as a duplicate")
+    void createPatient_breakingOtherConstraint_shouldRethrow() {
+        when(patientRepository.save(any(Patient.class))).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException("Column 'given' cannot be null")));
 
+        assertThrows(DataIntegrityViolationException.class, () -> patientService.createPatient(testNone));
     }
 
     @Test
-    @DisplayName("getPatients() should return list of existing patients")
-    void getPatients() {
-        when(patientRepository.findAll()).thenReturn(List.of(testNone, testBorderline));
+    @DisplayName("getPatientPage() returns a page and the cursor of the next one, read right after its last patient")
+    void getPatientPage_shouldReturnCursorOfNextPage() {
+        PatientListItem first = listItem(testBorderline);
+        PatientListItem second = listItem(testNone);
+        PatientListItem third = new PatientListItem(3, "TestNone", "Test2", LocalDate.of(1996, 12, 31), "F", "", "");
+        when(patientRepository.findPage(PatientSort.FAMILY, Sort.Direction.ASC, null, 3))
+                .thenReturn(List.of(first, second, third));
+        when(patientRepository.estimateCount()).thenReturn(3L);
 
-        List<Patient> result = patientService.getPatients();
+        PatientPage page = patientService.getPatientPage(PatientSort.FAMILY, Sort.Direction.ASC, null, 2);
 
-        assertTrue(result.contains(testNone));
-        assertTrue(result.contains(testBorderline));
+        assertEquals(List.of(first, second), page.getPatients());
+        assertEquals(3L, page.getEstimatedTotal());
+        assertNotNull(page.getNextCursor());
+
+        when(patientRepository.findPage(PatientSort.FAMILY, Sort.Direction.ASC,
+                List.of("TestNone", "Test", LocalDate.of(1966, 12, 31), 1), 3)).thenReturn(List.of(third));
+
+        PatientPage lastPage = patientService.getPatientPage(PatientSort.FAMILY, Sort.Direction.ASC, page.getNextCursor(), 2);
+
+        assertEquals(List.of(third), lastPage.getPatients());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("getPatientPage() refuses page sizes out of bounds and cursors of another sort order")
+    void getPatientPage_withInvalidParameters_shouldThrow() {
+        String cursor = PatientCursor.encode(PatientSort.DOB, Sort.Direction.DESC, listItem(testNone));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> patientService.getPatientPage(PatientSort.FAMILY, Sort.Direction.ASC, null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> patientService.getPatientPage(PatientSort.FAMILY, Sort.Direction.ASC, null, 101));
+        assertThrows(IllegalArgumentException.class,
+                () -> patientService.getPatientPage(PatientSort.DOB, Sort.Direction.ASC, cursor, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> patientService.getPatientPage(PatientSort.DOB, Sort.Direction.DESC, cursor + "x", 20));
+        verify(patientRepository, never()).findPage(any(), any(), any(), anyInt());
+    }
+
+    private static PatientListItem listItem(Patient patient) {
+        return new PatientListItem(patient.getId(), patient.getFamily(), patient.getGiven(), patient.getDob(),
+                patient.getSex(), patient.getAddress(), patient.getPhone());
     }
 
     @Test
@@ -92,17 +166,69 @@ class PatientServiceTest {
         assertEquals(testNone.getId(), result.get().getId());
     }
 
+    @Test
+    @DisplayName("getPatientById() reads a patient from the database once, until they are updated")
+    void getPatientById_shouldReadThroughCache_untilUpdate() {
+        when(patientRepository.findById(testNone.getId())).thenReturn(Optional.of(testNone));
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Patient cached = patientService.getPatientById(testNone.getId()).get();
+        assertSame(cached, patientService.getPatientById(testNone.getId()).get());
+        // a copy is cached, not the entity read
+        assertNotSame(testNone, cached);
+        verify(patientRepository, times(1)).findById(testNone.getId());
+
+        patientService.updatePatient(new Patient(testNone.getId(), "New family name", testNone.getGiven(),
+                testNone.getDob(), testNone.getSex(), testNone.getAddress(), testNone.getPhone()));
+        patientService.getPatientById(testNone.getId());
+
+        // once for the update, once for the read which follows it
+        verify(patientRepository, times(3)).findById(testNone.getId());
+    }
+
+    @Test
+    @DisplayName("getPatientById() does not cache unknown patients")
+    void getPatientById_whenUnknown_shouldNotCache() {
+        when(patientRepository.findById(42)).thenReturn(Optional.empty());
+
+        assertTrue(patientService.getPatientById(42).isEmpty());
+        assertTrue(patientService.getPatientById(42).isEmpty());
+
+        verify(patientRepository, times(2)).findById(42);
+    }
+
+    @Test
+    @DisplayName("getPatientsByIds() reads the patients which are not cached by chunks, without caching them")
+    void getPatientsByIds_shouldReadUncachedPatientsByChunks() {
+        patientCache.put(testNone.getId(), testNone);
+        Patient third = new Patient(3, "TestNone", "Test2", LocalDate.of(1996, 12, 31), "F", "", "");
+        when(patientRepository.findAllById(List.of(2, 42))).thenReturn(List.of(testBorderline));
+        when(patientRepository.findAllById(List.of(3))).thenReturn(List.of(third));
+
+        PatientBatch batch = patientService.getPatientsByIds(Arrays.asList(2, 1, null, 42, 2, 3));
+
+        assertEquals(List.of(2, 1, 3), batch.getPatients().stream().map(Patient::getId).toList());
+        assertEquals(List.of(42), batch.getMissingIds());
+        verify(patientRepository, times(2)).findAllById(any());
+        // a patient read by a batch may have been changed meanwhile, only single reads fill the cache
+        assertNull(patientCache.getIfPresent(3));
+        assertThrows(IllegalArgumentException.class,
+                () -> patientService.getPatientsByIds(IntStream.rangeClosed(1, 1001).boxed().toList()));
+    }
+
     @Test
     @DisplayName("Updating patient who does not exist should throw PatientNotFoundException")
     void updatePatient_whoDoesNotExist_shouldThrow_PatientNotFoundException() {
-        when(patientRepository.existsById(any(Integer.class))).thenReturn(false);
+        when(patientRepository.findById(any(Integer.class))).thenReturn(Optional.empty());
         assertThrows(PatientNotFoundException.class, () -> patientService.updatePatient(testNone));
     }
 
     @Test
     @DisplayName("Updating existing patient should save changes to database")
     void updatePatient_whoExists_shouldUpdate_existingPatient() {
-        when(patientRepository.existsById(any(Integer.class))).thenReturn(true);
+        when(patientRepository.findById(any(Integer.class))).thenReturn(Optional.of(new Patient(testNone.getId(),
+                testNone.getFamily(), testNone.getGiven(), testNone.getDob(), testNone.getSex(), testNone.getAddress(),
+                testNone.getPhone())));
         String expectedFamilyName = "New family name";
         testNone.setFamily(expectedFamilyName);
         when(patientRepository.save(any(Patient.class))).thenReturn(testNone);
@@ -110,10 +236,56 @@ class PatientServiceTest {
         testNone = patientService.updatePatient(testNone);
 
         verify(patientRepository, times(1)).save(any(Patient.class));
+        verify(assessmentProxy, never()).invalidateAssessment(any(Integer.class));
+        verify(patientNameIndex, times(1)).put(testNone.getId(), expectedFamilyName, testNone.getGiven(), testNone.getDob());
         assertThat(testNone).isNotNull();
         assertEquals(expectedFamilyName, testNone.getFamily());
     }
 
+    @Test
+    @DisplayName("Updating a patient with the names and birthday of another one should throw AlreadyExistException")
+    void updatePatient_likeAnotherPatient_shouldThrow_AlreadyExistException() {
+        when(patientRepository.findById(any(Integer.class))).thenReturn(Optional.of(testBorderline));
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException("Duplicate entry 'TestNone-Test-1966-12-31' for key 'patients."
+                        + PatientService.IDENTITY_CONSTRAINT + "'"))).when(patientRepository).flush();
+        Patient renamed = new Patient(testBorderline.getId(), testNone.getFamily(), testNone.getGiven(), testNone.getDob(),
+                testBorderline.getSex(), testBorderline.getAddress(), testBorderline.getPhone());
+
+        assertThrows(AlreadyExistsException.class, () -> patientService.updatePatient(renamed));
+        verify(patientNameIndex, never()).put(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Updating a patient without version should overwrite the version stored")
+    void updatePatient_withoutVersion_shouldUseStoredVersion() {
+        Patient stored = new Patient(testNone.getId(), testNone.getFamily(), testNone.getGiven(), testNone.getDob(),
+                testNone.getSex(), testNone.getAddress(), testNone.getPhone());
+        stored.setVersion(4L);
+        when(patientRepository.findById(any(Integer.class))).thenReturn(Optional.of(stored));
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Patient edited = new Patient(testNone.getId(), "New family name", testNone.getGiven(), testNone.getDob(),
+                testNone.getSex(), testNone.getAddress(), testNone.getPhone());
+
+        assertEquals(4L, patientService.updatePatient(edited).getVersion());
+    }
+
+    @Test
+    @DisplayName("Changing birthday of a patient should invalidate their risk assessment")
+    void updatePatient_withNewBirthday_shouldInvalidateRiskAssessment() {
+        when(patientRepository.findById(any(Integer.class))).thenReturn(Optional.of(new Patient(testNone.getId(),
+                testNone.getFamily(), testNone.getGiven(), testNone.getDob(), testNone.getSex(), testNone.getAddress(),
+                testNone.getPhone())));
+        testNone.setDob(LocalDate.of(1996, 12, 31));
+        when(patientRepository.save(any(Patient.class))).thenReturn(testNone);
+
+        patientService.updatePatient(testNone);
+
+        verify(assessmentProxy, times(1)).invalidateAssessment(testNone.getId());
+        verify(historyProxy, never()).invalidatePatient(any(Integer.class));
+    }
+
     @Test
     @DisplayName("Patient should not be null when calling deletePatient()")
     void deletePatient_whenPatientIsNull_shouldThrowException() {
@@ -126,8 +298,20 @@ class PatientServiceTest {
     void deletePatient() {
         when(patientRepository.existsById(any(Integer.class))).thenReturn(true);
         Integer idBeforeDeletion = testNone.getId();
+        patientCache.put(idBeforeDeletion, testNone);
         patientService.deletePatient(testNone);
         assertTrue(patientService.getPatientById(idBeforeDeletion).isEmpty());
+        verify(assessmentProxy, times(1)).invalidateAssessment(idBeforeDeletion);
+        verify(historyProxy, times(1)).invalidatePatient(idBeforeDeletion);
+        verify(patientNameIndex, times(1)).remove(idBeforeDeletion);
+    }
+
+    @Test
+    @DisplayName("searchPatients() refuses limits out of bounds")
+    void searchPatients_withLimitOutOfBounds_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> patientService.searchPatients("test", 0));
+        assertThrows(IllegalArgumentException.class, () -> patientService.searchPatients("test", 51));
+        verify(patientNameIndex, never()).search(any(), anyInt());
     }
 
     @Test
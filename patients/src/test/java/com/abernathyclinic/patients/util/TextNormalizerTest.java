@@ -0,0 +1,28 @@
+package com.abernathyclinic.patients.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextNormalizerTest {
+
+    @Test
+    @DisplayName("fold removes case and accents, and skips combining accents")
+    void fold_removesCaseAndAccents() {
+        assertEquals('e', TextNormalizer.fold('É'));
+        assertEquals('c', TextNormalizer.fold('ç'));
+        assertEquals('o', TextNormalizer.fold('Ø'));
+        assertEquals('a', TextNormalizer.fold('a'));
+        assertEquals(TextNormalizer.IGNORED, TextNormalizer.fold('\u0301'));
+    }
+
+    @Test
+    @DisplayName("normalize folds names and keeps their separators")
+    void normalize_foldsNames() {
+        assertEquals("lefevre", TextNormalizer.normalize("LEFÈVRE"));
+        assertEquals("jean-eloi d'orleans", TextNormalizer.normalize("Jean-Éloi d'Orléans"));
+        assertEquals("lukasz", TextNormalizer.normalize("Łukasz"));
+        assertEquals("zoe", TextNormalizer.normalize("Zoë"));
+    }
+}